@@ -20,8 +20,12 @@ package org.springframework.cloud.gateway.actuate;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.RouteHttpClients;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.loadbalancer.OutlierDetector;
+import org.springframework.cloud.gateway.loadbalancer.ServiceInstanceStats;
 import org.springframework.cloud.gateway.route.*;
+import org.springframework.cloud.gateway.support.HostPoolResources;
 import org.springframework.cloud.gateway.support.NotFoundException;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
@@ -30,9 +34,13 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.ipc.netty.resources.PoolResources;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -66,6 +74,22 @@ public class GatewayWebfluxEndpoint implements ApplicationEventPublisherAware {
      * 路由定位器
      */
 	private RouteLocator routeLocator;
+    /**
+     * 代理请求的连接池
+     */
+	private PoolResources poolResources;
+    /**
+     * 各 Route 使用的 HttpClient
+     */
+	private RouteHttpClients routeHttpClients;
+    /**
+     * lb:// 实例的统计
+     */
+	private ServiceInstanceStats instanceStats;
+    /**
+     * 实例剔除
+     */
+	private OutlierDetector outlierDetector;
     /**
      * 应用事件发布器
      */
@@ -74,11 +98,24 @@ public class GatewayWebfluxEndpoint implements ApplicationEventPublisherAware {
 	public GatewayWebfluxEndpoint(RouteDefinitionLocator routeDefinitionLocator, List<GlobalFilter> globalFilters,
 								  List<GatewayFilterFactory> GatewayFilters, RouteDefinitionWriter routeDefinitionWriter,
 								  RouteLocator routeLocator) {
+		this(routeDefinitionLocator, globalFilters, GatewayFilters, routeDefinitionWriter, routeLocator, null, null);
+	}
+
+	public GatewayWebfluxEndpoint(RouteDefinitionLocator routeDefinitionLocator, List<GlobalFilter> globalFilters,
+								  List<GatewayFilterFactory> GatewayFilters, RouteDefinitionWriter routeDefinitionWriter,
+								  RouteLocator routeLocator, PoolResources poolResources, RouteHttpClients routeHttpClients) {
 		this.routeDefinitionLocator = routeDefinitionLocator;
 		this.globalFilters = globalFilters;
 		this.gatewayFilters = GatewayFilters;
 		this.routeDefinitionWriter = routeDefinitionWriter;
 		this.routeLocator = routeLocator;
+		this.poolResources = poolResources;
+		this.routeHttpClients = routeHttpClients;
+	}
+
+	public void setInstanceStats(ServiceInstanceStats instanceStats, OutlierDetector outlierDetector) {
+		this.instanceStats = instanceStats;
+		this.outlierDetector = outlierDetector;
 	}
 
 	@Override
@@ -89,11 +126,12 @@ public class GatewayWebfluxEndpoint implements ApplicationEventPublisherAware {
 	// TODO: Add uncommited or new but not active routes endpoint
 
 	//TODO: this should really be a listener that responds to a RefreshEvent
-	//发布 RefreshRoutesEvent 事件。CachingRouteLocator 监听到该事件，刷新缓存。
+	//发布 RefreshRoutesEvent 事件，等监听者（如 CachingRouteLocator）交回的刷新完成、新路由生效后才返回
 	@PostMapping("/refresh")
 	public Mono<Void> refresh() {
-	    this.publisher.publishEvent(new RefreshRoutesEvent(this));
-		return Mono.empty();
+		RefreshRoutesEvent event = new RefreshRoutesEvent(this);
+	    this.publisher.publishEvent(event);
+		return event.getRefreshes();
 	}
 
 	@GetMapping("/globalfilters")
@@ -106,6 +144,85 @@ public class GatewayWebfluxEndpoint implements ApplicationEventPublisherAware {
 		return getNamesToOrders(this.gatewayFilters);
 	}
 
+	//每个 upstream host 的连接数，只有 fixed 连接池提供
+	@GetMapping("/connectionpools")
+	public Mono<Map<String, HostPoolResources.PoolMetrics>> connectionpools() {
+		if (this.poolResources instanceof HostPoolResources) {
+			return Mono.just(((HostPoolResources) this.poolResources).getMetrics());
+		}
+		return Mono.just(Collections.emptyMap());
+	}
+
+	//各 http client profile 的并发数和连接数
+	@GetMapping("/httpclientprofiles")
+	public Mono<Map<String, Map<String, Object>>> httpclientprofiles() {
+		Map<String, Map<String, Object>> profiles = new LinkedHashMap<>();
+		if (this.routeHttpClients != null) {
+			this.routeHttpClients.getProfiles().forEach((name, bulkhead) -> {
+				Map<String, Object> profile = new LinkedHashMap<>();
+				profile.put("inFlight", bulkhead.getInFlight());
+				profile.put("maxInFlight", bulkhead.getMaxInFlight());
+				profile.put("rejected", bulkhead.getRejected());
+				if (bulkhead.getPoolResources() instanceof HostPoolResources) {
+					profile.put("connectionPools", ((HostPoolResources) bulkhead.getPoolResources()).getMetrics());
+				}
+				profiles.put(name, profile);
+			});
+		}
+		return Mono.just(profiles);
+	}
+
+	//路由刷新请求数与实际重建次数
+	@GetMapping("/refreshes")
+	public Mono<Map<String, Map<String, Object>>> refreshes() {
+		Map<String, Map<String, Object>> refreshes = new LinkedHashMap<>();
+		if (this.routeLocator instanceof CachingRouteLocator) {
+			CachingRouteLocator routes = (CachingRouteLocator) this.routeLocator;
+			refreshes.put("routes", refreshes(routes.getRefreshesReceived(), routes.getRefreshesExecuted(),
+					routes.getRefreshDebounce()));
+			CachingRouteDefinitionLocator definitions = routes.getRouteDefinitionLocator();
+			if (definitions != null) {
+				refreshes.put("routeDefinitions", refreshes(definitions.getRefreshesReceived(),
+						definitions.getRefreshesExecuted(), definitions.getRefreshDebounce()));
+			}
+		}
+		return Mono.just(refreshes);
+	}
+
+	private static Map<String, Object> refreshes(long received, long executed, Duration debounce) {
+		Map<String, Object> refreshes = new LinkedHashMap<>();
+		refreshes.put("received", received);
+		refreshes.put("executed", executed);
+		refreshes.put("debounceMillis", debounce.toMillis());
+		return refreshes;
+	}
+
+	//lb:// 各实例的统计与剔除次数
+	@GetMapping("/loadbalancer")
+	public Mono<Map<String, Object>> loadbalancer() {
+		Map<String, Object> loadBalancer = new LinkedHashMap<>();
+		if (this.outlierDetector != null) {
+			loadBalancer.put("ejections", this.outlierDetector.getEjections());
+			loadBalancer.put("cappedEjections", this.outlierDetector.getCappedEjections());
+			loadBalancer.put("ejected", this.outlierDetector.getEjected());
+		}
+		Map<String, Map<String, Object>> instances = new LinkedHashMap<>();
+		if (this.instanceStats != null) {
+			this.instanceStats.getStats().forEach((name, stats) -> {
+				Map<String, Object> instance = new LinkedHashMap<>();
+				instance.put("inFlight", stats.getInFlight());
+				instance.put("latencyMillis", stats.getLatency() / 1_000_000);
+				instance.put("successRate", stats.getSuccessRate());
+				instance.put("consecutiveFailures", stats.getConsecutiveFailures());
+				instance.put("ejected", stats.isEjected());
+				instance.put("ejections", stats.getEjections());
+				instances.put(name, instance);
+			});
+		}
+		loadBalancer.put("instances", instances);
+		return Mono.just(loadBalancer);
+	}
+
 	private <T> Mono<HashMap<String, Object>> getNamesToOrders(List<T> list) {
 		return Flux.fromIterable(list).reduce(new HashMap<>(), this::putItem);
 	}
@@ -18,6 +18,7 @@
 package org.springframework.cloud.gateway.config;
 
 import com.netflix.hystrix.HystrixObservableCommand;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.actuate.autoconfigure.web.ManagementContextConfiguration;
 import org.springframework.boot.actuate.health.Health;
@@ -36,9 +37,16 @@ import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
 import org.springframework.cloud.gateway.filter.ratelimit.PrincipalNameKeyResolver;
 import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
 import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.GatewayExchangeContextWebFilter;
+import org.springframework.cloud.gateway.handler.RouteMatchCache;
 import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
 import org.springframework.cloud.gateway.handler.predicate.*;
+import org.springframework.cloud.gateway.loadbalancer.OutlierDetector;
+import org.springframework.cloud.gateway.loadbalancer.ServiceInstanceStats;
 import org.springframework.cloud.gateway.route.*;
+import org.springframework.cloud.gateway.support.FlushStrategy;
+import org.springframework.cloud.gateway.support.HostPoolResources;
+import org.springframework.cloud.gateway.support.UpstreamTimeouts;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -50,6 +58,7 @@ import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClien
 import org.springframework.web.reactive.socket.client.WebSocketClient;
 import org.springframework.web.reactive.socket.server.WebSocketService;
 import org.springframework.web.reactive.socket.server.support.HandshakeWebSocketService;
+import io.netty.channel.ChannelOption;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.ipc.netty.http.client.HttpClient;
@@ -57,6 +66,7 @@ import reactor.ipc.netty.http.client.HttpClientOptions;
 import reactor.ipc.netty.resources.PoolResources;
 import rx.RxReactiveStreams;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -82,18 +92,55 @@ public class GatewayAutoConfiguration {
 			return HttpClient.create(options);
 		}
 
+		@Bean(destroyMethod = "dispose") // 1.0
+		@ConditionalOnMissingBean
+		public PoolResources proxyPoolResources(HttpClientProperties properties) {
+			return poolResources(properties.getPool().getName(), properties.getPool());
+		}
+
+		private static PoolResources poolResources(String name, HttpClientProperties.Pool pool) {
+			if (pool.getType() == HttpClientProperties.PoolType.FIXED) {
+				// 每个 host 一个有界连接池，可观测
+				return new HostPoolResources(name, pool.getMaxConnections(), pool.getMaxPendingAcquires(),
+						pool.getAcquireTimeout(), pool.getMaxIdleTime());
+			}
+			//创建 name 属性为 "proxy" 的 reactor.ipc.netty.resources.PoolResources 。其中 "proxy" 用于实际使用时，打印日志的标记
+			return PoolResources.elastic(name);
+		}
+
+		@Bean(destroyMethod = "dispose")
+		@ConditionalOnMissingBean
+		public RouteHttpClients routeHttpClients(HttpClient httpClient, HttpClientProperties properties) {
+			RouteHttpClients clients = new RouteHttpClients(httpClient);
+			// 每个 profile 使用独立的 HttpClient 和连接池
+			properties.getProfiles().forEach((name, profile) -> {
+				PoolResources pool = poolResources(name, profile.getPool());
+				HttpClient client = HttpClient.create(opts -> {
+					opts.poolResources(pool);
+					if (profile.getConnectTimeout() != null) {
+						opts.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) profile.getConnectTimeout().toMillis());
+					}
+				});
+				// 连接超时由 CONNECT_TIMEOUT_MILLIS 负责，响应和空闲超时作为使用该 profile 的 Route 的默认值
+				clients.register(name, client, pool, profile.getMaxInFlight(),
+						UpstreamTimeouts.of(null, profile.getResponseTimeout(), profile.getIdleTimeout()));
+			});
+			return clients;
+		}
+
 		@Bean // 1.1
-		public Consumer<? super HttpClientOptions.Builder> nettyClientOptions() {
+		public Consumer<? super HttpClientOptions.Builder> nettyClientOptions(PoolResources proxyPoolResources) {
 			return opts -> {
-				//创建 name 属性为 "proxy" 的 reactor.ipc.netty.resources.PoolResources 。其中 "proxy" 用于实际使用时，打印日志的标记
-				opts.poolResources(PoolResources.elastic("proxy"));
+				opts.poolResources(proxyPoolResources);
 				// opts.disablePool(); //TODO: why do I need this again?
 			};
 		}
 
 		@Bean // 1.3
-		public NettyRoutingFilter routingFilter(HttpClient httpClient) {
-			return new NettyRoutingFilter(httpClient);
+		public NettyRoutingFilter routingFilter(RouteHttpClients routeHttpClients,
+				ObjectProvider<ServiceInstanceStats> instanceStats, ObjectProvider<OutlierDetector> outlierDetector) {
+			return new NettyRoutingFilter(routeHttpClients, instanceStats.getIfAvailable(),
+					outlierDetector.getIfAvailable());
 		}
 
 		@Bean // 1.4
@@ -136,19 +183,50 @@ public class GatewayAutoConfiguration {
 	//RoutePredicateHandlerMapping 使用 CachingRouteLocator 来获取 Route 信息。在 Spring Cloud Gateway 启动后，如果有新加入的服务，则需要刷新 CachingRouteLocator 缓存。
 	@Bean // 4.5 // TODO 芋艿，where are you 【1】AdditionalRoutes 【2】customRouteLocator 【3】上面 routeDefinitionRouteLocator
 	@Primary
-	public RouteLocator routeLocator(List<RouteLocator> routeLocators) {
-		return new CachingRouteLocator(new CompositeRouteLocator(Flux.fromIterable(routeLocators)));
+	public RouteLocator routeLocator(List<RouteLocator> routeLocators, GatewayProperties properties,
+									 ObjectProvider<CachingRouteDefinitionLocator> cachingRouteDefinitionLocator,
+									 ObjectProvider<List<RouteValidator>> routeValidators) {
+		// 未知的 http-client-profile 等在启动或刷新时就失败，而不是每个请求
+		CachingRouteLocator routeLocator = new CachingRouteLocator(
+				new CompositeRouteLocator(Flux.fromIterable(routeLocators)),
+				routeValidators.getIfAvailable(Collections::emptyList));
+		routeLocator.setRefreshDebounce(properties.getRouteRefreshDebounce());
+		// 缓存的路由定义先刷新，路由再从新定义构建
+		CachingRouteDefinitionLocator routeDefinitions = cachingRouteDefinitionLocator.getIfAvailable();
+		if (routeDefinitions != null) {
+			routeDefinitions.setRefreshDebounce(properties.getRouteRefreshDebounce());
+			routeLocator.setRouteDefinitionLocator(routeDefinitions);
+		}
+		return routeLocator;
 	}
 
 	@Bean // 2.6Route
-	public FilteringWebHandler filteringWebHandler(List<GlobalFilter> globalFilters) {
-		return new FilteringWebHandler(globalFilters);
+	public FilteringWebHandler filteringWebHandler(List<GlobalFilter> globalFilters, RouteLocator routeLocator) {
+		return new FilteringWebHandler(globalFilters, routeLocator);
 	}
 
 	@Bean
 	public RoutePredicateHandlerMapping routePredicateHandlerMapping(FilteringWebHandler webHandler,
-																	   RouteLocator routeLocator) {
-		return new RoutePredicateHandlerMapping(webHandler, routeLocator);
+																	   RouteLocator routeLocator,
+																	   GatewayProperties properties) {
+		RouteMatchCache routeMatchCache = properties.getRouteMatchCacheSize() > 0
+				? new RouteMatchCache(properties.getRouteMatchCacheSize()) : null;
+		return new RoutePredicateHandlerMapping(webHandler, routeLocator, routeMatchCache);
+	}
+
+	@Bean // 路由构建时校验 flush 策略元数据
+	public RouteValidator flushStrategyRouteValidator() {
+		return FlushStrategy::validate;
+	}
+
+	@Bean // 路由构建时校验超时元数据
+	public RouteValidator upstreamTimeoutsRouteValidator() {
+		return UpstreamTimeouts::validate;
+	}
+
+	@Bean
+	public GatewayExchangeContextWebFilter gatewayExchangeContextWebFilter() {
+		return new GatewayExchangeContextWebFilter();
 	}
 
 	// ConfigurationProperty beans
@@ -158,6 +236,11 @@ public class GatewayAutoConfiguration {
 		return new GatewayProperties();
 	}
 
+	@Bean
+	public HttpClientProperties httpClientProperties() {
+		return new HttpClientProperties();
+	}
+
 	@Bean // 3.11 {@link SecureHeadersGatewayFilterFactory}
 	public SecureHeadersProperties secureHeadersProperties() {
 		return new SecureHeadersProperties();
@@ -346,8 +429,14 @@ public class GatewayAutoConfiguration {
 		@Bean
 		public GatewayWebfluxEndpoint gatewayWebfluxEndpoint(RouteDefinitionLocator routeDefinitionLocator, List<GlobalFilter> globalFilters,
 															 List<GatewayFilterFactory> GatewayFilters, RouteDefinitionWriter routeDefinitionWriter,
-															 RouteLocator routeLocator) {
-			return new GatewayWebfluxEndpoint(routeDefinitionLocator, globalFilters, GatewayFilters, routeDefinitionWriter, routeLocator);
+															 RouteLocator routeLocator, ObjectProvider<PoolResources> poolResources,
+															 ObjectProvider<RouteHttpClients> routeHttpClients,
+															 ObjectProvider<ServiceInstanceStats> instanceStats,
+															 ObjectProvider<OutlierDetector> outlierDetector) {
+			GatewayWebfluxEndpoint endpoint = new GatewayWebfluxEndpoint(routeDefinitionLocator, globalFilters, GatewayFilters,
+					routeDefinitionWriter, routeLocator, poolResources.getIfAvailable(), routeHttpClients.getIfAvailable());
+			endpoint.setInstanceStats(instanceStats.getIfAvailable(), outlierDetector.getIfAvailable());
+			return endpoint;
 		}
 	}
 
@@ -17,12 +17,33 @@
 
 package org.springframework.cloud.gateway.config;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
 import org.springframework.cloud.gateway.filter.LoadBalancerClientFilter;
-import org.springframework.cloud.netflix.ribbon.RibbonAutoConfiguration;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.filter.ratelimit.PrincipalNameKeyResolver;
+import org.springframework.cloud.gateway.loadbalancer.ConsistentHashLoadBalancer;
+import org.springframework.cloud.gateway.loadbalancer.FallbackLoadBalancer;
+import org.springframework.cloud.gateway.loadbalancer.LeastRequestsLoadBalancer;
+import org.springframework.cloud.gateway.loadbalancer.LoadBalancerClientAdapter;
+import org.springframework.cloud.gateway.loadbalancer.OutlierDetector;
+import org.springframework.cloud.gateway.loadbalancer.PeakEwmaLoadBalancer;
+import org.springframework.cloud.gateway.loadbalancer.ReactiveLoadBalancer;
+import org.springframework.cloud.gateway.loadbalancer.RoundRobinLoadBalancer;
+import org.springframework.cloud.gateway.loadbalancer.RouteLoadBalancers;
+import org.springframework.cloud.gateway.loadbalancer.ServiceInstanceSnapshots;
+import org.springframework.cloud.gateway.loadbalancer.ServiceInstanceStats;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.DispatcherHandler;
@@ -33,16 +54,135 @@ import org.springframework.web.reactive.DispatcherHandler;
  * @author Spencer Gibb
  */
 @Configuration
-@ConditionalOnClass({LoadBalancerClient.class, RibbonAutoConfiguration.class, DispatcherHandler.class})
-@AutoConfigureAfter(RibbonAutoConfiguration.class)
+@ConditionalOnClass({DiscoveryClient.class, DispatcherHandler.class})
+@EnableConfigurationProperties
+@AutoConfigureAfter(name = {"org.springframework.cloud.netflix.ribbon.RibbonAutoConfiguration",
+		"org.springframework.cloud.client.discovery.composite.CompositeDiscoveryClientAutoConfiguration",
+		"org.springframework.cloud.client.discovery.simple.SimpleDiscoveryClientAutoConfiguration"})
 public class GatewayLoadBalancerClientAutoConfiguration {
 
+	public static final String ROUND_ROBIN = "round-robin";
+
+	public static final String LOAD_BALANCER_CLIENT = "load-balancer-client";
+
+	public static final String LEAST_REQUESTS = "least-requests";
+
+	public static final String PEAK_EWMA = "peak-ewma";
+
+	public static final String CONSISTENT_HASH = "consistent-hash";
+
+	@Bean
+	public LoadBalancerProperties gatewayLoadBalancerProperties() {
+		return new LoadBalancerProperties();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnBean(DiscoveryClient.class)
+	public ServiceInstanceStats serviceInstanceStats(LoadBalancerProperties properties) {
+		return new ServiceInstanceStats(properties.getLatencyDecayTime());
+	}
+
+	@Bean(destroyMethod = "dispose")
+	@ConditionalOnMissingBean
+	@ConditionalOnBean(DiscoveryClient.class)
+	public ServiceInstanceSnapshots serviceInstanceSnapshots(DiscoveryClient discoveryClient,
+			LoadBalancerProperties properties, ServiceInstanceStats stats) {
+		ServiceInstanceSnapshots snapshots = new ServiceInstanceSnapshots(discoveryClient,
+				properties.getRefreshInterval());
+		// 实例下线后丢弃其统计
+		snapshots.addListener(stats::retain);
+		// 其它服务的实例由 LoadBalancerClient 选出，不统计
+		stats.setTrackedServices(snapshots::hasInstances);
+		return snapshots;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnBean(ServiceInstanceSnapshots.class)
+	@ConditionalOnProperty(name = "spring.cloud.gateway.loadbalancer.outlier-detection.enabled", matchIfMissing = true)
+	public OutlierDetector outlierDetector(ServiceInstanceSnapshots snapshots, ServiceInstanceStats stats,
+			LoadBalancerProperties properties) {
+		LoadBalancerProperties.OutlierDetection outlierDetection = properties.getOutlierDetection();
+		OutlierDetector detector = new OutlierDetector(snapshots, stats);
+		detector.setConsecutiveFailures(outlierDetection.getConsecutiveFailures());
+		detector.setSuccessRate(outlierDetection.getSuccessRateRequests(), outlierDetection.getMinSuccessRate());
+		detector.setEjectionTime(outlierDetection.getBaseEjectionTime(), outlierDetection.getMaxEjectionTime());
+		detector.setMaxEjectedPercent(outlierDetection.getMaxEjectedPercent());
+		// 被剔除的实例不交给负载均衡
+		snapshots.setInstanceFilter(detector::available);
+		return detector;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnBean(ServiceInstanceSnapshots.class)
+	public RouteLoadBalancers routeLoadBalancers(ServiceInstanceSnapshots snapshots, ServiceInstanceStats stats,
+			ObjectProvider<LoadBalancerClient> loadBalancerClient, ObjectProvider<Map<String, KeyResolver>> keyResolvers,
+			LoadBalancerProperties properties) {
+		Map<String, ReactiveLoadBalancer> balancers = new LinkedHashMap<>();
+		balancers.put(ROUND_ROBIN, new RoundRobinLoadBalancer(snapshots));
+		balancers.put(LEAST_REQUESTS, new LeastRequestsLoadBalancer(snapshots, stats));
+		balancers.put(PEAK_EWMA, new PeakEwmaLoadBalancer(snapshots, stats));
+		balancers.put(CONSISTENT_HASH, consistentHashLoadBalancer(snapshots, stats, keyResolvers, properties));
+		// Ribbon 等 LoadBalancerClient 在调用线程上同步选择
+		LoadBalancerClient client = loadBalancerClient.getIfAvailable();
+		if (client != null) {
+			balancers.put(LOAD_BALANCER_CLIENT, new LoadBalancerClientAdapter(client));
+		}
+		ReactiveLoadBalancer defaultBalancer;
+		if (properties.getDefaultBalancer() != null) {
+			defaultBalancer = balancers.get(properties.getDefaultBalancer());
+			if (defaultBalancer == null) {
+				throw new IllegalArgumentException("Unknown default load balancer '" + properties.getDefaultBalancer()
+						+ "', must be one of " + balancers.keySet());
+			}
+		}
+		else if (client != null) {
+			// DiscoveryClient 中没有实例的服务（如 Ribbon listOfServers）仍由 LoadBalancerClient 解析
+			defaultBalancer = new FallbackLoadBalancer(balancers.get(ROUND_ROBIN), balancers.get(LOAD_BALANCER_CLIENT));
+		}
+		else {
+			defaultBalancer = balancers.get(ROUND_ROBIN);
+		}
+		RouteLoadBalancers routeLoadBalancers = new RouteLoadBalancers(defaultBalancer);
+		balancers.forEach(routeLoadBalancers::register);
+		return routeLoadBalancers;
+	}
+
+	private ConsistentHashLoadBalancer consistentHashLoadBalancer(ServiceInstanceSnapshots snapshots,
+			ServiceInstanceStats stats, ObjectProvider<Map<String, KeyResolver>> keyResolverBeans,
+			LoadBalancerProperties properties) {
+		Map<String, KeyResolver> keyResolvers = keyResolverBeans.getIfAvailable();
+		if (keyResolvers == null) {
+			keyResolvers = Collections.emptyMap();
+		}
+		KeyResolver defaultKeyResolver;
+		String defaultName = properties.getHashKeyResolver();
+		if (defaultName != null) {
+			defaultKeyResolver = keyResolvers.get(defaultName);
+			if (defaultKeyResolver == null) {
+				throw new IllegalArgumentException("Unknown hash key resolver '" + defaultName + "', must be one of "
+						+ keyResolvers.keySet());
+			}
+		}
+		else if (keyResolvers.size() == 1) {
+			defaultKeyResolver = keyResolvers.values().iterator().next();
+		}
+		else {
+			defaultKeyResolver = keyResolvers.getOrDefault(PrincipalNameKeyResolver.BEAN_NAME,
+					new PrincipalNameKeyResolver());
+		}
+		return new ConsistentHashLoadBalancer(snapshots, stats, defaultKeyResolver, keyResolvers,
+				ConsistentHashLoadBalancer.DEFAULT_POINTS_PER_INSTANCE, properties.getHashLoadFactor());
+	}
+
 	// GlobalFilter beans
 
 	@Bean
-	@ConditionalOnBean(LoadBalancerClient.class)
-	public LoadBalancerClientFilter loadBalancerClientFilter(LoadBalancerClient client) {
-		return new LoadBalancerClientFilter(client);
+	@ConditionalOnBean(RouteLoadBalancers.class)
+	public LoadBalancerClientFilter loadBalancerClientFilter(RouteLoadBalancers loadBalancers) {
+		return new LoadBalancerClientFilter(loadBalancers);
 	}
 
 }
@@ -17,6 +17,7 @@
 
 package org.springframework.cloud.gateway.config;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -96,6 +97,25 @@ public class GatewayProperties {
 	 */
 	private List<FilterDefinition> defaultFilters = loadDefaults();
 
+	/**
+	 * Maximum number of route lookups cached by request method, host and path. 0
+	 * disables the cache.
+	 */
+	private int routeMatchCacheSize = 0;
+
+	/**
+	 * How long a route refresh waits for further refresh events before rebuilding the
+	 * routes. Events received while a rebuild runs are coalesced into one follow-up
+	 * rebuild either way.
+	 */
+	private Duration routeRefreshDebounce = Duration.ZERO;
+
+	/**
+	 * Number of threads converting route definitions to routes. Values above 1 convert
+	 * them in parallel in a dedicated fork-join pool, which pays off with many routes.
+	 */
+	private int routeCompilationParallelism = 1;
+
 	private ArrayList<FilterDefinition> loadDefaults() {
 		ArrayList<FilterDefinition> defaults = new ArrayList<>();
 		FilterDefinition definition = new FilterDefinition();
@@ -119,4 +139,28 @@ public class GatewayProperties {
 	public void setDefaultFilters(List<FilterDefinition> defaultFilters) {
 		this.defaultFilters = defaultFilters;
 	}
+
+	public int getRouteMatchCacheSize() {
+		return routeMatchCacheSize;
+	}
+
+	public void setRouteMatchCacheSize(int routeMatchCacheSize) {
+		this.routeMatchCacheSize = routeMatchCacheSize;
+	}
+
+	public Duration getRouteRefreshDebounce() {
+		return routeRefreshDebounce;
+	}
+
+	public void setRouteRefreshDebounce(Duration routeRefreshDebounce) {
+		this.routeRefreshDebounce = routeRefreshDebounce;
+	}
+
+	public int getRouteCompilationParallelism() {
+		return routeCompilationParallelism;
+	}
+
+	public void setRouteCompilationParallelism(int routeCompilationParallelism) {
+		this.routeCompilationParallelism = routeCompilationParallelism;
+	}
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import reactor.ipc.netty.resources.PoolResources;
+
+/**
+ * Configuration of the Netty {@code HttpClient} proxying requests.
+ * 通过 spring.cloud.gateway.httpclient 配置
+ */
+@ConfigurationProperties("spring.cloud.gateway.httpclient")
+public class HttpClientProperties {
+
+	/**
+	 * Pool of connections to the upstream hosts.
+	 */
+	private Pool pool = new Pool();
+
+	/**
+	 * Dedicated clients by name, used by the routes naming them in their
+	 * {@code http-client-profile} metadata.
+	 */
+	private Map<String, Profile> profiles = new LinkedHashMap<>();
+
+	public Pool getPool() {
+		return pool;
+	}
+
+	public void setPool(Pool pool) {
+		this.pool = pool;
+	}
+
+	public Map<String, Profile> getProfiles() {
+		return profiles;
+	}
+
+	public void setProfiles(Map<String, Profile> profiles) {
+		this.profiles = profiles;
+	}
+
+	/**
+	 * A client with its own connection pool, isolating the routes using it from the
+	 * others. Its response and idle timeouts are the defaults of the routes using it,
+	 * a route's own {@code response-timeout} and {@code idle-timeout} metadata take
+	 * precedence.
+	 */
+	public static class Profile {
+
+		/**
+		 * Pool of connections of this client only.
+		 */
+		private Pool pool = new Pool();
+
+		/**
+		 * How long connecting to an upstream host may take, the Netty default if not
+		 * set.
+		 */
+		private Duration connectTimeout;
+
+		/**
+		 * Default longest wait for the response headers once connected, for routes
+		 * using this client. None if not set.
+		 */
+		private Duration responseTimeout;
+
+		/**
+		 * Default longest time a connection may neither read nor write, for routes
+		 * using this client. None if not set.
+		 */
+		private Duration idleTimeout;
+
+		/**
+		 * Maximum number of requests proxied concurrently with this client, further
+		 * requests get a 503 response. 0 for no limit.
+		 */
+		private int maxInFlight = 0;
+
+		public Pool getPool() {
+			return pool;
+		}
+
+		public void setPool(Pool pool) {
+			this.pool = pool;
+		}
+
+		public Duration getConnectTimeout() {
+			return connectTimeout;
+		}
+
+		public void setConnectTimeout(Duration connectTimeout) {
+			this.connectTimeout = connectTimeout;
+		}
+
+		public Duration getResponseTimeout() {
+			return responseTimeout;
+		}
+
+		public void setResponseTimeout(Duration responseTimeout) {
+			this.responseTimeout = responseTimeout;
+		}
+
+		public Duration getIdleTimeout() {
+			return idleTimeout;
+		}
+
+		public void setIdleTimeout(Duration idleTimeout) {
+			this.idleTimeout = idleTimeout;
+		}
+
+		public int getMaxInFlight() {
+			return maxInFlight;
+		}
+
+		public void setMaxInFlight(int maxInFlight) {
+			this.maxInFlight = maxInFlight;
+		}
+
+		@Override
+		public String toString() {
+			return "Profile{" +
+					"pool=" + pool +
+					", connectTimeout=" + connectTimeout +
+					", responseTimeout=" + responseTimeout +
+					", idleTimeout=" + idleTimeout +
+					", maxInFlight=" + maxInFlight +
+					'}';
+		}
+	}
+
+	public static class Pool {
+
+		/**
+		 * Type of pool, an elastic pool opens as many connections as needed.
+		 */
+		private PoolType type = PoolType.ELASTIC;
+
+		/**
+		 * Name of the pool, used in logs.
+		 */
+		private String name = "proxy";
+
+		/**
+		 * Maximum number of connections per upstream host, only for fixed pools.
+		 */
+		private int maxConnections = PoolResources.DEFAULT_POOL_MAX_CONNECTION;
+
+		/**
+		 * Maximum number of requests waiting for a connection per upstream host, only
+		 * for fixed pools. Further requests fail right away.
+		 */
+		private int maxPendingAcquires = Integer.MAX_VALUE;
+
+		/**
+		 * How long a request waits for a connection, only for fixed pools.
+		 */
+		private Duration acquireTimeout = Duration.ofMillis(PoolResources.DEFAULT_POOL_ACQUIRE_TIMEOUT);
+
+		/**
+		 * How long a connection stays in the pool without being used before it is
+		 * closed, only for fixed pools. Idle connections are kept if not set.
+		 */
+		private Duration maxIdleTime;
+
+		public PoolType getType() {
+			return type;
+		}
+
+		public void setType(PoolType type) {
+			this.type = type;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getMaxConnections() {
+			return maxConnections;
+		}
+
+		public void setMaxConnections(int maxConnections) {
+			this.maxConnections = maxConnections;
+		}
+
+		public int getMaxPendingAcquires() {
+			return maxPendingAcquires;
+		}
+
+		public void setMaxPendingAcquires(int maxPendingAcquires) {
+			this.maxPendingAcquires = maxPendingAcquires;
+		}
+
+		public Duration getAcquireTimeout() {
+			return acquireTimeout;
+		}
+
+		public void setAcquireTimeout(Duration acquireTimeout) {
+			this.acquireTimeout = acquireTimeout;
+		}
+
+		public Duration getMaxIdleTime() {
+			return maxIdleTime;
+		}
+
+		public void setMaxIdleTime(Duration maxIdleTime) {
+			this.maxIdleTime = maxIdleTime;
+		}
+
+		@Override
+		public String toString() {
+			return "Pool{" +
+					"type=" + type +
+					", name='" + name + '\'' +
+					", maxConnections=" + maxConnections +
+					", maxPendingAcquires=" + maxPendingAcquires +
+					", acquireTimeout=" + acquireTimeout +
+					", maxIdleTime=" + maxIdleTime +
+					'}';
+		}
+	}
+
+	public enum PoolType {
+		/**
+		 * As many connections as needed.
+		 */
+		ELASTIC,
+		/**
+		 * A bounded pool per upstream host, see {@code HostPoolResources}.
+		 */
+		FIXED
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration of the balancing of {@code lb://} routes.
+ * 通过 spring.cloud.gateway.loadbalancer 配置
+ */
+@ConfigurationProperties("spring.cloud.gateway.loadbalancer")
+public class LoadBalancerProperties {
+
+	/**
+	 * How often the instances of the services in use are reloaded from the
+	 * DiscoveryClient.
+	 */
+	private Duration refreshInterval = Duration.ofSeconds(30);
+
+	/**
+	 * Balancer of the routes not naming one in their {@code load-balancer} metadata.
+	 * Defaults to round-robin, falling back to load-balancer-client for the services
+	 * the DiscoveryClient has no instance of when a LoadBalancerClient such as Ribbon
+	 * is available. load-balancer-client runs the blocking choice of the
+	 * LoadBalancerClient on the event loop.
+	 */
+	private String defaultBalancer;
+
+	/**
+	 * How long the latency average of an instance takes to decay by a factor of e,
+	 * the longer the more past responses weigh.
+	 */
+	private Duration latencyDecayTime = Duration.ofSeconds(10);
+
+	/**
+	 * Name of the KeyResolver bean keying the consistent-hash balancer, for routes not
+	 * naming one in their {@code hash-key-resolver} metadata. Defaults to the only
+	 * KeyResolver bean if there is one, the principal name resolver otherwise.
+	 */
+	private String hashKeyResolver;
+
+	/**
+	 * How many times the average number of requests in flight an instance may have
+	 * before the consistent-hash balancer moves keys off it.
+	 */
+	private double hashLoadFactor = 1.25;
+
+	/**
+	 * Passive health checking of the instances, taking failing ones out of balancing
+	 * for a while.
+	 */
+	private OutlierDetection outlierDetection = new OutlierDetection();
+
+	public Duration getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	public void setRefreshInterval(Duration refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+
+	public String getDefaultBalancer() {
+		return defaultBalancer;
+	}
+
+	public void setDefaultBalancer(String defaultBalancer) {
+		this.defaultBalancer = defaultBalancer;
+	}
+
+	public Duration getLatencyDecayTime() {
+		return latencyDecayTime;
+	}
+
+	public void setLatencyDecayTime(Duration latencyDecayTime) {
+		this.latencyDecayTime = latencyDecayTime;
+	}
+
+	public String getHashKeyResolver() {
+		return hashKeyResolver;
+	}
+
+	public void setHashKeyResolver(String hashKeyResolver) {
+		this.hashKeyResolver = hashKeyResolver;
+	}
+
+	public double getHashLoadFactor() {
+		return hashLoadFactor;
+	}
+
+	public void setHashLoadFactor(double hashLoadFactor) {
+		this.hashLoadFactor = hashLoadFactor;
+	}
+
+	public OutlierDetection getOutlierDetection() {
+		return outlierDetection;
+	}
+
+	public void setOutlierDetection(OutlierDetection outlierDetection) {
+		this.outlierDetection = outlierDetection;
+	}
+
+	@Override
+	public String toString() {
+		return "LoadBalancerProperties{" +
+				"refreshInterval=" + refreshInterval +
+				", defaultBalancer='" + defaultBalancer + '\'' +
+				", latencyDecayTime=" + latencyDecayTime +
+				", hashKeyResolver='" + hashKeyResolver + '\'' +
+				", hashLoadFactor=" + hashLoadFactor +
+				", outlierDetection=" + outlierDetection +
+				'}';
+	}
+
+	public static class OutlierDetection {
+
+		/**
+		 * Whether failing instances are ejected.
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * Failed requests in a row, errors or 5xx responses, ejecting an instance. 0 to
+		 * not eject on them.
+		 */
+		private int consecutiveFailures = 5;
+
+		/**
+		 * Requests of a success rate window.
+		 */
+		private int successRateRequests = 20;
+
+		/**
+		 * Success rate below which an instance is ejected at the end of a window. 0 to
+		 * not eject on it.
+		 */
+		private double minSuccessRate = 0.5;
+
+		/**
+		 * How long the first ejection of an instance lasts, every ejection in a row
+		 * doubling it.
+		 */
+		private Duration baseEjectionTime = Duration.ofSeconds(30);
+
+		/**
+		 * The longest an ejection lasts.
+		 */
+		private Duration maxEjectionTime = Duration.ofMinutes(5);
+
+		/**
+		 * Maximum percentage of the instances of a service ejected at once.
+		 */
+		private int maxEjectedPercent = 50;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getConsecutiveFailures() {
+			return consecutiveFailures;
+		}
+
+		public void setConsecutiveFailures(int consecutiveFailures) {
+			this.consecutiveFailures = consecutiveFailures;
+		}
+
+		public int getSuccessRateRequests() {
+			return successRateRequests;
+		}
+
+		public void setSuccessRateRequests(int successRateRequests) {
+			this.successRateRequests = successRateRequests;
+		}
+
+		public double getMinSuccessRate() {
+			return minSuccessRate;
+		}
+
+		public void setMinSuccessRate(double minSuccessRate) {
+			this.minSuccessRate = minSuccessRate;
+		}
+
+		public Duration getBaseEjectionTime() {
+			return baseEjectionTime;
+		}
+
+		public void setBaseEjectionTime(Duration baseEjectionTime) {
+			this.baseEjectionTime = baseEjectionTime;
+		}
+
+		public Duration getMaxEjectionTime() {
+			return maxEjectionTime;
+		}
+
+		public void setMaxEjectionTime(Duration maxEjectionTime) {
+			this.maxEjectionTime = maxEjectionTime;
+		}
+
+		public int getMaxEjectedPercent() {
+			return maxEjectedPercent;
+		}
+
+		public void setMaxEjectedPercent(int maxEjectedPercent) {
+			this.maxEjectedPercent = maxEjectedPercent;
+		}
+
+		@Override
+		public String toString() {
+			return "OutlierDetection{" +
+					"enabled=" + enabled +
+					", consecutiveFailures=" + consecutiveFailures +
+					", successRateRequests=" + successRateRequests +
+					", minSuccessRate=" + minSuccessRate +
+					", baseEjectionTime=" + baseEjectionTime +
+					", maxEjectionTime=" + maxEjectionTime +
+					", maxEjectedPercent=" + maxEjectedPercent +
+					'}';
+		}
+	}
+}
@@ -2,6 +2,7 @@ package org.springframework.cloud.gateway.filter;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
 import org.springframework.core.Ordered;
 import org.springframework.web.reactive.DispatcherHandler;
 import org.springframework.web.server.ServerWebExchange;
@@ -29,16 +30,17 @@ public class ForwardRoutingFilter implements GlobalFilter, Ordered {
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 	    // 获得 requestUrl
-		URI requestUrl = exchange.getRequiredAttribute(GATEWAY_REQUEST_URL_ATTR);
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		URI requestUrl = context.getRequiredRequestUrl();
 
 		// 判断是否能够处理
 		String scheme = requestUrl.getScheme();
-		if (isAlreadyRouted(exchange) || !scheme.equals("forward")) {
+		if (context.isAlreadyRouted() || !scheme.equals("forward")) {
 			return chain.filter(exchange);
 		}
 
 		// 设置已经路由
-		setAlreadyRouted(exchange);
+		context.setAlreadyRouted(true);
 
 		//TODO: translate url?
 
@@ -21,15 +21,16 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.gateway.loadbalancer.LoadBalancerClientAdapter;
+import org.springframework.cloud.gateway.loadbalancer.RouteLoadBalancers;
 import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
 import org.springframework.core.Ordered;
 import org.springframework.web.server.ServerWebExchange;
-import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
 
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.addOriginalRequestUrl;
 
 /**
@@ -40,10 +41,14 @@ public class LoadBalancerClientFilter implements GlobalFilter, Ordered {
 	private static final Log log = LogFactory.getLog(LoadBalancerClientFilter.class);
 	public static final int LOAD_BALANCER_CLIENT_FILTER_ORDER = 10100;
 
-	private final LoadBalancerClient loadBalancer;
+	private final RouteLoadBalancers loadBalancers;
 
 	public LoadBalancerClientFilter(LoadBalancerClient loadBalancer) {
-		this.loadBalancer = loadBalancer;
+		this(new RouteLoadBalancers(new LoadBalancerClientAdapter(loadBalancer)));
+	}
+
+	public LoadBalancerClientFilter(RouteLoadBalancers loadBalancers) {
+		this.loadBalancers = loadBalancers;
 	}
 
 	@Override
@@ -54,7 +59,8 @@ public class LoadBalancerClientFilter implements GlobalFilter, Ordered {
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 	    // 获得 URL
-		URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		URI url = context.getRequestUrl();
 		if (url == null || !url.getScheme().equals("lb")) {
 			return chain.filter(exchange);
 		}
@@ -64,28 +70,58 @@ public class LoadBalancerClientFilter implements GlobalFilter, Ordered {
 
 		log.trace("LoadBalancerClientFilter url before: " + url);
 
-		// 获取 服务实例
-		final ServiceInstance instance = loadBalancer.choose(url.getHost());
-		if (instance == null) {
-			throw new NotFoundException("Unable to find instance for " + url.getHost());
-		}
+		// 获取 服务实例，不阻塞
+		return this.loadBalancers.forRoute(context.getRoute())
+				.choose(url.getHost(), exchange)
+				.switchIfEmpty(Mono.defer(() ->
+						Mono.error(new NotFoundException("Unable to find instance for " + url.getHost()))))
+				.flatMap(instance -> {
+					URI requestUrl = reconstructURI(instance, url);
+					log.trace("LoadBalancerClientFilter url chosen: " + requestUrl);
+
+					// 添加 请求URI 到 GATEWAY_REQUEST_URL_ATTR
+					context.setRequestUrl(requestUrl);
+					// 供 NettyRoutingFilter 统计该实例
+					context.setServiceInstance(instance);
+
+					// 提交过滤器链继续过滤
+					return chain.filter(exchange);
+				});
+	}
 
-		/*URI uri = exchange.getRequest().getURI();
-		URI requestUrl = loadBalancer.reconstructURI(instance, uri);*/
-		//
-		URI requestUrl = UriComponentsBuilder.fromUri(url)
-				.scheme(instance.isSecure()? "https" : "http") //TODO: support websockets
-				.host(instance.getHost())
-				.port(instance.getPort())
-				.build(true)
-				.toUri();
-		log.trace("LoadBalancerClientFilter url chosen: " + requestUrl);
-
-        // 添加 请求URI 到 GATEWAY_REQUEST_URL_ATTR
-		exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, requestUrl);
-
-        // 提交过滤器链继续过滤
-		return chain.filter(exchange);
+	/**
+	 * @return the url with the scheme, host and port of the instance, the already
+	 * encoded path, query and fragment are kept as they are
+	 */
+	static URI reconstructURI(ServiceInstance instance, URI url) {
+		String host = instance.getHost();
+		// IPv6 地址需要加上 []
+		boolean ipv6 = host.indexOf(':') != -1 && !host.startsWith("[");
+		StringBuilder uri = new StringBuilder(64)
+				.append(instance.isSecure() ? "https" : "http") //TODO: support websockets
+				.append("://");
+		if (url.getRawUserInfo() != null) {
+			uri.append(url.getRawUserInfo()).append('@');
+		}
+		if (ipv6) {
+			uri.append('[').append(host).append(']');
+		}
+		else {
+			uri.append(host);
+		}
+		if (instance.getPort() >= 0) {
+			uri.append(':').append(instance.getPort());
+		}
+		if (url.getRawPath() != null) {
+			uri.append(url.getRawPath());
+		}
+		if (url.getRawQuery() != null) {
+			uri.append('?').append(url.getRawQuery());
+		}
+		if (url.getRawFragment() != null) {
+			uri.append('#').append(url.getRawFragment());
+		}
+		return URI.create(uri.toString());
 	}
 
 }
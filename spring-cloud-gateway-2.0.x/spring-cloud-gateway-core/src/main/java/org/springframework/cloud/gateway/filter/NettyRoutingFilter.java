@@ -17,17 +17,26 @@
 
 package org.springframework.cloud.gateway.filter;
 
-import io.netty.buffer.Unpooled;
-import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.HttpMethod;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.loadbalancer.OutlierDetector;
+import org.springframework.cloud.gateway.loadbalancer.ServiceInstanceStats;
+import org.springframework.cloud.gateway.support.FlushStrategy;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
+import org.springframework.cloud.gateway.support.NettyHeadersAdapter;
+import org.springframework.cloud.gateway.support.SpringHeadersAdapter;
+import org.springframework.cloud.gateway.support.UpstreamTimeoutException;
+import org.springframework.cloud.gateway.support.UpstreamTimeouts;
 import org.springframework.core.Ordered;
-import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.ipc.netty.NettyPipeline;
 import reactor.ipc.netty.http.client.HttpClient;
@@ -37,6 +46,7 @@ import java.net.URI;
 import java.util.List;
 import java.util.Map;
 
+import static org.springframework.cloud.gateway.support.FlushStrategy.REQUEST_FLUSH_STRATEGY;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.*;
 
 /**
@@ -44,10 +54,37 @@ import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.*
  */
 public class NettyRoutingFilter implements GlobalFilter, Ordered {
 
-	private final HttpClient httpClient;
+	private final RouteHttpClients httpClients;
+
+	private final ServiceInstanceStats instanceStats;
+
+	private final OutlierDetector outlierDetector;
 
 	public NettyRoutingFilter(HttpClient httpClient) {
-		this.httpClient = httpClient;
+		this(new RouteHttpClients(httpClient));
+	}
+
+	public NettyRoutingFilter(RouteHttpClients httpClients) {
+		this(httpClients, null);
+	}
+
+	/**
+	 * @param instanceStats stats of the instances {@code lb://} requests are balanced
+	 * to, {@code null} to keep none
+	 */
+	public NettyRoutingFilter(RouteHttpClients httpClients, ServiceInstanceStats instanceStats) {
+		this(httpClients, instanceStats, null);
+	}
+
+	/**
+	 * @param outlierDetector told of the outcome of {@code lb://} requests, an error or
+	 * a 5xx response being a failure, {@code null} to tell none
+	 */
+	public NettyRoutingFilter(RouteHttpClients httpClients, ServiceInstanceStats instanceStats,
+			OutlierDetector outlierDetector) {
+		this.httpClients = httpClients;
+		this.instanceStats = instanceStats;
+		this.outlierDetector = outlierDetector;
 	}
 
 	@Override
@@ -58,16 +95,37 @@ public class NettyRoutingFilter implements GlobalFilter, Ordered {
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 	    // 获得 requestUrl
-		URI requestUrl = exchange.getRequiredAttribute(GATEWAY_REQUEST_URL_ATTR);
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		URI requestUrl = context.getRequiredRequestUrl();
 
         // 判断是否能够处理
         String scheme = requestUrl.getScheme();
-		if (isAlreadyRouted(exchange) || (!scheme.equals("http") && !scheme.equals("https"))) {
+		if (context.isAlreadyRouted() || (!scheme.equals("http") && !scheme.equals("https"))) {
 			return chain.filter(exchange);
 		}
 
         // 设置已经路由
-		setAlreadyRouted(exchange);
+		context.setAlreadyRouted(true);
+
+		// 按 Route 选择 HttpClient，超出其并发上限时直接返回 503
+		RouteHttpClients.Bulkhead bulkhead = this.httpClients.forRoute(context.getRoute());
+		if (!bulkhead.tryAcquire()) {
+			exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+			return exchange.getResponse().setComplete();
+		}
+		// 响应写完后释放
+		context.onComplete(bulkhead::release);
+
+		// 负载均衡选中的实例，请求交给 HttpClient 时计入，响应写完后减去
+		ServiceInstance instance = context.getServiceInstance();
+		final ServiceInstanceStats.Stats instanceStats = instance != null && this.instanceStats != null
+				? this.instanceStats.getIfTracked(instance) : null;
+		final long start = System.nanoTime();
+		if (instanceStats != null) {
+			instanceStats.requestStarted();
+			context.onComplete(instanceStats::requestFinished);
+		}
+		final OutlierDetector outlierDetector = instance != null ? this.outlierDetector : null;
 
 		ServerHttpRequest request = exchange.getRequest();
 
@@ -77,13 +135,21 @@ public class NettyRoutingFilter implements GlobalFilter, Ordered {
 		// 获得 url
 		final String url = requestUrl.toString();
 
-		// Request Header
-		final DefaultHttpHeaders httpHeaders = new DefaultHttpHeaders();
-		request.getHeaders().forEach(httpHeaders::set);
+		// Request Header，直接视图，不复制到中间的 DefaultHttpHeaders
+		final SpringHeadersAdapter httpHeaders = new SpringHeadersAdapter(request.getHeaders());
+
+		// flush 策略，默认每个 chunk 都 flush
+		final FlushStrategy flushStrategy = FlushStrategy.forRoute(context.getRoute(), REQUEST_FLUSH_STRATEGY,
+				FlushStrategy.onEach());
+
+		// 超时，连接超时在拿到连接前计时，其余在连接上计时；Route 未设置的取 profile 的默认值
+		final UpstreamTimeouts timeouts = UpstreamTimeouts.forRoute(context.getRoute(), bulkhead.getTimeouts());
 
 		// 请求
-		return this.httpClient.request(method, url, req -> {
-			final HttpClientRequest proxyRequest = req.options(NettyPipeline.SendOptions::flushOnEach) // 【】
+		return timeouts.apply(connected -> bulkhead.getHttpClient().request(method, url, req -> {
+			connected.accept(req.context());
+			final HttpClientRequest proxyRequest = req.options(flushStrategy.isFlushOnEach()
+							? NettyPipeline.SendOptions::flushOnEach : NettyPipeline.SendOptions::flushOnBoundary)
 					.failOnClientError(false) // 是否请求失败，抛出异常
 					.headers(httpHeaders);
 
@@ -101,17 +167,40 @@ public class NettyRoutingFilter implements GlobalFilter, Ordered {
 			}
 
 			// Request Body
+			// 直接转发原生 ByteBuf，由 send 写出后 release，非 Netty 的 DataBuffer 才包装一层
+			Flux<ByteBuf> body = request.getBody()
+					.map(NettyDataBufferFactory::toByteBuf); // Flux<DataBuffer> => Flux<ByteBuf>
+			if (flushStrategy.isGrouped()) {
+				// 每组写完 flush 一次
+				return proxyRequest.sendHeaders() //I shouldn't need this
+						.sendGroups(flushStrategy.group(body, ByteBuf::readableBytes));
+			}
 			return proxyRequest.sendHeaders() //I shouldn't need this
-					.send(request.getBody()
-							.map(DataBuffer::asByteBuffer) // Flux<DataBuffer> => ByteBuffer
-							.map(Unpooled::wrappedBuffer)); // ByteBuffer => Flux<DataBuffer>
-		}).doOnNext(res -> {
+					.send(body);
+		})).doOnError(e -> {
+			if (outlierDetector != null) {
+				// 连接失败、超时等
+				outlierDetector.recordFailure(instance);
+			}
+		}).onErrorMap(UpstreamTimeoutException.class, e -> // 超时返回 504
+				new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, e.getMessage(), e)
+		).doOnNext(res -> {
+			if (instanceStats != null) {
+				// 到响应头为止的延迟
+				instanceStats.recordLatency(System.nanoTime() - start);
+			}
+			if (outlierDetector != null) {
+				if (res.status().code() >= 500) {
+					outlierDetector.recordFailure(instance);
+				}
+				else {
+					outlierDetector.recordSuccess(instance);
+				}
+			}
 			ServerHttpResponse response = exchange.getResponse();
 			// Response Header
 			// put headers and status so filters can modify the response
-			HttpHeaders headers = new HttpHeaders();
-			res.responseHeaders().forEach(entry -> headers.add(entry.getKey(), entry.getValue()));
-			response.getHeaders().putAll(headers);
+			response.getHeaders().putAll(new NettyHeadersAdapter(res.responseHeaders()));
 
 			// Response Status
 			response.setStatusCode(HttpStatus.valueOf(res.status().code()));
@@ -17,10 +17,14 @@
 
 package org.springframework.cloud.gateway.filter;
 
+import io.netty.buffer.ByteBuf;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.gateway.support.FlushStrategy;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
 import org.springframework.core.Ordered;
-import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.core.io.buffer.NettyDataBufferFactory;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.server.ServerWebExchange;
@@ -28,6 +32,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.ipc.netty.http.client.HttpClientResponse;
 
+import static org.springframework.cloud.gateway.support.FlushStrategy.RESPONSE_FLUSH_STRATEGY;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR;
 
 /**
@@ -59,13 +64,37 @@ public class NettyWriteResponseFilter implements GlobalFilter, Ordered {
 			ServerHttpResponse response = exchange.getResponse();
 
 			// 将 Netty Response 写回给客户端。
-			NettyDataBufferFactory factory = (NettyDataBufferFactory) response.bufferFactory();
-			//TODO: what if it's not netty
-			final Flux<NettyDataBuffer> body = clientResponse.receive()
+			// retain 之后由写出方 release，reactor-netty 在 onNext 之后会释放自己的引用
+			final Flux<DataBuffer> body = clientResponse.receive()
 					.retain() // ByteBufFlux => ByteBufFlux
-					.map(factory::wrap); // ByteBufFlux  => Flux<NettyDataBuffer>
-			return response.writeWith(body);
+					.map(byteBuf -> wrap(byteBuf, response)); // ByteBufFlux  => Flux<DataBuffer>
+			// flush 策略，默认写完手头的数据后 flush
+			FlushStrategy flushStrategy = FlushStrategy.forRoute(GatewayExchangeContext.get(exchange).getRoute(),
+					RESPONSE_FLUSH_STRATEGY, FlushStrategy.onBatch());
+			if (flushStrategy.equals(FlushStrategy.onBatch())) {
+				return response.writeWith(body);
+			}
+			return response.writeAndFlushWith(flushStrategy.group(body, DataBuffer::readableByteCount));
 		}));
 	}
 
+	/**
+	 * Hands a retained upstream buffer to the response. A Netty server response takes
+	 * the buffer as is and releases it once written, any other response gets a copy
+	 * and the buffer is released here.
+	 */
+	protected DataBuffer wrap(ByteBuf byteBuf, ServerHttpResponse response) {
+		DataBufferFactory bufferFactory = response.bufferFactory();
+		if (bufferFactory instanceof NettyDataBufferFactory) {
+			return ((NettyDataBufferFactory) bufferFactory).wrap(byteBuf);
+		}
+		try {
+			DataBuffer buffer = bufferFactory.allocateBuffer(byteBuf.readableBytes());
+			return buffer.write(byteBuf.nioBuffer());
+		}
+		finally {
+			byteBuf.release();
+		}
+	}
+
 }
@@ -40,6 +40,10 @@ public class OrderedGatewayFilter implements GatewayFilter, Ordered {
 		return this.delegate.filter(exchange, chain);
 	}
 
+	public GatewayFilter getDelegate() {
+		return delegate;
+	}
+
 	@Override
 	public int getOrder() {
 		return this.order;
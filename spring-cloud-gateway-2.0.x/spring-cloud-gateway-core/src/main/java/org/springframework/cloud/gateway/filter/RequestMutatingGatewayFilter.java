@@ -0,0 +1,46 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * A {@link GatewayFilter} that only changes the request and always continues the chain.
+ * It describes its changes on a {@link RequestMutation} instead of mutating the request
+ * itself, which lets adjacent filters of this kind share a single mutation.
+ *
+ * Attributes that depend on the mutated request should be set in
+ * {@link RequestMutation#afterBuild}.
+ */
+public interface RequestMutatingGatewayFilter extends GatewayFilter {
+
+	/**
+	 * @param exchange the current server exchange, the request of which may already
+	 * have been changed by {@code mutation}
+	 * @param mutation the changes to add to
+	 */
+	void mutate(ServerWebExchange exchange, RequestMutation mutation);
+
+	@Override
+	default Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+		RequestMutation mutation = new RequestMutation(exchange.getRequest());
+		mutate(exchange, mutation);
+		return chain.filter(mutation.apply(exchange));
+	}
+}
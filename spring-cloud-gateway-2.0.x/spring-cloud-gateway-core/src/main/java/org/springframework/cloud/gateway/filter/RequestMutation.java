@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Changes to a request collected from one or more {@link RequestMutatingGatewayFilter}s
+ * and applied with a single {@link ServerHttpRequest#mutate()}, so the headers are
+ * copied and the request decorated once however many filters contribute.
+ *
+ * @see RequestMutatingGatewayFilter
+ */
+public class RequestMutation {
+
+	private final ServerHttpRequest request;
+
+	private final List<Consumer<ServerHttpRequest.Builder>> changes = new ArrayList<>();
+
+	private final List<Consumer<ServerHttpRequest>> callbacks = new ArrayList<>();
+
+	/**
+	 * 当前的 URI，修改 path 之后在需要时重新计算
+	 */
+	private URI uri;
+
+	private String path;
+
+	public RequestMutation(ServerHttpRequest request) {
+		this.request = request;
+		this.uri = request.getURI();
+	}
+
+	/**
+	 * @see ServerHttpRequest.Builder#header(String, String)
+	 */
+	public RequestMutation header(String name, String value) {
+		this.changes.add(builder -> builder.header(name, value));
+		return this;
+	}
+
+	/**
+	 * @see ServerHttpRequest.Builder#headers(Consumer)
+	 */
+	public RequestMutation headers(Consumer<HttpHeaders> headersConsumer) {
+		this.changes.add(builder -> builder.headers(headersConsumer));
+		return this;
+	}
+
+	/**
+	 * @see ServerHttpRequest.Builder#path(String)
+	 */
+	public RequestMutation path(String path) {
+		this.path = path;
+		this.uri = null;
+		this.changes.add(builder -> builder.path(path));
+		return this;
+	}
+
+	/**
+	 * @return the URI of the request with the changes so far, as the filters before
+	 * would have left it
+	 */
+	public URI getURI() {
+		if (this.uri == null) {
+			// 只有连续修改 path 时才会走到这里
+			this.uri = this.request.mutate().path(this.path).build().getURI();
+		}
+		return this.uri;
+	}
+
+	/**
+	 * Registers a callback run with the mutated request once it is built, in the order
+	 * of registration, e.g. to expose its URI as an exchange attribute.
+	 */
+	public RequestMutation afterBuild(Consumer<ServerHttpRequest> callback) {
+		this.callbacks.add(callback);
+		return this;
+	}
+
+	/**
+	 * Builds the mutated request and runs the callbacks.
+	 * @return the exchange with the mutated request
+	 */
+	public ServerWebExchange apply(ServerWebExchange exchange) {
+		ServerHttpRequest.Builder builder = this.request.mutate();
+		for (Consumer<ServerHttpRequest.Builder> change : this.changes) {
+			change.accept(builder);
+		}
+		ServerHttpRequest mutated = builder.build();
+		for (Consumer<ServerHttpRequest> callback : this.callbacks) {
+			callback.accept(mutated);
+		}
+		return exchange.mutate().request(mutated).build();
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.resources.PoolResources;
+
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteValidator;
+import org.springframework.cloud.gateway.support.UpstreamTimeouts;
+import org.springframework.util.Assert;
+
+/**
+ * The {@link HttpClient} each route is proxied with. A route naming a profile in its
+ * {@link #HTTP_CLIENT_PROFILE} metadata gets the {@link Bulkhead} registered for that
+ * profile, with its own connection pool, a limit on concurrent requests and default
+ * timeouts, so that a slow backend only uses up its own resources. Other routes share
+ * the default client.
+ *
+ * Profiles are registered at startup, lookups do not lock. As a {@link RouteValidator}
+ * it rejects routes naming an unknown profile before they are served.
+ */
+public class RouteHttpClients implements RouteValidator {
+
+	/**
+	 * Route metadata with the name of the client profile of the route
+	 */
+	public static final String HTTP_CLIENT_PROFILE = "http-client-profile";
+
+	private final Bulkhead defaultBulkhead;
+
+	private final Map<String, Bulkhead> profiles = new LinkedHashMap<>();
+
+	public RouteHttpClients(HttpClient defaultClient) {
+		this.defaultBulkhead = new Bulkhead("default", defaultClient, null, 0, UpstreamTimeouts.none());
+	}
+
+	/**
+	 * @param pool the connection pool of the client, disposed with this registry, or
+	 * {@code null} if it is managed elsewhere
+	 * @param maxInFlight maximum requests proxied concurrently, 0 for no limit
+	 */
+	public RouteHttpClients register(String profile, HttpClient client, PoolResources pool, int maxInFlight) {
+		return register(profile, client, pool, maxInFlight, UpstreamTimeouts.none());
+	}
+
+	/**
+	 * @param timeouts the default timeouts of the routes using the profile
+	 */
+	public RouteHttpClients register(String profile, HttpClient client, PoolResources pool, int maxInFlight,
+			UpstreamTimeouts timeouts) {
+		Assert.hasText(profile, "profile must not be empty");
+		Assert.isTrue(maxInFlight >= 0, "maxInFlight must not be negative");
+		Assert.notNull(timeouts, "timeouts must not be null");
+		this.profiles.put(profile, new Bulkhead(profile, client, pool, maxInFlight, timeouts));
+		return this;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the route names an unknown profile
+	 */
+	public Bulkhead forRoute(Route route) {
+		Object profile = route != null ? route.getMetadata().get(HTTP_CLIENT_PROFILE) : null;
+		if (profile == null) {
+			return this.defaultBulkhead;
+		}
+		Bulkhead bulkhead = this.profiles.get(profile.toString());
+		if (bulkhead == null) {
+			throw new IllegalArgumentException("Unknown http client profile '" + profile + "' of route " + route.getId());
+		}
+		return bulkhead;
+	}
+
+	@Override
+	public void validate(Route route) {
+		forRoute(route);
+	}
+
+	public Bulkhead getDefault() {
+		return this.defaultBulkhead;
+	}
+
+	public Map<String, Bulkhead> getProfiles() {
+		return Collections.unmodifiableMap(this.profiles);
+	}
+
+	public void dispose() {
+		for (Bulkhead bulkhead : this.profiles.values()) {
+			if (bulkhead.poolResources != null) {
+				bulkhead.poolResources.dispose();
+			}
+		}
+	}
+
+	/**
+	 * A client and the count of requests it is proxying.
+	 */
+	public static class Bulkhead {
+
+		private final String name;
+
+		private final HttpClient httpClient;
+
+		private final PoolResources poolResources;
+
+		private final int maxInFlight;
+
+		private final UpstreamTimeouts timeouts;
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private final AtomicLong rejected = new AtomicLong();
+
+		private Bulkhead(String name, HttpClient httpClient, PoolResources poolResources, int maxInFlight,
+				UpstreamTimeouts timeouts) {
+			this.name = name;
+			this.httpClient = httpClient;
+			this.poolResources = poolResources;
+			this.maxInFlight = maxInFlight;
+			this.timeouts = timeouts;
+		}
+
+		/**
+		 * Counts a request in, to be followed by {@link #release()} once it is done.
+		 * @return {@code false} if the client is proxying its maximum of requests
+		 * already, the request is not counted then
+		 */
+		public boolean tryAcquire() {
+			if (this.maxInFlight == 0) {
+				this.inFlight.incrementAndGet();
+				return true;
+			}
+			for (;;) {
+				int current = this.inFlight.get();
+				if (current >= this.maxInFlight) {
+					this.rejected.incrementAndGet();
+					return false;
+				}
+				if (this.inFlight.compareAndSet(current, current + 1)) {
+					return true;
+				}
+			}
+		}
+
+		public void release() {
+			this.inFlight.decrementAndGet();
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public HttpClient getHttpClient() {
+			return this.httpClient;
+		}
+
+		/**
+		 * @return the connection pool of the client, {@code null} for the default client
+		 */
+		public PoolResources getPoolResources() {
+			return this.poolResources;
+		}
+
+		public int getMaxInFlight() {
+			return this.maxInFlight;
+		}
+
+		/**
+		 * @return the default timeouts of the routes using the client
+		 */
+		public UpstreamTimeouts getTimeouts() {
+			return this.timeouts;
+		}
+
+		public int getInFlight() {
+			return this.inFlight.get();
+		}
+
+		/**
+		 * @return the number of requests refused because of {@link #getMaxInFlight()}
+		 */
+		public long getRejected() {
+			return this.rejected.get();
+		}
+
+		@Override
+		public String toString() {
+			return "Bulkhead{name='" + this.name + "', maxInFlight=" + this.maxInFlight + ", inFlight="
+					+ this.inFlight + ", rejected=" + this.rejected + "}";
+		}
+	}
+}
@@ -20,6 +20,7 @@ package org.springframework.cloud.gateway.filter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
 import org.springframework.core.Ordered;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -27,8 +28,6 @@ import reactor.core.publisher.Mono;
 
 import java.net.URI;
 
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
 
 /**
  * @author Spencer Gibb
@@ -46,7 +45,8 @@ public class RouteToRequestUrlFilter implements GlobalFilter, Ordered {
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 	    // 获得 Route
-		Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		Route route = context.getRoute();
 		if (route == null) {
 			return chain.filter(exchange);
 		}
@@ -57,7 +57,7 @@ public class RouteToRequestUrlFilter implements GlobalFilter, Ordered {
 				.build(true) // encoded=true
 				.toUri();
 		// 设置 requestUrl 到 GATEWAY_REQUEST_URL_ATTR {@link RewritePathGatewayFilterFactory}
-		exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, requestUrl);
+		context.setRequestUrl(requestUrl);
 		// 提交过滤器链继续过滤
 		return chain.filter(exchange);
 	}
@@ -17,6 +17,7 @@
 
 package org.springframework.cloud.gateway.filter;
 
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
 import org.springframework.core.Ordered;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -52,16 +53,17 @@ public class WebClientHttpRoutingFilter implements GlobalFilter, Ordered {
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 	    // 获得 requestUrl
-		URI requestUrl = exchange.getRequiredAttribute(GATEWAY_REQUEST_URL_ATTR);
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		URI requestUrl = context.getRequiredRequestUrl();
 
         // 判断是否能够处理
         String scheme = requestUrl.getScheme();
-		if (isAlreadyRouted(exchange) || (!scheme.equals("http") && !scheme.equals("https"))) {
+		if (context.isAlreadyRouted() || (!scheme.equals("http") && !scheme.equals("https"))) {
 			return chain.filter(exchange);
 		}
 
         // 设置已经路由
-		setAlreadyRouted(exchange);
+		context.setAlreadyRouted(true);
 
 		ServerHttpRequest request = exchange.getRequest();
 
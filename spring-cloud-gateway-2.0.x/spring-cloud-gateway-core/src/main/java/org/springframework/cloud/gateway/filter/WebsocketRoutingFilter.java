@@ -1,5 +1,6 @@
 package org.springframework.cloud.gateway.filter;
 
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
 import org.springframework.core.Ordered;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.reactive.socket.WebSocketHandler;
@@ -44,16 +45,17 @@ public class WebsocketRoutingFilter implements GlobalFilter, Ordered {
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
         // 获得 requestUrl
-		URI requestUrl = exchange.getRequiredAttribute(GATEWAY_REQUEST_URL_ATTR);
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		URI requestUrl = context.getRequiredRequestUrl();
 
         // 判断是否能够处理
 		String scheme = requestUrl.getScheme();
-		if (isAlreadyRouted(exchange) || (!scheme.equals("ws") && !scheme.equals("wss"))) {
+		if (context.isAlreadyRouted() || (!scheme.equals("ws") && !scheme.equals("wss"))) {
 			return chain.filter(exchange);
 		}
 
         // 设置已经路由
-		setAlreadyRouted(exchange);
+		context.setAlreadyRouted(true);
 
 		// 处理连接请求
 		return this.webSocketService.handleRequest(exchange,
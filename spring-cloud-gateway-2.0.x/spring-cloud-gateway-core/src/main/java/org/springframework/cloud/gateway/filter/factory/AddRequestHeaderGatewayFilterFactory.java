@@ -19,7 +19,7 @@ package org.springframework.cloud.gateway.filter.factory;
 
 import org.springframework.tuple.Tuple;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
-import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.cloud.gateway.filter.RequestMutatingGatewayFilter;
 
 import java.util.Arrays;
 import java.util.List;
@@ -39,14 +39,7 @@ public class AddRequestHeaderGatewayFilterFactory implements GatewayFilterFactor
 		String name = args.getString(NAME_KEY);
 		String value = args.getString(VALUE_KEY);
 
-		return (exchange, chain) -> { // GatewayFilter
-            // 创建新的 ServerHttpRequest
-			ServerHttpRequest request = exchange.getRequest().mutate()
-					.header(name, value)
-					.build();
-
-			// 创建新的 ServerWebExchange ，提交过滤器链继续过滤
-			return chain.filter(exchange.mutate().request(request).build());
-		};
+		// 相邻的 RequestMutatingGatewayFilter 合并成一次修改
+		return (RequestMutatingGatewayFilter) (exchange, mutation) -> mutation.header(name, value);
 	}
 }
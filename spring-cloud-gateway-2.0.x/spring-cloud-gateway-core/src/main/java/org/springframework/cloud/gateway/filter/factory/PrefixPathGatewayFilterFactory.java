@@ -20,13 +20,14 @@ package org.springframework.cloud.gateway.filter.factory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
-import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.cloud.gateway.filter.RequestMutatingGatewayFilter;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
 import org.springframework.tuple.Tuple;
 
+import java.net.URI;
 import java.util.Arrays;
 import java.util.List;
 
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.addOriginalRequestUrl;
 
 /**
@@ -48,22 +49,19 @@ public class PrefixPathGatewayFilterFactory implements GatewayFilterFactory {
 	public GatewayFilter apply(Tuple args) {
 		final String prefix = args.getString(PREFIX_KEY);
 
-		return (exchange, chain) -> {
-			ServerHttpRequest req = exchange.getRequest();
-			addOriginalRequestUrl(exchange, req.getURI());
-			String newPath = prefix + req.getURI().getPath();
+		return (RequestMutatingGatewayFilter) (exchange, mutation) -> {
+			URI uri = mutation.getURI();
+			addOriginalRequestUrl(exchange, uri);
+			String newPath = prefix + uri.getPath();
 
-			ServerHttpRequest request = req.mutate()
-					.path(newPath) // 设置 Path
-					.build();
+			mutation.path(newPath) // 设置 Path
+					.afterBuild(request -> {
+						GatewayExchangeContext.get(exchange).setRequestUrl(request.getURI());
 
-			exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, request.getURI());
-
-			if (log.isTraceEnabled()) {
-				log.trace("Prefixed URI with: "+prefix+" -> "+request.getURI());
-			}
-
-			return chain.filter(exchange.mutate().request(request).build());
+						if (log.isTraceEnabled()) {
+							log.trace("Prefixed URI with: "+prefix+" -> "+request.getURI());
+						}
+					});
 		};
 	}
 }
@@ -18,9 +18,9 @@
 package org.springframework.cloud.gateway.filter.factory;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
-import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.tuple.Tuple;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.RequestMutatingGatewayFilter;
 
 import java.util.Arrays;
 import java.util.List;
@@ -67,18 +67,10 @@ public class RemoveNonProxyHeadersGatewayFilterFactory implements GatewayFilterF
 	public GatewayFilter apply(Tuple args) {
 		//TODO: support filter args
 
-		return (exchange, chain) -> {
-			// 创建新的 ServerHttpRequest
-			ServerHttpRequest request = exchange.getRequest().mutate()
-					.headers(httpHeaders -> {
-						for (String header : this.headers) {
-							httpHeaders.remove(header); // 移除
-						}
-					})
-					.build();
-
-            // 创建新的 ServerWebExchange ，提交过滤器链继续过滤
-			return chain.filter(exchange.mutate().request(request).build());
-		};
+		return (RequestMutatingGatewayFilter) (exchange, mutation) -> mutation.headers(httpHeaders -> {
+			for (String header : this.headers) {
+				httpHeaders.remove(header); // 移除
+			}
+		});
 	}
 }
@@ -19,7 +19,7 @@ package org.springframework.cloud.gateway.filter.factory;
 
 import org.springframework.tuple.Tuple;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
-import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.cloud.gateway.filter.RequestMutatingGatewayFilter;
 
 import java.util.Arrays;
 import java.util.List;
@@ -38,12 +38,7 @@ public class RemoveRequestHeaderGatewayFilterFactory implements GatewayFilterFac
 	public GatewayFilter apply(Tuple args) {
 		final String header = args.getString(NAME_KEY);
 
-		return (exchange, chain) -> {
-			ServerHttpRequest request = exchange.getRequest().mutate()
-					.headers(httpHeaders -> httpHeaders.remove(header))
-					.build();
-
-			return chain.filter(exchange.mutate().request(request).build());
-		};
+		return (RequestMutatingGatewayFilter) (exchange, mutation) ->
+				mutation.headers(httpHeaders -> httpHeaders.remove(header));
 	}
 }
@@ -18,7 +18,8 @@
 package org.springframework.cloud.gateway.filter.factory;
 
 import org.springframework.cloud.gateway.filter.GatewayFilter;
-import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.cloud.gateway.filter.RequestMutatingGatewayFilter;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
 import org.springframework.tuple.Tuple;
 import org.springframework.web.util.UriTemplate;
 import org.springframework.web.util.pattern.PathPattern.PathMatchInfo;
@@ -49,10 +50,9 @@ public class SetPathGatewayFilterFactory implements GatewayFilterFactory {
 		String template = args.getString(TEMPLATE_KEY);
 		UriTemplate uriTemplate = new UriTemplate(template);
 
-		return (exchange, chain) -> {
+		return (RequestMutatingGatewayFilter) (exchange, mutation) -> {
 			PathMatchInfo variables = exchange.getAttribute(URI_TEMPLATE_VARIABLES_ATTRIBUTE);
-			ServerHttpRequest req = exchange.getRequest();
-			addOriginalRequestUrl(exchange, req.getURI());
+			addOriginalRequestUrl(exchange, mutation.getURI());
 			Map<String, String> uriVariables;
 
 			if (variables != null) {
@@ -65,13 +65,9 @@ public class SetPathGatewayFilterFactory implements GatewayFilterFactory {
 			URI uri = uriTemplate.expand(uriVariables);
 			String newPath = uri.getPath();
 
-			exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, uri);
-
-			ServerHttpRequest request = req.mutate()
-					.path(newPath)
-					.build();
-
-			return chain.filter(exchange.mutate().request(request).build());
+			// 与 PrefixPath 一样在构建之后设置，保持多个 Path 过滤器合并后的写入顺序
+			mutation.path(newPath)
+					.afterBuild(request -> GatewayExchangeContext.get(exchange).setRequestUrl(uri));
 		};
 	}
 }
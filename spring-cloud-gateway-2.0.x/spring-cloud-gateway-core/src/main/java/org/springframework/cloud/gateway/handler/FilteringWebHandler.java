@@ -23,8 +23,14 @@ import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.RequestMutatingGatewayFilter;
+import org.springframework.cloud.gateway.filter.RequestMutation;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
 import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.RoutesRefreshedEvent;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 import org.springframework.web.server.ServerWebExchange;
@@ -32,10 +38,13 @@ import org.springframework.web.server.WebHandler;
 import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
 
 /**
  * WebHandler that delegates to a chain of {@link GlobalFilter} instances and
@@ -53,8 +62,26 @@ public class FilteringWebHandler implements WebHandler {
      */
 	private final List<GatewayFilter> globalFilters;
 
+	private final RouteLocator routeLocator;
+
+	/**
+	 * 每个 Route 排好序的全局过滤器 + Route 过滤器，key 为 Route 实例。
+	 * 路由刷新时整体替换，处理请求时只读
+	 */
+	private volatile Map<Route, GatewayFilter[]> combinedFiltersForRoute = Collections.emptyMap();
+
 	public FilteringWebHandler(List<GlobalFilter> globalFilters) {
+		this(globalFilters, null);
+	}
+
+	/**
+	 * @param routeLocator routes to build the filter chains of up front, chains of other
+	 * routes are built on each request
+	 */
+	public FilteringWebHandler(List<GlobalFilter> globalFilters, RouteLocator routeLocator) {
 		this.globalFilters = loadFilters(globalFilters);
+		this.routeLocator = routeLocator;
+		handleRefresh();
 	}
 
 	private static List<GatewayFilter> loadFilters(List<GlobalFilter> filters) {
@@ -69,42 +96,94 @@ public class FilteringWebHandler implements WebHandler {
 				}).collect(Collectors.toList());
 	}
 
-    /* TODO: relocate @EventListener(RefreshRoutesEvent.class)
-    void handleRefresh() {
-        this.combinedFiltersForRoute.clear();
-    }*/
+	// CachingRouteLocator 换上新路由之后重建
+	@EventListener(RoutesRefreshedEvent.class)
+	/* for testing */ void handleRefresh() {
+		if (this.routeLocator == null) {
+			return;
+		}
+		this.routeLocator.getRoutes().collectList().subscribe(routes -> {
+			Map<Route, GatewayFilter[]> previous = this.combinedFiltersForRoute;
+			Map<Route, GatewayFilter[]> combinedFilters = new IdentityHashMap<>(routes.size());
+			for (Route route : routes) {
+				GatewayFilter[] combined = previous.get(route);
+				// 未变化的 Route 复用上一次的结果
+				combinedFilters.put(route, combined != null ? combined : combineFilters(route));
+			}
+			this.combinedFiltersForRoute = combinedFilters;
+		}, e -> logger.error("Error building the filter chains of the routes", e));
+	}
 
 	@Override
 	public Mono<Void> handle(ServerWebExchange exchange) {
 	    // 获得 Route
-		Route route = exchange.getRequiredAttribute(GATEWAY_ROUTE_ATTR);
-		// 获得 GatewayFilter
-		List<GatewayFilter> gatewayFilters = route.getFilters();
-		List<GatewayFilter> combined = new ArrayList<>(this.globalFilters);
-		combined.addAll(gatewayFilters);
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		Route route = context.getRequiredRoute();
+		// 获得排好序的 GatewayFilter
+		GatewayFilter[] combined = this.combinedFiltersForRoute.get(route);
+		if (combined == null) {
+			combined = combineFilters(route);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Sorted gatewayFilterFactories: " + Arrays.toString(combined));
+		}
+
+		// 创建 DefaultGatewayFilterChain，结束后（包括响应写完、失败、取消）执行回调
+		return new DefaultGatewayFilterChain(combined).filter(exchange)
+				.doFinally(signal -> context.complete());
+	}
 
+	private GatewayFilter[] combineFilters(Route route) {
+		List<GatewayFilter> combined = new ArrayList<>(this.globalFilters);
+		combined.addAll(route.getFilters());
 		// 排序
-		//TODO: needed or cached?
 		AnnotationAwareOrderComparator.sort(combined);
-		logger.debug("Sorted gatewayFilterFactories: "+ combined);
+		return fuse(combined).toArray(new GatewayFilter[0]);
+	}
+
+	/**
+	 * Merges runs of adjacent {@link RequestMutatingGatewayFilter}s so that they mutate
+	 * the request once.
+	 */
+	/* for testing */ static List<GatewayFilter> fuse(List<GatewayFilter> sorted) {
+		List<GatewayFilter> fused = new ArrayList<>(sorted.size());
+		List<RequestMutatingGatewayFilter> run = new ArrayList<>();
+		for (GatewayFilter filter : sorted) {
+			GatewayFilter unwrapped = filter instanceof OrderedGatewayFilter
+					? ((OrderedGatewayFilter) filter).getDelegate() : filter;
+			if (unwrapped instanceof RequestMutatingGatewayFilter) {
+				run.add((RequestMutatingGatewayFilter) unwrapped);
+				continue;
+			}
+			addRun(fused, run);
+			fused.add(filter);
+		}
+		addRun(fused, run);
+		return fused;
+	}
 
-		// 创建 DefaultGatewayFilterChain
-		return new DefaultGatewayFilterChain(combined).filter(exchange);
+	private static void addRun(List<GatewayFilter> fused, List<RequestMutatingGatewayFilter> run) {
+		if (run.size() == 1) {
+			fused.add(run.get(0));
+		} else if (run.size() > 1) {
+			fused.add(new FusedRequestMutatingGatewayFilter(new ArrayList<>(run)));
+		}
+		run.clear();
 	}
 
 	private static class DefaultGatewayFilterChain implements GatewayFilterChain {
 
 		private int index;
-		private final List<GatewayFilter> filters;
+		private final GatewayFilter[] filters;
 
-		public DefaultGatewayFilterChain(List<GatewayFilter> filters) {
+		public DefaultGatewayFilterChain(GatewayFilter[] filters) {
 			this.filters = filters;
 		}
 
 		@Override
 		public Mono<Void> filter(ServerWebExchange exchange) {
-			if (this.index < filters.size()) {
-				GatewayFilter filter = filters.get(this.index++);
+			if (this.index < filters.length) {
+				GatewayFilter filter = filters[this.index++];
 				return filter.filter(exchange, this);
 			} else {
 				return Mono.empty(); // complete
@@ -112,6 +191,30 @@ public class FilteringWebHandler implements WebHandler {
 		}
 	}
 
+	private static class FusedRequestMutatingGatewayFilter implements RequestMutatingGatewayFilter {
+
+		private final List<RequestMutatingGatewayFilter> delegates;
+
+		FusedRequestMutatingGatewayFilter(List<RequestMutatingGatewayFilter> delegates) {
+			this.delegates = delegates;
+		}
+
+		@Override
+		public void mutate(ServerWebExchange exchange, RequestMutation mutation) {
+			for (RequestMutatingGatewayFilter delegate : this.delegates) {
+				delegate.mutate(exchange, mutation);
+			}
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder("FusedRequestMutatingGatewayFilter{");
+			sb.append("delegates=").append(delegates);
+			sb.append('}');
+			return sb.toString();
+		}
+	}
+
 	private static class GatewayFilterAdapter implements GatewayFilter {
 
 		private final GlobalFilter delegate;
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Decorates the exchange with a {@link GatewayExchangeContext} before it reaches
+ * {@link RoutePredicateHandlerMapping}, so the gateway can use typed fields instead of
+ * looking up its attributes by name.
+ */
+public class GatewayExchangeContextWebFilter implements WebFilter, Ordered {
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		return chain.filter(GatewayExchangeContext.decorate(exchange));
+	}
+
+	@Override
+	public int getOrder() {
+		// 尽早包装，之后的 WebFilter 都能用到
+		return Ordered.HIGHEST_PRECEDENCE;
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.cloud.gateway.handler.support.RequestView;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bounded cache of route lookups, keyed on the request method, host and path.
+ *
+ * Only routes whose {@link Route#getPredicateDescriptor() descriptor} is cacheable are
+ * remembered. Routes with other predicates are still tested on every lookup, as long
+ * as they come before the cached route.
+ *
+ * Entries belong to a {@link RouteLocator#getGeneration() generation} of the routes,
+ * a lookup against newer routes starts a new set of entries and a lookup against
+ * older ones is not cached. Hits take no lock. Once full, the least recently used of
+ * a sample of entries is evicted, which approximates LRU.
+ *
+ * @see org.springframework.cloud.gateway.handler.predicate.PredicateDescriptor#isCacheable()
+ */
+public class RouteMatchCache {
+
+	/**
+	 * Entries compared per eviction
+	 */
+	private static final int EVICTION_SAMPLE_SIZE = 8;
+
+	private final int maxSize;
+
+	/**
+	 * Replaced as a whole on {@link #clear()} and on a new generation, so lookups still
+	 * running against the old routes can not store their results in the new entries.
+	 */
+	private final AtomicReference<Entries> entries = new AtomicReference<>(new Entries(0));
+
+	/**
+	 * Where the last eviction sample ended, so that samples go round the entries,
+	 * guarded by itself
+	 */
+	private final EvictionCursor evictionCursor = new EvictionCursor();
+
+	public RouteMatchCache(int maxSize) {
+		Assert.isTrue(maxSize > 0, "maxSize must be greater than 0");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the first of the candidates whose predicate matches the exchange.
+	 * @param exchange the current exchange
+	 * @param candidates the routes that may match, in route order
+	 */
+	public Mono<Route> lookup(ServerWebExchange exchange, Flux<Route> candidates) {
+		return lookup(exchange, 0, candidates);
+	}
+
+	/**
+	 * Returns the first of the candidates whose predicate matches the exchange.
+	 * @param exchange the current exchange
+	 * @param generation the generation of the routes, read before the candidates
+	 * @param candidates the routes that may match, in route order
+	 */
+	public Mono<Route> lookup(ServerWebExchange exchange, long generation, Flux<Route> candidates) {
+		Entries entries = entries(generation);
+		if (entries == null) {
+			// 比缓存更旧的路由，不缓存
+			return candidates.filter(route -> route.getPredicate().test(exchange)).next();
+		}
+		List<String> key = key(RequestView.get(exchange));
+
+		Entry cached = entries.map.get(key);
+		if (cached == null) {
+			return match(exchange, candidates, entries, key);
+		}
+		cached.lastAccess = System.nanoTime();
+		Route cachedRoute = cached.route;
+		if (cachedRoute == null) {
+			return candidates.filter(route -> !isCacheable(route))
+					.filter(route -> route.getPredicate().test(exchange))
+					.next();
+		}
+		return Mono.defer(() -> {
+			boolean[] found = new boolean[1];
+			// the cached route is tested again for the attributes its predicate sets
+			return candidates.takeUntil(route -> found[0] = route == cachedRoute)
+					.filter(route -> route == cachedRoute || !isCacheable(route))
+					.filter(route -> route.getPredicate().test(exchange))
+					.next()
+					// 缓存的 Route 不在候选中时重新匹配并覆盖
+					.switchIfEmpty(Mono.defer(() -> found[0] ? Mono.empty()
+							: match(exchange, candidates, entries, key)));
+		});
+	}
+
+	private Mono<Route> match(ServerWebExchange exchange, Flux<Route> candidates, Entries entries,
+			List<String> key) {
+		return candidates.filter(route -> route.getPredicate().test(exchange))
+				.next()
+				.doOnSuccess(route -> {
+					if (route == null) {
+						put(entries, key, null);
+					} else if (isCacheable(route)) {
+						put(entries, key, route);
+					}
+					// a match on a non cacheable route hides the cacheable one
+				});
+	}
+
+	/**
+	 * @return the entries of the generation, {@code null} if it is older than the
+	 * cached one
+	 */
+	private Entries entries(long generation) {
+		for (;;) {
+			Entries entries = this.entries.get();
+			if (entries.generation == generation) {
+				return entries;
+			}
+			if (generation < entries.generation) {
+				return null;
+			}
+			if (this.entries.compareAndSet(entries, new Entries(generation))) {
+				return this.entries.get();
+			}
+		}
+	}
+
+	private void put(Entries entries, List<String> key, Route route) {
+		entries.map.put(key, new Entry(route));
+		if (entries.map.size() > this.maxSize) {
+			evict(entries);
+		}
+	}
+
+	private void evict(Entries entries) {
+		// 只在插入时加锁，命中不加锁
+		synchronized (this.evictionCursor) {
+			while (entries.map.size() > this.maxSize) {
+				Map.Entry<List<String>, Entry> oldest = null;
+				for (int i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+					Map.Entry<List<String>, Entry> next = this.evictionCursor.next(entries);
+					if (next == null) {
+						break;
+					}
+					if (oldest == null || next.getValue().lastAccess - oldest.getValue().lastAccess < 0) {
+						oldest = next;
+					}
+				}
+				if (oldest == null) {
+					return;
+				}
+				entries.map.remove(oldest.getKey(), oldest.getValue());
+			}
+		}
+	}
+
+	private static List<String> key(RequestView request) {
+		return Arrays.asList(request.getMethodValue(), request.getHost(), request.getPath().value());
+	}
+
+	private static boolean isCacheable(Route route) {
+		return route.getPredicateDescriptor().isCacheable();
+	}
+
+	public int size() {
+		return this.entries.get().map.size();
+	}
+
+	/**
+	 * Forgets all lookups, e.g. after the routes have been refreshed.
+	 */
+	public void clear() {
+		Entries entries = this.entries.get();
+		this.entries.compareAndSet(entries, new Entries(entries.generation));
+	}
+
+	private static final class Entries {
+
+		private final long generation;
+
+		private final Map<List<String>, Entry> map = new ConcurrentHashMap<>();
+
+		private Entries(long generation) {
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * The first cacheable route matching a key, {@code null} if there is none.
+	 */
+	private static final class Entry {
+
+		private final Route route;
+
+		/**
+		 * Written without synchronization, readers may see an older time, which only
+		 * makes eviction less exact
+		 */
+		private long lastAccess = System.nanoTime();
+
+		private Entry(Route route) {
+			this.route = route;
+		}
+	}
+
+	private static final class EvictionCursor {
+
+		private Entries entries;
+
+		private Iterator<Map.Entry<List<String>, Entry>> iterator;
+
+		/**
+		 * @return the next entry, starting over at the end, {@code null} if there is none
+		 */
+		private Map.Entry<List<String>, Entry> next(Entries entries) {
+			if (this.entries != entries || !this.iterator.hasNext()) {
+				this.entries = entries;
+				this.iterator = entries.map.entrySet().iterator();
+			}
+			return this.iterator.hasNext() ? this.iterator.next() : null;
+		}
+	}
+}
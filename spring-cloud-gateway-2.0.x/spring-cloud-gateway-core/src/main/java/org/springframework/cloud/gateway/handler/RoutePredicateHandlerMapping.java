@@ -17,16 +17,20 @@
 
 package org.springframework.cloud.gateway.handler;
 
+import org.springframework.cloud.gateway.route.RefreshRoutesEvent;
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.RoutesRefreshedEvent;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
+import org.springframework.context.event.EventListener;
 import org.springframework.web.reactive.handler.AbstractHandlerMapping;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.function.Function;
 
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_HANDLER_MAPPER_ATTR;
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
 
 /**
  * @author Spencer Gibb
@@ -35,10 +39,20 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 
 	private final FilteringWebHandler webHandler;
 	private final RouteLocator routeLocator;
+	private final RouteMatchCache routeMatchCache;
 
 	public RoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator) {
+		this(webHandler, routeLocator, null);
+	}
+
+	/**
+	 * @param routeMatchCache caches route lookups, may be {@code null}
+	 */
+	public RoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator,
+										RouteMatchCache routeMatchCache) {
 		this.webHandler = webHandler;
 		this.routeLocator = routeLocator;
+		this.routeMatchCache = routeMatchCache;
 
 		setOrder(1); // RequestMappingHandlerMapping 之后
 	}
@@ -56,7 +70,7 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 					}
 
 					// 设置 GATEWAY_ROUTE_ATTR 为 匹配的 Route
-					exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, r);
+					GatewayExchangeContext.get(exchange).setRoute(r);
 					// 返回
 					return Mono.just(webHandler);
 				}).switchIfEmpty(Mono.empty().then(Mono.fromRunnable(() -> { // 匹配不到 Route
@@ -77,12 +91,20 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 	}
 
 	protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
-		return this.routeLocator.getRoutes()
-				.filter(route -> route.getPredicate().test(exchange))
-				// .defaultIfEmpty() put a static Route not found
-				// or .switchIfEmpty()
-				// .switchIfEmpty(Mono.<Route>empty().log("noroute"))
-				.next()
+		// 先取代数再取候选，缓存结果不会记在比候选更新的代上
+		long generation = this.routeLocator.getGeneration();
+		Flux<Route> candidates = this.routeLocator.getCandidateRoutes(exchange); // 通过索引跳过不可能匹配的 Route
+		Mono<Route> match;
+		if (this.routeMatchCache != null) {
+			match = this.routeMatchCache.lookup(exchange, generation, candidates);
+		} else {
+			match = candidates.filter(route -> route.getPredicate().test(exchange))
+					// .defaultIfEmpty() put a static Route not found
+					// or .switchIfEmpty()
+					// .switchIfEmpty(Mono.<Route>empty().log("noroute"))
+					.next();
+		}
+		return match
 				//TODO: error handling
 				.map(route -> {
 					if (logger.isDebugEnabled()) {
@@ -98,6 +120,15 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 			}*/
 	}
 
+	// 请求刷新时清空一次，CachingRouteLocator 在后台换上新路由之后再清空一次，
+	// 丢弃期间按旧路由缓存的结果
+	@EventListener({RefreshRoutesEvent.class, RoutesRefreshedEvent.class})
+	/* for testing */ void handleRefresh() {
+		if (this.routeMatchCache != null) {
+			this.routeMatchCache.clear();
+		}
+	}
+
 	/**
 	 * Validate the given handler against the current request.
 	 * <p>The default implementation is empty. Can be overridden in subclasses,
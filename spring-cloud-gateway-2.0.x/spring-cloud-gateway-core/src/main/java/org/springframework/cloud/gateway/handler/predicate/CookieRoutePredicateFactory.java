@@ -17,6 +17,7 @@
 
 package org.springframework.cloud.gateway.handler.predicate;
 
+import org.springframework.cloud.gateway.handler.support.RequestView;
 import org.springframework.http.HttpCookie;
 import org.springframework.tuple.Tuple;
 import org.springframework.web.server.ServerWebExchange;
@@ -25,6 +26,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.function.Predicate;
 
+import static org.springframework.cloud.gateway.handler.support.RoutePredicateFactoryUtils.compileRegexp;
+
 /**
  * @author Spencer Gibb
  */
@@ -35,19 +38,26 @@ public class CookieRoutePredicateFactory implements RoutePredicateFactory {
 
 	@Override
 	public List<String> argNames() {
-		return Arrays.asList(NAME_KEY, REGEXP_KEY);
+		return Arrays.asList(NAME_KEY, REGEXP_KEY, MATCHER_KEY);
+	}
+
+	@Override
+	public boolean validateArgs() {
+		return false;
 	}
 
 	@Override
 	public Predicate<ServerWebExchange> apply(Tuple args) {
+		validateMin(2, args);
 		String name = args.getString(NAME_KEY);
-		String regexp = args.getString(REGEXP_KEY);
+		Predicate<String> regexp = compileRegexp(args.getString(REGEXP_KEY),
+				args.hasFieldName(MATCHER_KEY) ? args.getString(MATCHER_KEY) : null);
 
 		return exchange -> {
-			List<HttpCookie> cookies = exchange.getRequest().getCookies().get(name);
+			List<HttpCookie> cookies = RequestView.get(exchange).getCookies(name);
 			for (HttpCookie cookie : cookies) {
 			    // 正则匹配
-				if (cookie.getValue().matches(regexp)) {
+				if (regexp.test(cookie.getValue())) {
 					return true;
 				}
 			}
@@ -17,6 +17,7 @@
 
 package org.springframework.cloud.gateway.handler.predicate;
 
+import org.springframework.cloud.gateway.handler.support.RequestView;
 import org.springframework.tuple.Tuple;
 import org.springframework.web.server.ServerWebExchange;
 
@@ -24,6 +25,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.function.Predicate;
 
+import static org.springframework.cloud.gateway.handler.support.RoutePredicateFactoryUtils.compileRegexp;
+
 /**
  * @author Spencer Gibb
  */
@@ -34,23 +37,35 @@ public class HeaderRoutePredicateFactory implements RoutePredicateFactory {
 
 	@Override
 	public List<String> argNames() {
-		return Arrays.asList(HEADER_KEY, REGEXP_KEY);
+		return Arrays.asList(HEADER_KEY, REGEXP_KEY, MATCHER_KEY);
+	}
+
+	@Override
+	public boolean validateArgs() {
+		return false;
 	}
 
 	@Override
 	public Predicate<ServerWebExchange> apply(Tuple args) {
-		String header = args.getString(HEADER_KEY);
-		String regexp = args.getString(REGEXP_KEY);
+		validateMin(2, args);
+		String header = RequestView.toLowerCase(args.getString(HEADER_KEY));
+		Predicate<String> regexp = compileRegexp(args.getString(REGEXP_KEY),
+				args.hasFieldName(MATCHER_KEY) ? args.getString(MATCHER_KEY) : null);
 
 		return exchange -> {
-			List<String> values = exchange.getRequest().getHeaders().get(header);
+			List<String> values = RequestView.get(exchange).getHeaders(header);
 			for (String value : values) {
                 // 正则匹配
-				if (value.matches(regexp)) {
+				if (regexp.test(value)) {
 					return true;
 				}
 			}
 			return false;
 		};
 	}
+
+	@Override
+	public PredicateDescriptor describe(Tuple args) {
+		return PredicateDescriptor.header(args.getString(HEADER_KEY), args.getString(REGEXP_KEY));
+	}
 }
@@ -17,6 +17,7 @@
 
 package org.springframework.cloud.gateway.handler.predicate;
 
+import org.springframework.cloud.gateway.handler.support.RequestView;
 import org.springframework.tuple.Tuple;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.util.PathMatcher;
@@ -33,8 +34,14 @@ public class HostRoutePredicateFactory implements RoutePredicateFactory {
 
 	private PathMatcher pathMatcher = new AntPathMatcher(".");
 
+	/**
+	 * Only the default matcher has semantics a host index can reproduce
+	 */
+	private boolean defaultPathMatcher = true;
+
 	public void setPathMatcher(PathMatcher pathMatcher) {
 		this.pathMatcher = pathMatcher;
+		this.defaultPathMatcher = false;
 	}
 
 	@Override
@@ -47,9 +54,17 @@ public class HostRoutePredicateFactory implements RoutePredicateFactory {
 		String pattern = args.getString(PATTERN_KEY);
 
 		return exchange -> {
-			String host = exchange.getRequest().getHeaders().getFirst("Host");
+			String host = RequestView.get(exchange).getHost();
 			// 匹配
 			return this.pathMatcher.match(pattern, host);
 		};
 	}
+
+	@Override
+	public PredicateDescriptor describe(Tuple args) {
+		if (!this.defaultPathMatcher) {
+			return PredicateDescriptor.empty();
+		}
+		return PredicateDescriptor.host(args.getString(PATTERN_KEY));
+	}
 }
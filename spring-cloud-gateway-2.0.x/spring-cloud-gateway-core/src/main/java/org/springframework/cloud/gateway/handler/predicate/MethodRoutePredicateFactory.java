@@ -17,7 +17,7 @@
 
 package org.springframework.cloud.gateway.handler.predicate;
 
-import org.springframework.http.HttpMethod;
+import org.springframework.cloud.gateway.handler.support.RequestView;
 import org.springframework.tuple.Tuple;
 import org.springframework.web.server.ServerWebExchange;
 
@@ -41,9 +41,13 @@ public class MethodRoutePredicateFactory implements RoutePredicateFactory {
 	public Predicate<ServerWebExchange> apply(Tuple args) {
 		String method = args.getString(METHOD_KEY);
 		return exchange -> {
-			HttpMethod requestMethod = exchange.getRequest().getMethod();
 			// 正则匹配
-			return requestMethod.matches(method);
+			return method.equals(RequestView.get(exchange).getMethodValue());
 		};
 	}
+
+	@Override
+	public PredicateDescriptor describe(Tuple args) {
+		return PredicateDescriptor.method(args.getString(METHOD_KEY));
+	}
 }
@@ -17,6 +17,7 @@
 
 package org.springframework.cloud.gateway.handler.predicate;
 
+import org.springframework.cloud.gateway.handler.support.RequestView;
 import org.springframework.http.server.PathContainer;
 import org.springframework.tuple.Tuple;
 import org.springframework.web.server.ServerWebExchange;
@@ -30,7 +31,6 @@ import java.util.function.Predicate;
 
 import static org.springframework.cloud.gateway.handler.support.RoutePredicateFactoryUtils.traceMatch;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.URI_TEMPLATE_VARIABLES_ATTRIBUTE;
-import static org.springframework.http.server.PathContainer.parsePath;
 
 /**
  * @author Spencer Gibb
@@ -58,14 +58,13 @@ public class PathRoutePredicateFactory implements RoutePredicateFactory {
 		}
 
 		return exchange -> {
-			PathContainer path = parsePath(exchange.getRequest().getURI().getPath());
+			PathContainer path = RequestView.get(exchange).getPath();
 
-			// 匹配
-			boolean match = pattern.matches(path);
+			// 匹配，同时解析 路径参数，例如 path=/foo/123 <=> /foo/{segment}
+			PathMatchInfo uriTemplateVariables = pattern.matchAndExtract(path);
+			boolean match = uriTemplateVariables != null;
 			traceMatch("Pattern", pattern.getPatternString(), path, match);
 			if (match) {
-			    // 解析 路径参数，例如 path=/foo/123 <=> /foo/{segment}
-				PathMatchInfo uriTemplateVariables = pattern.matchAndExtract(path);
 				exchange.getAttributes().put(URI_TEMPLATE_VARIABLES_ATTRIBUTE, uriTemplateVariables);
 				return true;
 			}
@@ -74,4 +73,13 @@ public class PathRoutePredicateFactory implements RoutePredicateFactory {
 			}
 		};
 	}
+
+	@Override
+	public PredicateDescriptor describe(Tuple args) {
+		// literal segments can only be indexed when they are compared case sensitively
+		if (!this.pathPatternParser.isCaseSensitive()) {
+			return PredicateDescriptor.empty();
+		}
+		return PredicateDescriptor.path(args.getString(PATTERN_KEY));
+	}
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.handler.predicate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Describes what a route predicate matches on, so that routing structures can
+ * inspect a {@link org.springframework.cloud.gateway.route.Route} without
+ * re-parsing its {@link PredicateDefinition} args.
+ *
+ * A descriptor is a necessary condition only: the predicate itself must still be tested.
+ */
+public class PredicateDescriptor {
+
+	private static final PredicateDescriptor EMPTY = new PredicateDescriptor(Collections.emptyList(),
+			Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), true);
+
+	private static final PredicateDescriptor OPAQUE = new PredicateDescriptor(Collections.emptyList(),
+			Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), false);
+
+	/**
+	 * Path patterns that must all match, as accepted by {@link PathRoutePredicateFactory}
+	 */
+	private final List<String> pathPatterns;
+
+	/**
+	 * Host patterns that must all match, as accepted by {@link HostRoutePredicateFactory}
+	 */
+	private final List<String> hostPatterns;
+
+	/**
+	 * Request methods that must all match, as accepted by {@link MethodRoutePredicateFactory}
+	 */
+	private final List<String> methods;
+
+	/**
+	 * Headers that must all match, as accepted by {@link HeaderRoutePredicateFactory}
+	 */
+	private final List<Header> headers;
+
+	/**
+	 * Whether the predicate only depends on the request method, host and path, so that
+	 * its outcome can be cached for them
+	 */
+	private final boolean cacheable;
+
+	private PredicateDescriptor(List<String> pathPatterns, List<String> hostPatterns, List<String> methods,
+								List<Header> headers, boolean cacheable) {
+		this.pathPatterns = pathPatterns;
+		this.hostPatterns = hostPatterns;
+		this.methods = methods;
+		this.headers = headers;
+		this.cacheable = cacheable;
+	}
+
+	/**
+	 * Describes a predicate that only depends on the request method, host and path
+	 * without further details.
+	 */
+	public static PredicateDescriptor empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Describes a predicate nothing is known about, e.g. a custom lambda or one reading
+	 * the clock.
+	 */
+	public static PredicateDescriptor opaque() {
+		return OPAQUE;
+	}
+
+	public static PredicateDescriptor path(String pattern) {
+		return new PredicateDescriptor(Collections.singletonList(pattern), Collections.emptyList(),
+				Collections.emptyList(), Collections.emptyList(), true);
+	}
+
+	public static PredicateDescriptor host(String pattern) {
+		return new PredicateDescriptor(Collections.emptyList(), Collections.singletonList(pattern),
+				Collections.emptyList(), Collections.emptyList(), true);
+	}
+
+	public static PredicateDescriptor method(String method) {
+		return new PredicateDescriptor(Collections.emptyList(), Collections.emptyList(),
+				Collections.singletonList(method), Collections.emptyList(), true);
+	}
+
+	/**
+	 * Describes a predicate on the values of a header. Route match caches are not keyed
+	 * on headers, so such a predicate is not cacheable.
+	 */
+	public static PredicateDescriptor header(String name, String regexp) {
+		return new PredicateDescriptor(Collections.emptyList(), Collections.emptyList(),
+				Collections.emptyList(), Collections.singletonList(new Header(name, regexp)), false);
+	}
+
+	/**
+	 * Combines two descriptors of predicates that are and-ed together.
+	 */
+	public PredicateDescriptor and(PredicateDescriptor other) {
+		if (other == null || other == EMPTY) {
+			return this;
+		}
+		if (this == EMPTY) {
+			return other;
+		}
+		return new PredicateDescriptor(concat(this.pathPatterns, other.pathPatterns),
+				concat(this.hostPatterns, other.hostPatterns),
+				concat(this.methods, other.methods),
+				concat(this.headers, other.headers),
+				this.cacheable && other.cacheable);
+	}
+
+	private static <T> List<T> concat(List<T> first, List<T> second) {
+		if (second.isEmpty()) {
+			return first;
+		}
+		if (first.isEmpty()) {
+			return second;
+		}
+		List<T> combined = new ArrayList<>(first);
+		combined.addAll(second);
+		return Collections.unmodifiableList(combined);
+	}
+
+	public List<String> getPathPatterns() {
+		return pathPatterns;
+	}
+
+	public List<String> getHostPatterns() {
+		return hostPatterns;
+	}
+
+	public List<String> getMethods() {
+		return methods;
+	}
+
+	public List<Header> getHeaders() {
+		return headers;
+	}
+
+	public boolean isCacheable() {
+		return cacheable;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		PredicateDescriptor that = (PredicateDescriptor) o;
+		return cacheable == that.cacheable &&
+				Objects.equals(pathPatterns, that.pathPatterns) &&
+				Objects.equals(hostPatterns, that.hostPatterns) &&
+				Objects.equals(methods, that.methods) &&
+				Objects.equals(headers, that.headers);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(pathPatterns, hostPatterns, methods, headers, cacheable);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("PredicateDescriptor{");
+		sb.append("pathPatterns=").append(pathPatterns);
+		sb.append(", hostPatterns=").append(hostPatterns);
+		sb.append(", methods=").append(methods);
+		sb.append(", headers=").append(headers);
+		sb.append(", cacheable=").append(cacheable);
+		sb.append('}');
+		return sb.toString();
+	}
+
+	/**
+	 * A header name and the regular expression one of its values must match.
+	 */
+	public static class Header {
+
+		private final String name;
+
+		private final String regexp;
+
+		public Header(String name, String regexp) {
+			this.name = name;
+			this.regexp = regexp;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getRegexp() {
+			return regexp;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Header header = (Header) o;
+			return Objects.equals(name, header.name) &&
+					Objects.equals(regexp, header.regexp);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(name, regexp);
+		}
+
+		@Override
+		public String toString() {
+			return name + "=" + regexp;
+		}
+	}
+}
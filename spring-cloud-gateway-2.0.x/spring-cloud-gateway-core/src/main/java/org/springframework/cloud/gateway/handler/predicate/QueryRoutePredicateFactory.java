@@ -17,6 +17,7 @@
 
 package org.springframework.cloud.gateway.handler.predicate;
 
+import org.springframework.cloud.gateway.handler.support.RequestView;
 import org.springframework.tuple.Tuple;
 import org.springframework.web.server.ServerWebExchange;
 
@@ -24,6 +25,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.function.Predicate;
 
+import static org.springframework.cloud.gateway.handler.support.RoutePredicateFactoryUtils.compileRegexp;
+
 /**
  * @author Spencer Gibb
  */
@@ -34,7 +37,7 @@ public class QueryRoutePredicateFactory implements RoutePredicateFactory {
 
 	@Override
 	public List<String> argNames() {
-		return Arrays.asList(PARAM_KEY, REGEXP_KEY);
+		return Arrays.asList(PARAM_KEY, REGEXP_KEY, MATCHER_KEY);
 	}
 
 	@Override
@@ -46,19 +49,21 @@ public class QueryRoutePredicateFactory implements RoutePredicateFactory {
 	public Predicate<ServerWebExchange> apply(Tuple args) {
 		validateMin(1, args);
 		String param = args.getString(PARAM_KEY);
+		Predicate<String> regexp = !args.hasFieldName(REGEXP_KEY) ? null
+				: compileRegexp(args.getString(REGEXP_KEY),
+						args.hasFieldName(MATCHER_KEY) ? args.getString(MATCHER_KEY) : null);
 
 		return exchange -> {
 		    // 包含 参数
-			if (!args.hasFieldName(REGEXP_KEY)) {
+			if (regexp == null) {
 				// check existence of header
-				return exchange.getRequest().getQueryParams().containsKey(param);
+				return RequestView.get(exchange).hasQueryParam(param);
 			}
 
 			// 正则匹配 参数
-			String regexp = args.getString(REGEXP_KEY);
-			List<String> values = exchange.getRequest().getQueryParams().get(param);
+			List<String> values = RequestView.get(exchange).getQueryParams(param);
 			for (String value : values) {
-				if (value.matches(regexp)) {
+				if (regexp.test(value)) {
 					return true;
 				}
 			}
@@ -33,9 +33,26 @@ public interface RoutePredicateFactory extends ArgumentHints {
 
     String PATTERN_KEY = "pattern";
 
+	/**
+	 * Optional arg selecting how regexps are matched, see
+	 * {@link org.springframework.cloud.gateway.handler.support.RoutePredicateFactoryUtils#compileRegexp(String, String)}
+	 */
+	String MATCHER_KEY = "matcher";
+
     //创建一个用于配置用途的对象（config），以其作为参数应用到 apply方法上来生产一个 Predicate 对象，再将 Predicate 对象包装成 AsyncPredicate。
 	Predicate<ServerWebExchange> apply(Tuple args);
 
+	/**
+	 * Describes the predicate {@link #apply(Tuple)} creates for the same args. The
+	 * default describes nothing, which keeps routes using it out of any routing index
+	 * and route match cache.
+	 * @param args the args passed to {@link #apply(Tuple)}
+	 * @return the descriptor, never {@code null}
+	 */
+	default PredicateDescriptor describe(Tuple args) {
+		return PredicateDescriptor.opaque();
+	}
+
 	default String name() {
 		return NameUtils.normalizePredicateName(getClass());
 	}
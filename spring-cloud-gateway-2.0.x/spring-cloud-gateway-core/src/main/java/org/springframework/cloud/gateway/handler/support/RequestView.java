@@ -0,0 +1,156 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.handler.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.REQUEST_VIEW_ATTR;
+
+/**
+ * Parsed parts of a request that route predicates read, computed on first use and
+ * shared by all predicates tested against the same exchange.
+ *
+ * Not thread safe, like the exchange it belongs to.
+ *
+ * @see #get(ServerWebExchange)
+ */
+public class RequestView {
+
+	private final ServerHttpRequest request;
+
+	private PathContainer path;
+
+	private String host;
+
+	private boolean hostRead;
+
+	private MultiValueMap<String, HttpCookie> cookies;
+
+	private MultiValueMap<String, String> queryParams;
+
+	/**
+	 * Header values by lower case header name
+	 */
+	private Map<String, List<String>> headers;
+
+	private RequestView(ServerHttpRequest request) {
+		this.request = request;
+	}
+
+	/**
+	 * Returns the view of the exchange's current request, creating it if needed.
+	 */
+	public static RequestView get(ServerWebExchange exchange) {
+		ServerHttpRequest request = exchange.getRequest();
+		RequestView view = exchange.getAttribute(REQUEST_VIEW_ATTR);
+		// a mutated exchange shares the attributes of the original one
+		if (view == null || view.request != request) {
+			view = new RequestView(request);
+			exchange.getAttributes().put(REQUEST_VIEW_ATTR, view);
+		}
+		return view;
+	}
+
+	/**
+	 * Returns the decoded path of the request URI, as matched by path predicates.
+	 */
+	public PathContainer getPath() {
+		if (this.path == null) {
+			this.path = PathContainer.parsePath(this.request.getURI().getPath());
+		}
+		return this.path;
+	}
+
+	/**
+	 * Returns the first {@code Host} header, {@code null} if there is none.
+	 */
+	public String getHost() {
+		if (!this.hostRead) {
+			this.host = this.request.getHeaders().getFirst(HttpHeaders.HOST);
+			this.hostRead = true;
+		}
+		return this.host;
+	}
+
+	public String getMethodValue() {
+		return this.request.getMethodValue();
+	}
+
+	/**
+	 * Returns the values of the cookie, an empty list if there are none.
+	 */
+	public List<HttpCookie> getCookies(String name) {
+		if (this.cookies == null) {
+			this.cookies = this.request.getCookies();
+		}
+		return valuesOrEmpty(this.cookies.get(name));
+	}
+
+	/**
+	 * Returns the values of the query param, an empty list if there are none.
+	 */
+	public List<String> getQueryParams(String name) {
+		return valuesOrEmpty(queryParams().get(name));
+	}
+
+	public boolean hasQueryParam(String name) {
+		return queryParams().containsKey(name);
+	}
+
+	private MultiValueMap<String, String> queryParams() {
+		if (this.queryParams == null) {
+			this.queryParams = this.request.getQueryParams();
+		}
+		return this.queryParams;
+	}
+
+	/**
+	 * Returns the values of the header, an empty list if there are none.
+	 * @param lowerCaseName the header name in lower case, see {@link #toLowerCase(String)}
+	 */
+	public List<String> getHeaders(String lowerCaseName) {
+		if (this.headers == null) {
+			Map<String, List<String>> headers = new HashMap<>();
+			this.request.getHeaders().forEach((name, values) -> headers
+					.computeIfAbsent(toLowerCase(name), key -> new ArrayList<>())
+					.addAll(values));
+			this.headers = headers;
+		}
+		return valuesOrEmpty(this.headers.get(lowerCaseName));
+	}
+
+	public static String toLowerCase(String headerName) {
+		return headerName.toLowerCase(Locale.ENGLISH);
+	}
+
+	private static <T> List<T> valuesOrEmpty(List<T> values) {
+		return values == null ? Collections.emptyList() : values;
+	}
+}
@@ -20,6 +20,10 @@ package org.springframework.cloud.gateway.handler.support;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.support.LinearRegex;
+
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 /**
  * @author Spencer Gibb
@@ -27,6 +31,32 @@ import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory
 public class RoutePredicateFactoryUtils {
 	private static final Log logger = LogFactory.getLog(RoutePredicateFactory.class);
 
+	/**
+	 * Value of {@link RoutePredicateFactory#MATCHER_KEY} selecting {@link java.util.regex.Pattern}
+	 */
+	public static final String JAVA_MATCHER = "java";
+
+	/**
+	 * Value of {@link RoutePredicateFactory#MATCHER_KEY} selecting {@link LinearRegex}
+	 */
+	public static final String LINEAR_MATCHER = "linear";
+
+	/**
+	 * Compiles a regexp that must match whole values.
+	 * @param matcher {@link #JAVA_MATCHER}, {@link #LINEAR_MATCHER} or {@code null} for the default
+	 */
+	public static Predicate<String> compileRegexp(String regexp, String matcher) {
+		if (matcher == null || JAVA_MATCHER.equalsIgnoreCase(matcher)) {
+			Pattern pattern = Pattern.compile(regexp);
+			return value -> pattern.matcher(value).matches();
+		}
+		if (LINEAR_MATCHER.equalsIgnoreCase(matcher)) {
+			return LinearRegex.compile(regexp)::matches;
+		}
+		throw new IllegalArgumentException("Unknown matcher '" + matcher + "', expected '" + JAVA_MATCHER
+				+ "' or '" + LINEAR_MATCHER + "'");
+	}
+
 	public static void traceMatch(String prefix, Object desired, Object actual, boolean match) {
 		if (logger.isTraceEnabled()) {
 			String message = String.format("%s \"%s\" %s against value \"%s\"",
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteValidator;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Sends the requests of the same key, as resolved by a {@link KeyResolver} from a
+ * header, cookie or principal, to the same instance, so that instances keeping per key
+ * caches keep hitting them.
+ *
+ * Each instance is hashed to many points of a ring, and a key goes to the instance of
+ * the first point after its own hash. When an instance joins or leaves only the keys
+ * between its points and the previous ones move, about 1/N of them. Load is bounded: an
+ * instance with more requests in flight than {@code loadFactor} times the average is
+ * passed over for the next one on the ring, so a hot key does not overload its
+ * instance. Requests without a key go to a random point.
+ *
+ * As a {@link RouteValidator} it rejects routes naming an unknown key resolver.
+ */
+public class ConsistentHashLoadBalancer implements ReactiveLoadBalancer, RouteValidator {
+
+	/**
+	 * Route metadata with the name of the KeyResolver of the route
+	 */
+	public static final String HASH_KEY_RESOLVER = "hash-key-resolver";
+
+	public static final int DEFAULT_POINTS_PER_INSTANCE = 100;
+
+	public static final double DEFAULT_LOAD_FACTOR = 1.25;
+
+	private final ServiceInstanceSnapshots snapshots;
+
+	private final ServiceInstanceStats stats;
+
+	private final KeyResolver defaultKeyResolver;
+
+	private final Map<String, KeyResolver> keyResolvers;
+
+	private final int pointsPerInstance;
+
+	private final double loadFactor;
+
+	/**
+	 * Rings by service, rebuilt when the snapshot they were built from is replaced
+	 */
+	private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+	public ConsistentHashLoadBalancer(ServiceInstanceSnapshots snapshots, ServiceInstanceStats stats,
+			KeyResolver defaultKeyResolver) {
+		this(snapshots, stats, defaultKeyResolver, Collections.emptyMap(), DEFAULT_POINTS_PER_INSTANCE,
+				DEFAULT_LOAD_FACTOR);
+	}
+
+	/**
+	 * @param keyResolvers the resolvers routes may name in their
+	 * {@link #HASH_KEY_RESOLVER} metadata
+	 * @param loadFactor how many times the average load an instance may take before
+	 * keys move off it, at least 1
+	 */
+	public ConsistentHashLoadBalancer(ServiceInstanceSnapshots snapshots, ServiceInstanceStats stats,
+			KeyResolver defaultKeyResolver, Map<String, KeyResolver> keyResolvers, int pointsPerInstance,
+			double loadFactor) {
+		Assert.notNull(defaultKeyResolver, "defaultKeyResolver must not be null");
+		Assert.isTrue(pointsPerInstance > 0, "pointsPerInstance must be positive");
+		Assert.isTrue(loadFactor >= 1, "loadFactor must be at least 1");
+		this.snapshots = snapshots;
+		this.stats = stats;
+		this.defaultKeyResolver = defaultKeyResolver;
+		this.keyResolvers = keyResolvers;
+		this.pointsPerInstance = pointsPerInstance;
+		this.loadFactor = loadFactor;
+	}
+
+	@Override
+	public Mono<ServiceInstance> choose(String serviceId, ServerWebExchange exchange) {
+		KeyResolver keyResolver = keyResolver(exchange);
+		return this.snapshots.get(serviceId).flatMap(instances -> {
+			if (instances.isEmpty()) {
+				return Mono.empty();
+			}
+			return Mono.defer(() -> keyResolver.resolve(exchange))
+					.map(ConsistentHashLoadBalancer::hash)
+					.defaultIfEmpty(ThreadLocalRandom.current().nextLong())
+					.map(hash -> ring(serviceId, instances).choose(hash));
+		});
+	}
+
+	@Override
+	public void validate(Route route) {
+		keyResolver(route);
+	}
+
+	private KeyResolver keyResolver(ServerWebExchange exchange) {
+		return keyResolver(exchange != null ? GatewayExchangeContext.get(exchange).getRoute() : null);
+	}
+
+	private KeyResolver keyResolver(Route route) {
+		Object name = route != null ? route.getMetadata().get(HASH_KEY_RESOLVER) : null;
+		if (name == null) {
+			return this.defaultKeyResolver;
+		}
+		KeyResolver keyResolver = this.keyResolvers.get(name.toString());
+		if (keyResolver == null) {
+			throw new IllegalArgumentException("Unknown key resolver '" + name + "' of route " + route.getId());
+		}
+		return keyResolver;
+	}
+
+	private Ring ring(String serviceId, List<ServiceInstance> instances) {
+		Ring ring = this.rings.get(serviceId);
+		// 快照未变时 List 身份不变
+		if (ring == null || ring.instances != instances) {
+			ring = new Ring(instances);
+			this.rings.put(serviceId, ring);
+		}
+		return ring;
+	}
+
+	/**
+	 * 64 bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mix so that
+	 * close keys land far apart on the ring.
+	 */
+	static long hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private final class Ring {
+
+		private final List<ServiceInstance> instances;
+
+		/**
+		 * The stats of each instance, looked up once per ring
+		 */
+		private final ServiceInstanceStats.Stats[] stats;
+
+		/**
+		 * Sorted hashes of the points, and the index of the instance of each
+		 */
+		private final long[] points;
+
+		private final int[] owners;
+
+		private Ring(List<ServiceInstance> instances) {
+			this.instances = instances;
+			int size = instances.size();
+			this.stats = new ServiceInstanceStats.Stats[size];
+			long[][] entries = new long[size * pointsPerInstance][];
+			for (int i = 0; i < size; i++) {
+				ServiceInstance instance = instances.get(i);
+				this.stats[i] = ConsistentHashLoadBalancer.this.stats.get(instance);
+				// 按 host:port 而非列表位置散列，成员变化时其他实例的点不动
+				String name = instance.getHost() + ":" + instance.getPort() + "#";
+				for (int point = 0; point < pointsPerInstance; point++) {
+					entries[i * pointsPerInstance + point] = new long[] { hash(name + point), i };
+				}
+			}
+			Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+			this.points = new long[entries.length];
+			this.owners = new int[entries.length];
+			for (int i = 0; i < entries.length; i++) {
+				this.points[i] = entries[i][0];
+				this.owners[i] = (int) entries[i][1];
+			}
+		}
+
+		private ServiceInstance choose(long hash) {
+			int start = Arrays.binarySearch(this.points, hash);
+			if (start < 0) {
+				start = -start - 1;
+			}
+			int size = this.instances.size();
+			if (size == 1) {
+				return this.instances.get(0);
+			}
+			long total = 0;
+			for (ServiceInstanceStats.Stats stats : this.stats) {
+				total += stats.getInFlight();
+			}
+			// 加上本次请求后每个实例允许的上限
+			long capacity = (long) Math.ceil(loadFactor * (total + 1) / size);
+			boolean[] tried = null;
+			for (int i = 0; i < this.points.length; i++) {
+				int owner = this.owners[(start + i) % this.points.length];
+				if (tried != null && tried[owner]) {
+					continue;
+				}
+				if (this.stats[owner].getInFlight() < capacity) {
+					return this.instances.get(owner);
+				}
+				if (tried == null) {
+					tried = new boolean[size];
+				}
+				tried[owner] = true;
+			}
+			// 负载在统计期间变化，退回到原本的实例
+			return this.instances.get(this.owners[start % this.points.length]);
+		}
+	}
+}
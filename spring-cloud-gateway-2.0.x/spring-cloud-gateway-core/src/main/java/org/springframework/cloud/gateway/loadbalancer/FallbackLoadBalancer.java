@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Chooses with a primary balancer, and with a fallback for the services the primary
+ * has no instance of. Used to balance from the {@link ServiceInstanceSnapshots} while
+ * services only a {@code LoadBalancerClient} knows, such as Ribbon services with a
+ * static server list, keep resolving.
+ */
+public class FallbackLoadBalancer implements ReactiveLoadBalancer {
+
+	private final ReactiveLoadBalancer primary;
+
+	private final ReactiveLoadBalancer fallback;
+
+	public FallbackLoadBalancer(ReactiveLoadBalancer primary, ReactiveLoadBalancer fallback) {
+		Assert.notNull(primary, "primary must not be null");
+		Assert.notNull(fallback, "fallback must not be null");
+		this.primary = primary;
+		this.fallback = fallback;
+	}
+
+	@Override
+	public Mono<ServiceInstance> choose(String serviceId, ServerWebExchange exchange) {
+		return this.primary.choose(serviceId, exchange)
+				.switchIfEmpty(Mono.defer(() -> this.fallback.choose(serviceId, exchange)));
+	}
+
+	public ReactiveLoadBalancer getPrimary() {
+		return this.primary;
+	}
+
+	public ReactiveLoadBalancer getFallback() {
+		return this.fallback;
+	}
+
+	@Override
+	public String toString() {
+		return "FallbackLoadBalancer{primary=" + this.primary + ", fallback=" + this.fallback + "}";
+	}
+}
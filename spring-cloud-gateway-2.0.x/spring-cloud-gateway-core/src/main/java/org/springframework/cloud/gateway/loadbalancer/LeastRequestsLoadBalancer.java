@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+/**
+ * Of two random instances, takes the one with fewer requests in flight from this
+ * gateway.
+ */
+public class LeastRequestsLoadBalancer extends PowerOfTwoChoicesLoadBalancer {
+
+	private final ServiceInstanceStats stats;
+
+	public LeastRequestsLoadBalancer(ServiceInstanceSnapshots snapshots, ServiceInstanceStats stats) {
+		super(snapshots);
+		this.stats = stats;
+	}
+
+	@Override
+	protected double cost(ServiceInstance instance) {
+		return this.stats.get(instance).getInFlight();
+	}
+}
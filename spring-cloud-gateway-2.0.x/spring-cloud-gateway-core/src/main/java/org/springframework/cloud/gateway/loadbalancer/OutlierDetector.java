@@ -0,0 +1,298 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.util.Assert;
+
+/**
+ * Passive health checking of upstream instances. The routing filters report the outcome
+ * of each request, and an instance is ejected, left out of the instances the
+ * {@link ServiceInstanceSnapshots} hand to the balancers, when it fails too many
+ * requests in a row or its success rate over a window of requests is too low.
+ *
+ * An ejection lasts the base ejection time, doubled on every ejection in a row up to
+ * the max ejection time. An instance that stays in for the max ejection time starts
+ * again from the base. No more than the max ejected percent of the instances of a
+ * service are ejected at once, so that a failing dependency shared by all of them does
+ * not empty the service.
+ *
+ * Only services the balancers choose from the snapshots are tracked, outcomes of
+ * instances chosen otherwise, e.g. by a {@code LoadBalancerClient}, are ignored since
+ * ejecting them would have no effect.
+ */
+public class OutlierDetector {
+
+	private static final Log log = LogFactory.getLog(OutlierDetector.class);
+
+	private final ServiceInstanceSnapshots snapshots;
+
+	private final ServiceInstanceStats stats;
+
+	private int consecutiveFailures = 5;
+
+	private int successRateRequests = 20;
+
+	private double minSuccessRate = 0.5;
+
+	private long baseEjectionNanos = Duration.ofSeconds(30).toNanos();
+
+	private long maxEjectionNanos = Duration.ofMinutes(5).toNanos();
+
+	private int maxEjectedPercent = 50;
+
+	private LongSupplier nanoClock = System::nanoTime;
+
+	/**
+	 * The latest end of any ejection, past it no instance is ejected and
+	 * {@link #available} returns the instances as they are
+	 */
+	private volatile long ejectedUntil = System.nanoTime();
+
+	/**
+	 * Bumped on every ejection, invalidating the available instances
+	 */
+	private volatile long version;
+
+	private final Map<String, Available> available = new ConcurrentHashMap<>();
+
+	private final LongAdder ejections = new LongAdder();
+
+	private final LongAdder cappedEjections = new LongAdder();
+
+	public OutlierDetector(ServiceInstanceSnapshots snapshots, ServiceInstanceStats stats) {
+		this.snapshots = snapshots;
+		this.stats = stats;
+	}
+
+	/**
+	 * @param consecutiveFailures failures in a row ejecting an instance, 0 to not eject
+	 * on them
+	 */
+	public void setConsecutiveFailures(int consecutiveFailures) {
+		Assert.isTrue(consecutiveFailures >= 0, "consecutiveFailures must not be negative");
+		this.consecutiveFailures = consecutiveFailures;
+	}
+
+	/**
+	 * @param successRateRequests requests of a success rate window
+	 * @param minSuccessRate success rate below which an instance is ejected at the end
+	 * of a window, 0 to not eject on it
+	 */
+	public void setSuccessRate(int successRateRequests, double minSuccessRate) {
+		Assert.isTrue(successRateRequests > 0, "successRateRequests must be positive");
+		Assert.isTrue(minSuccessRate >= 0 && minSuccessRate <= 1, "minSuccessRate must be between 0 and 1");
+		this.successRateRequests = successRateRequests;
+		this.minSuccessRate = minSuccessRate;
+	}
+
+	public void setEjectionTime(Duration baseEjectionTime, Duration maxEjectionTime) {
+		Assert.isTrue(!baseEjectionTime.isNegative() && !baseEjectionTime.isZero(),
+				"baseEjectionTime must be positive");
+		Assert.isTrue(maxEjectionTime.compareTo(baseEjectionTime) >= 0,
+				"maxEjectionTime must not be less than baseEjectionTime");
+		this.baseEjectionNanos = baseEjectionTime.toNanos();
+		this.maxEjectionNanos = maxEjectionTime.toNanos();
+	}
+
+	public void setMaxEjectedPercent(int maxEjectedPercent) {
+		Assert.isTrue(maxEjectedPercent >= 0 && maxEjectedPercent <= 100, "maxEjectedPercent must be between 0 and 100");
+		this.maxEjectedPercent = maxEjectedPercent;
+	}
+
+	/* for testing */ void setNanoClock(LongSupplier nanoClock) {
+		this.nanoClock = nanoClock;
+		this.ejectedUntil = nanoClock.getAsLong();
+	}
+
+	public void recordSuccess(ServiceInstance instance) {
+		record(instance, true);
+	}
+
+	/**
+	 * Records a failed request, an error or a 5xx response.
+	 */
+	public void recordFailure(ServiceInstance instance) {
+		record(instance, false);
+	}
+
+	private void record(ServiceInstance instance, boolean success) {
+		if (!this.snapshots.hasInstances(instance.getServiceId())) {
+			// 未经快照选出的实例，剔除也不会生效
+			return;
+		}
+		ServiceInstanceStats.Stats stats = this.stats.get(instance);
+		long now = this.nanoClock.getAsLong();
+		if (stats.isEjected(now)) {
+			// 剔除前发出的请求不再计入
+			return;
+		}
+		ServiceInstanceStats.Outcomes outcomes = stats.recordOutcome(success, this.successRateRequests);
+		boolean outlier = this.consecutiveFailures > 0 && outcomes.consecutiveFailures >= this.consecutiveFailures
+				|| outcomes.requests == this.successRateRequests && outcomes.getSuccessRate() < this.minSuccessRate;
+		if (outlier) {
+			eject(instance, stats, now);
+		}
+	}
+
+	private synchronized void eject(ServiceInstance instance, ServiceInstanceStats.Stats stats, long now) {
+		if (stats.isEjected(now)) {
+			return;
+		}
+		List<ServiceInstance> instances = this.snapshots.getIfLoaded(instance.getServiceId());
+		if (instances == null) {
+			return;
+		}
+		// 实例对象每次刷新都是新的，按统计判断是否同一实例
+		boolean current = false;
+		int ejected = 0;
+		for (ServiceInstance other : instances) {
+			ServiceInstanceStats.Stats otherStats = this.stats.get(other);
+			current |= otherStats == stats;
+			if (otherStats.isEjected(now)) {
+				ejected++;
+			}
+		}
+		if (!current) {
+			return;
+		}
+		if (ejected + 1 > instances.size() * this.maxEjectedPercent / 100) {
+			this.cappedEjections.increment();
+			if (log.isDebugEnabled()) {
+				log.debug("Not ejecting " + instance.getUri() + ", " + ejected + " of the " + instances.size()
+						+ " instances of " + instance.getServiceId() + " are ejected already");
+			}
+			return;
+		}
+		if (stats.getEjections() > 0 && now - stats.getEjectedUntil() > this.maxEjectionNanos) {
+			// 恢复后稳定了足够久，退避从头开始
+			stats.resetEjections();
+		}
+		long duration = this.baseEjectionNanos << Math.min(stats.getEjections(), 30);
+		if (duration <= 0 || duration > this.maxEjectionNanos) {
+			duration = this.maxEjectionNanos;
+		}
+		long until = now + duration;
+		stats.eject(until);
+		if (until - this.ejectedUntil > 0) {
+			this.ejectedUntil = until;
+		}
+		this.version++;
+		this.ejections.increment();
+		log.warn("Ejected " + instance.getUri() + " of " + instance.getServiceId() + " for "
+				+ Duration.ofNanos(duration).toMillis() + "ms");
+	}
+
+	/**
+	 * @return the instances that are not ejected, the same list as long as no
+	 * instance of it is
+	 */
+	public List<ServiceInstance> available(String serviceId, List<ServiceInstance> instances) {
+		long now = this.nanoClock.getAsLong();
+		if (now - this.ejectedUntil >= 0) {
+			return instances;
+		}
+		long version = this.version;
+		Available available = this.available.get(serviceId);
+		if (available == null || available.instances != instances || available.version != version
+				|| now - available.validUntil >= 0) {
+			available = new Available(instances, version, now);
+			this.available.put(serviceId, available);
+		}
+		return available.available;
+	}
+
+	/**
+	 * @return how many times instances were ejected
+	 */
+	public long getEjections() {
+		return this.ejections.sum();
+	}
+
+	/**
+	 * @return how many times instances were not ejected because of the max ejected
+	 * percent
+	 */
+	public long getCappedEjections() {
+		return this.cappedEjections.sum();
+	}
+
+	/**
+	 * @return the instances ejected now keyed by {@code serviceId/host:port}, with
+	 * the milliseconds until they are back
+	 */
+	public Map<String, Long> getEjected() {
+		long now = this.nanoClock.getAsLong();
+		Map<String, Long> ejected = new TreeMap<>();
+		this.stats.getStats().forEach((key, stats) -> {
+			if (stats.isEjected(now)) {
+				ejected.put(key, Duration.ofNanos(stats.getEjectedUntil() - now).toMillis());
+			}
+		});
+		return Collections.unmodifiableMap(ejected);
+	}
+
+	private final class Available {
+
+		private final List<ServiceInstance> instances;
+
+		private final long version;
+
+		/**
+		 * When the first of the ejected instances is back
+		 */
+		private final long validUntil;
+
+		private final List<ServiceInstance> available;
+
+		private Available(List<ServiceInstance> instances, long version, long now) {
+			this.instances = instances;
+			this.version = version;
+			List<ServiceInstance> available = new ArrayList<>(instances.size());
+			long validUntil = now + maxEjectionNanos;
+			for (ServiceInstance instance : instances) {
+				ServiceInstanceStats.Stats stats = OutlierDetector.this.stats.get(instance);
+				if (stats.isEjected(now)) {
+					if (stats.getEjectedUntil() - validUntil < 0) {
+						validUntil = stats.getEjectedUntil();
+					}
+				}
+				else {
+					available.add(instance);
+				}
+			}
+			this.validUntil = validUntil;
+			// 都未剔除时沿用原 List，全部剔除时也不至于无实例可选
+			this.available = available.size() == instances.size() || available.isEmpty() ? instances
+					: Collections.unmodifiableList(available);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+/**
+ * Of two random instances, takes the one of lower cost, its latency average times its
+ * requests in flight plus one. The average is the peak EWMA kept by
+ * {@link ServiceInstanceStats.Stats}: it jumps to a slower response at once, takes
+ * faster ones in gradually, and decays while the instance is idle so that an instance
+ * that was slow gets tried again.
+ *
+ * An instance without a latency yet, or whose latency has decayed away, costs nothing
+ * while idle and a {@link #PENALTY} per request in flight otherwise, so that a new
+ * instance gets requests one at a time until it has answered.
+ */
+public class PeakEwmaLoadBalancer extends PowerOfTwoChoicesLoadBalancer {
+
+	/**
+	 * Cost of a request in flight to an instance of unknown latency
+	 */
+	static final double PENALTY = TimeUnit.SECONDS.toNanos(1);
+
+	private final ServiceInstanceStats stats;
+
+	public PeakEwmaLoadBalancer(ServiceInstanceSnapshots snapshots, ServiceInstanceStats stats) {
+		super(snapshots);
+		this.stats = stats;
+	}
+
+	@Override
+	protected double cost(ServiceInstance instance) {
+		ServiceInstanceStats.Stats stats = this.stats.get(instance);
+		long inFlight = stats.getInFlight();
+		double latency = stats.getLatency();
+		if (latency == 0) {
+			return inFlight * PENALTY;
+		}
+		return latency * (inFlight + 1);
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Picks two instances at random and takes the one of lower {@link #cost}. Comparing
+ * two random instances rather than all of them keeps choosing cheap, and avoids
+ * sending every request to the same cheapest instance, which is only known to be so
+ * until its stats catch up.
+ */
+public abstract class PowerOfTwoChoicesLoadBalancer implements ReactiveLoadBalancer {
+
+	private final ServiceInstanceSnapshots snapshots;
+
+	protected PowerOfTwoChoicesLoadBalancer(ServiceInstanceSnapshots snapshots) {
+		this.snapshots = snapshots;
+	}
+
+	@Override
+	public Mono<ServiceInstance> choose(String serviceId, ServerWebExchange exchange) {
+		return this.snapshots.get(serviceId).flatMap(instances -> Mono.justOrEmpty(choose(instances)));
+	}
+
+	private ServiceInstance choose(List<ServiceInstance> instances) {
+		int size = instances.size();
+		if (size < 2) {
+			return size == 0 ? null : instances.get(0);
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(size);
+		// 第二个与第一个不同
+		int second = random.nextInt(size - 1);
+		if (second >= first) {
+			second++;
+		}
+		ServiceInstance a = instances.get(first);
+		ServiceInstance b = instances.get(second);
+		return cost(b) < cost(a) ? b : a;
+	}
+
+	/**
+	 * @return how expensive sending a request to the instance is now, lower is better
+	 */
+	protected abstract double cost(ServiceInstance instance);
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Chooses the instance of a service an {@code lb://} request is proxied to.
+ *
+ * Called on the event loop for every such request, implementations must not block.
+ */
+@FunctionalInterface
+public interface ReactiveLoadBalancer {
+
+	/**
+	 * @return the instance, or an empty {@link Mono} if the service has none
+	 */
+	Mono<ServiceInstance> choose(String serviceId, ServerWebExchange exchange);
+}
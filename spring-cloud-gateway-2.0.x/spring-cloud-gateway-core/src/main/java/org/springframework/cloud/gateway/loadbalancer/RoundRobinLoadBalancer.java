@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Takes the instances of each service in turn, from a {@link ServiceInstanceSnapshots}.
+ */
+public class RoundRobinLoadBalancer implements ReactiveLoadBalancer {
+
+	private final ServiceInstanceSnapshots snapshots;
+
+	private final Map<String, AtomicInteger> positions = new ConcurrentHashMap<>();
+
+	public RoundRobinLoadBalancer(ServiceInstanceSnapshots snapshots) {
+		this.snapshots = snapshots;
+	}
+
+	@Override
+	public Mono<ServiceInstance> choose(String serviceId, ServerWebExchange exchange) {
+		return this.snapshots.get(serviceId).flatMap(instances -> {
+			if (instances.isEmpty()) {
+				return Mono.empty();
+			}
+			int position = position(serviceId).getAndIncrement() & Integer.MAX_VALUE;
+			return Mono.just(instances.get(position % instances.size()));
+		});
+	}
+
+	private AtomicInteger position(String serviceId) {
+		AtomicInteger position = this.positions.get(serviceId);
+		if (position == null) {
+			position = this.positions.computeIfAbsent(serviceId, id -> new AtomicInteger());
+		}
+		return position;
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteValidator;
+import org.springframework.util.Assert;
+
+/**
+ * The {@link ReactiveLoadBalancer} each {@code lb://} route is balanced with. A route
+ * naming a balancer in its {@link #LOAD_BALANCER} metadata gets the balancer registered
+ * under that name, other routes get the default one.
+ *
+ * Balancers are registered at startup, lookups do not lock. As a {@link RouteValidator}
+ * it rejects routes naming an unknown balancer, and passes routes on to their balancer
+ * when it is a validator itself.
+ */
+public class RouteLoadBalancers implements RouteValidator {
+
+	/**
+	 * Route metadata with the name of the balancer of the route
+	 */
+	public static final String LOAD_BALANCER = "load-balancer";
+
+	private final ReactiveLoadBalancer defaultBalancer;
+
+	private final Map<String, ReactiveLoadBalancer> balancers = new LinkedHashMap<>();
+
+	public RouteLoadBalancers(ReactiveLoadBalancer defaultBalancer) {
+		Assert.notNull(defaultBalancer, "defaultBalancer must not be null");
+		this.defaultBalancer = defaultBalancer;
+	}
+
+	public RouteLoadBalancers register(String name, ReactiveLoadBalancer balancer) {
+		Assert.hasText(name, "name must not be empty");
+		Assert.notNull(balancer, "balancer must not be null");
+		this.balancers.put(name, balancer);
+		return this;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the route names an unknown balancer
+	 */
+	public ReactiveLoadBalancer forRoute(Route route) {
+		Object name = route != null ? route.getMetadata().get(LOAD_BALANCER) : null;
+		if (name == null) {
+			return this.defaultBalancer;
+		}
+		ReactiveLoadBalancer balancer = this.balancers.get(name.toString());
+		if (balancer == null) {
+			throw new IllegalArgumentException("Unknown load balancer '" + name + "' of route " + route.getId());
+		}
+		return balancer;
+	}
+
+	@Override
+	public void validate(Route route) {
+		ReactiveLoadBalancer balancer = forRoute(route);
+		if (balancer instanceof RouteValidator) {
+			((RouteValidator) balancer).validate(route);
+		}
+	}
+
+	public ReactiveLoadBalancer getDefault() {
+		return this.defaultBalancer;
+	}
+
+	public Map<String, ReactiveLoadBalancer> getBalancers() {
+		return Collections.unmodifiableMap(this.balancers);
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+/**
+ * The instances of each service as last seen by the {@link DiscoveryClient}. Snapshots
+ * are immutable lists, replaced as a whole every refresh interval, so reading one takes
+ * no lock. The {@link DiscoveryClient} may block and is never called on the caller's
+ * thread: a service is loaded on first use on a separate thread, then refreshed in the
+ * background. When a refresh fails the previous snapshot is kept.
+ *
+ * An instance filter, such as the {@link OutlierDetector}, may take instances out of
+ * what {@link #get(String)} returns for a while.
+ */
+public class ServiceInstanceSnapshots {
+
+	private static final Log log = LogFactory.getLog(ServiceInstanceSnapshots.class);
+
+	private final DiscoveryClient discoveryClient;
+
+	private final Map<String, List<ServiceInstance>> snapshots = new ConcurrentHashMap<>();
+
+	/**
+	 * First loads in progress, so that concurrent requests wait for the same one
+	 */
+	private final Map<String, Mono<List<ServiceInstance>>> loading = new ConcurrentHashMap<>();
+
+	private final List<BiConsumer<String, List<ServiceInstance>>> listeners = new CopyOnWriteArrayList<>();
+
+	private volatile BiFunction<String, List<ServiceInstance>, List<ServiceInstance>> instanceFilter;
+
+	private final Scheduler scheduler = Schedulers.newSingle("gateway-instance-refresh", true);
+
+	private final Disposable refresher;
+
+	public ServiceInstanceSnapshots(DiscoveryClient discoveryClient, Duration refreshInterval) {
+		this.discoveryClient = discoveryClient;
+		this.refresher = Flux.interval(refreshInterval, refreshInterval, this.scheduler)
+				.onBackpressureDrop()
+				.subscribe(tick -> refresh());
+	}
+
+	/**
+	 * @return the instances of the service that the instance filter keeps, loading
+	 * them first if the service was not asked for before
+	 */
+	public Mono<List<ServiceInstance>> get(String serviceId) {
+		List<ServiceInstance> snapshot = this.snapshots.get(serviceId);
+		if (snapshot != null) {
+			return Mono.just(filter(serviceId, snapshot));
+		}
+		return this.loading.computeIfAbsent(serviceId, id -> Mono.fromCallable(() -> load(id))
+				.subscribeOn(this.scheduler)
+				.doFinally(signal -> this.loading.remove(id))
+				.cache())
+				.map(instances -> filter(serviceId, instances));
+	}
+
+	/**
+	 * Sets the filter of the instances {@link #get(String)} returns. It is called on
+	 * every {@link #get(String)} and must be cheap, returning the same list as long as
+	 * it keeps the same instances so that balancers caching by list keep their caches.
+	 */
+	public void setInstanceFilter(BiFunction<String, List<ServiceInstance>, List<ServiceInstance>> instanceFilter) {
+		this.instanceFilter = instanceFilter;
+	}
+
+	private List<ServiceInstance> filter(String serviceId, List<ServiceInstance> instances) {
+		BiFunction<String, List<ServiceInstance>, List<ServiceInstance>> filter = this.instanceFilter;
+		return filter != null ? filter.apply(serviceId, instances) : instances;
+	}
+
+	/**
+	 * @return all the instances of the service, whatever the instance filter, or
+	 * {@code null} if they were never loaded
+	 */
+	public List<ServiceInstance> getIfLoaded(String serviceId) {
+		return this.snapshots.get(serviceId);
+	}
+
+	/**
+	 * @return whether the service was loaded and has instances, that is whether the
+	 * balancers choosing from the snapshots serve it. Instances of other services are
+	 * chosen elsewhere, e.g. by a {@code LoadBalancerClient}.
+	 */
+	public boolean hasInstances(String serviceId) {
+		List<ServiceInstance> instances = serviceId != null ? this.snapshots.get(serviceId) : null;
+		return instances != null && !instances.isEmpty();
+	}
+
+	/**
+	 * Adds a listener told of the new instances of a service whenever they change.
+	 */
+	public void addListener(BiConsumer<String, List<ServiceInstance>> listener) {
+		this.listeners.add(listener);
+	}
+
+	/**
+	 * Reloads the instances of every service asked for so far.
+	 */
+	public void refresh() {
+		for (String serviceId : this.snapshots.keySet()) {
+			try {
+				load(serviceId);
+			}
+			catch (RuntimeException e) {
+				log.warn("Could not refresh the instances of " + serviceId + ", keeping the previous ones", e);
+			}
+		}
+	}
+
+	public void dispose() {
+		this.refresher.dispose();
+		this.scheduler.dispose();
+	}
+
+	private List<ServiceInstance> load(String serviceId) {
+		List<ServiceInstance> instances = this.discoveryClient.getInstances(serviceId);
+		List<ServiceInstance> snapshot = instances == null || instances.isEmpty() ? Collections.emptyList()
+				: Collections.unmodifiableList(new ArrayList<>(instances));
+		List<ServiceInstance> previous = this.snapshots.get(serviceId);
+		if (previous != null && previous.equals(snapshot)) {
+			// 没有变化时保留原来的 List，依赖其身份的缓存不必重建
+			return previous;
+		}
+		this.snapshots.put(serviceId, snapshot);
+		for (BiConsumer<String, List<ServiceInstance>> listener : this.listeners) {
+			listener.accept(serviceId, snapshot);
+		}
+		return snapshot;
+	}
+}
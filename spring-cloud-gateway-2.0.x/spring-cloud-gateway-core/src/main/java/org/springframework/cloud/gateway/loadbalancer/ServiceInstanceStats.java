@@ -0,0 +1,338 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+/**
+ * What the gateway has seen of each upstream instance, fed by the routing filters and
+ * read by the balancers. Instances are told apart by service, host and port, since
+ * the DiscoveryClient hands out new objects on every refresh.
+ */
+public class ServiceInstanceStats {
+
+	private final Map<Key, Stats> stats = new ConcurrentHashMap<>();
+
+	private final double decayNanos;
+
+	private volatile Predicate<String> trackedServices = serviceId -> true;
+
+	public ServiceInstanceStats() {
+		this(Duration.ofSeconds(10));
+	}
+
+	/**
+	 * @param decayTime how long the latency average takes to decay by a factor of
+	 * {@code e}, the longer the more it remembers
+	 */
+	public ServiceInstanceStats(Duration decayTime) {
+		this.decayNanos = decayTime.toNanos();
+	}
+
+	public Stats get(ServiceInstance instance) {
+		Key key = new Key(instance);
+		Stats stats = this.stats.get(key);
+		if (stats == null) {
+			stats = this.stats.computeIfAbsent(key, k -> new Stats(this.decayNanos));
+		}
+		return stats;
+	}
+
+	/**
+	 * Sets the services whose instances are tracked by {@link #getIfTracked}, only those
+	 * whose stats {@link #retain} drops again. All are by default.
+	 */
+	public void setTrackedServices(Predicate<String> trackedServices) {
+		this.trackedServices = trackedServices;
+	}
+
+	/**
+	 * @return the stats of the instance, {@code null} if its service is not tracked, e.g.
+	 * because a {@code LoadBalancerClient} chose it
+	 */
+	public Stats getIfTracked(ServiceInstance instance) {
+		return this.trackedServices.test(instance.getServiceId()) ? get(instance) : null;
+	}
+
+	/**
+	 * Drops the stats of the instances of the service that are no longer in the list.
+	 * Requests still in flight to them keep updating the dropped stats.
+	 */
+	public void retain(String serviceId, Collection<ServiceInstance> instances) {
+		Set<Key> keys = new HashSet<>();
+		for (ServiceInstance instance : instances) {
+			keys.add(new Key(instance));
+		}
+		this.stats.keySet().removeIf(key -> Objects.equals(key.serviceId, serviceId) && !keys.contains(key));
+	}
+
+	/**
+	 * @return the stats by instance, keyed by {@code serviceId/host:port}
+	 */
+	public Map<String, Stats> getStats() {
+		Map<String, Stats> stats = new TreeMap<>();
+		this.stats.forEach((key, value) -> stats.put(key.toString(), value));
+		return Collections.unmodifiableMap(stats);
+	}
+
+	/**
+	 * The counters of one instance.
+	 */
+	public static class Stats {
+
+		private static final Latency NO_LATENCY = new Latency(0, 0);
+
+		private static final Outcomes NO_OUTCOMES = new Outcomes(0, 0, 0);
+
+		/**
+		 * Striped, requests to one instance start and end on many threads
+		 */
+		private final LongAdder inFlight = new LongAdder();
+
+		private final double decayNanos;
+
+		/**
+		 * Replaced as a whole, so that readers see the average and its time together
+		 */
+		private final AtomicReference<Latency> latency = new AtomicReference<>(NO_LATENCY);
+
+		/**
+		 * Outcomes of the current success rate window
+		 */
+		private final AtomicReference<Outcomes> outcomes = new AtomicReference<>(NO_OUTCOMES);
+
+		/**
+		 * {@link System#nanoTime()} the current or last ejection ends at, written by the
+		 * {@link OutlierDetector} under its lock, meaningless until the first ejection
+		 */
+		private volatile long ejectedUntil;
+
+		/**
+		 * Ejections in a row, each one longer than the previous
+		 */
+		private volatile int ejections;
+
+		private Stats(double decayNanos) {
+			this.decayNanos = decayNanos;
+		}
+
+		/**
+		 * Counts a request in, to be followed by {@link #requestFinished()}.
+		 */
+		public void requestStarted() {
+			this.inFlight.increment();
+		}
+
+		public void requestFinished() {
+			this.inFlight.decrement();
+		}
+
+		public long getInFlight() {
+			return this.inFlight.sum();
+		}
+
+		/**
+		 * Takes the latency of a response in: slower than the average, it becomes the
+		 * average, faster, it is weighted by the time since the last response.
+		 */
+		public void recordLatency(long latencyNanos) {
+			recordLatency(latencyNanos, System.nanoTime());
+		}
+
+		void recordLatency(long latencyNanos, long now) {
+			for (;;) {
+				Latency current = this.latency.get();
+				double ewma;
+				if (latencyNanos > current.ewma) {
+					// 峰值直接采用
+					ewma = latencyNanos;
+				}
+				else {
+					double weight = Math.exp(-Math.max(now - current.time, 0) / this.decayNanos);
+					ewma = current.ewma * weight + latencyNanos * (1 - weight);
+				}
+				if (this.latency.compareAndSet(current, new Latency(ewma, now))) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * @return the latency average in nanoseconds, decayed by the time since the last
+		 * response, 0 if there was none
+		 */
+		public double getLatency() {
+			return getLatency(System.nanoTime());
+		}
+
+		double getLatency(long now) {
+			Latency current = this.latency.get();
+			if (current.ewma == 0) {
+				return 0;
+			}
+			// 空闲时衰减，慢实例过一段时间会被重新尝试
+			return current.ewma * Math.exp(-Math.max(now - current.time, 0) / this.decayNanos);
+		}
+
+		/**
+		 * Takes the outcome of a request in, a new window starting once the current one
+		 * has {@code windowSize} requests.
+		 * @return the outcomes including this one
+		 */
+		Outcomes recordOutcome(boolean success, int windowSize) {
+			for (;;) {
+				Outcomes current = this.outcomes.get();
+				int requests = current.requests >= windowSize ? 0 : current.requests;
+				int failures = current.requests >= windowSize ? 0 : current.failures;
+				Outcomes next = success ? new Outcomes(0, requests + 1, failures)
+						: new Outcomes(current.consecutiveFailures + 1, requests + 1, failures + 1);
+				if (this.outcomes.compareAndSet(current, next)) {
+					return next;
+				}
+			}
+		}
+
+		void eject(long until) {
+			this.outcomes.set(NO_OUTCOMES);
+			this.ejectedUntil = until;
+			// 先写 ejectedUntil，读到 ejections 大于 0 时它已有效
+			this.ejections++;
+		}
+
+		void resetEjections() {
+			this.ejections = 0;
+		}
+
+		long getEjectedUntil() {
+			return this.ejectedUntil;
+		}
+
+		public int getConsecutiveFailures() {
+			return this.outcomes.get().consecutiveFailures;
+		}
+
+		/**
+		 * @return the share of successful requests in the current window, 1 if it is
+		 * empty
+		 */
+		public double getSuccessRate() {
+			return this.outcomes.get().getSuccessRate();
+		}
+
+		public boolean isEjected() {
+			return isEjected(System.nanoTime());
+		}
+
+		boolean isEjected(long now) {
+			return this.ejections > 0 && this.ejectedUntil - now > 0;
+		}
+
+		/**
+		 * @return how many times in a row the instance was ejected, reset once it has
+		 * stayed in for a while
+		 */
+		public int getEjections() {
+			return this.ejections;
+		}
+
+		@Override
+		public String toString() {
+			return "Stats{inFlight=" + getInFlight() + ", latency=" + (long) getLatency() + "ns, successRate="
+					+ getSuccessRate() + ", consecutiveFailures=" + getConsecutiveFailures() + ", ejected="
+					+ isEjected() + "}";
+		}
+	}
+
+	static final class Outcomes {
+
+		final int consecutiveFailures;
+
+		final int requests;
+
+		final int failures;
+
+		private Outcomes(int consecutiveFailures, int requests, int failures) {
+			this.consecutiveFailures = consecutiveFailures;
+			this.requests = requests;
+			this.failures = failures;
+		}
+
+		double getSuccessRate() {
+			return this.requests == 0 ? 1 : (double) (this.requests - this.failures) / this.requests;
+		}
+	}
+
+	private static final class Latency {
+
+		private final double ewma;
+
+		private final long time;
+
+		private Latency(double ewma, long time) {
+			this.ewma = ewma;
+			this.time = time;
+		}
+	}
+
+	private static final class Key {
+
+		private final String serviceId;
+
+		private final String host;
+
+		private final int port;
+
+		private Key(ServiceInstance instance) {
+			this.serviceId = instance.getServiceId();
+			this.host = instance.getHost();
+			this.port = instance.getPort();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key that = (Key) o;
+			return this.port == that.port && Objects.equals(this.serviceId, that.serviceId)
+					&& Objects.equals(this.host, that.host);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.serviceId, this.host, this.port);
+		}
+
+		@Override
+		public String toString() {
+			return this.serviceId + "/" + this.host + ":" + this.port;
+		}
+	}
+}
@@ -17,23 +17,44 @@
 
 package org.springframework.cloud.gateway.route;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.context.event.EventListener;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * @author Spencer Gibb
  */
 public class CachingRouteDefinitionLocator implements RouteDefinitionLocator {
 
+	private static final Log logger = LogFactory.getLog(CachingRouteDefinitionLocator.class);
+
 	private final RouteDefinitionLocator delegate;
 	private final AtomicReference<List<RouteDefinition>> cachedRoutes = new AtomicReference<>();
+	private final Scheduler scheduler;
+	private final RefreshCoalescer refreshes;
+
+	/**
+	 * 被 CachingRouteLocator 串联后由它驱动刷新，不再单独响应事件
+	 */
+	private volatile boolean refreshOnEvent = true;
 
 	public CachingRouteDefinitionLocator(RouteDefinitionLocator delegate) {
+		this(delegate, Schedulers.newSingle("route-definition-refresh", true));
+	}
+
+	public CachingRouteDefinitionLocator(RouteDefinitionLocator delegate, Scheduler scheduler) {
 		this.delegate = delegate;
-		this.cachedRoutes.compareAndSet(null, collectRoutes());
+		this.scheduler = scheduler;
+		this.refreshes = new RefreshCoalescer(this::rebuild, scheduler);
+		this.cachedRoutes.compareAndSet(null, this.delegate.getRouteDefinitions().collectList().block());
 	}
 
 	@Override
@@ -42,20 +63,75 @@ public class CachingRouteDefinitionLocator implements RouteDefinitionLocator {
 	}
 
 	/**
-	 * Sets the new routes
-	 * @return old routes
+	 * Reloads the route definitions on the refresh scheduler and swaps them in at once.
+	 * Nothing happens until the returned {@link Mono} is subscribed. Refreshes requested
+	 * while one is pending or running are coalesced, see
+	 * {@link #setRefreshDebounce(Duration)}.
+	 * @return completes once definitions reloaded after this call are live, or with the
+	 * error of the delegate, in which case the old definitions are kept
+	 */
+	public Mono<Void> refresh() {
+		return Mono.defer(this.refreshes::request);
+	}
+
+	/**
+	 * Reloads the definitions for the {@link CachingRouteLocator} chained to this
+	 * locator, without debounce since the route locator has debounced the refresh
+	 * already.
+	 */
+	Mono<Void> refreshForRoutes() {
+		return Mono.defer(() -> this.refreshes.request(Duration.ZERO));
+	}
+
+	/**
+	 * Leaves {@link RefreshRoutesEvent}s to the {@link CachingRouteLocator} chained to
+	 * this locator.
+	 */
+	void disableRefreshOnEvent() {
+		this.refreshOnEvent = false;
+	}
+
+	/**
+	 * How long a refresh waits for more refresh requests before reloading, defaults to
+	 * zero, requests received while a reload runs are coalesced either way.
+	 */
+	public void setRefreshDebounce(Duration debounce) {
+		this.refreshes.setDebounce(debounce);
+	}
+
+	public Duration getRefreshDebounce() {
+		return this.refreshes.getDebounce();
+	}
+
+	/**
+	 * @return the number of refreshes requested
+	 */
+	public long getRefreshesReceived() {
+		return this.refreshes.getReceived();
+	}
+
+	/**
+	 * @return the number of reloads the requested refreshes were coalesced into
 	 */
-	public Flux<RouteDefinition> refresh() {
-		return Flux.fromIterable(this.cachedRoutes.getAndUpdate(
-				routes -> CachingRouteDefinitionLocator.this.collectRoutes()));
+	public long getRefreshesExecuted() {
+		return this.refreshes.getExecuted();
 	}
 
-	private List<RouteDefinition> collectRoutes() {
-		return this.delegate.getRouteDefinitions().collectList().block();
+	private Mono<Void> rebuild() {
+		return this.delegate.getRouteDefinitions()
+				.subscribeOn(this.scheduler)
+				.collectList()
+				.doOnNext(this.cachedRoutes::set)
+				.then();
 	}
 
 	@EventListener(RefreshRoutesEvent.class)
-    /* for testing */ void handleRefresh() {
-        refresh();
+    /* for testing */ void handleRefresh(RefreshRoutesEvent event) {
+		if (!this.refreshOnEvent) {
+			return;
+		}
+		Mono<Void> refresh = refresh().cache();
+		refresh.subscribe(null, e -> logger.error("Error refreshing route definitions, keeping the current ones", e));
+		event.addRefresh(refresh);
     }
 }
@@ -17,55 +17,208 @@
 
 package org.springframework.cloud.gateway.route;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author Spencer Gibb
  */
 //缓存路由的 RouteLocator 实现类。RoutePredicateHandlerMapping 调用 CachingRouteLocator 的 RouteLocator#getRoutes() 方法，获取路由
-public class CachingRouteLocator implements RouteLocator {
+public class CachingRouteLocator implements RouteLocator, ApplicationEventPublisherAware {
+
+	private static final Log logger = LogFactory.getLog(CachingRouteLocator.class);
 
 	private final RouteLocator delegate;
     /**
      * 路由缓存
      */
-	private final AtomicReference<List<Route>> cachedRoutes = new AtomicReference<>();
+	private final AtomicReference<RouteIndex> cachedRoutes = new AtomicReference<>();
+
+	/**
+	 * 路由表的代数，每次重建加一
+	 */
+	private final AtomicLong generations = new AtomicLong();
+
+	/**
+	 * 重建路由所在的线程，不占用 event loop
+	 */
+	private final Scheduler scheduler;
+
+	/**
+	 * 合并刷新请求，同一时间最多一次重建
+	 */
+	private final RefreshCoalescer refreshes;
+
+	/**
+	 * 路由换上之前逐个校验
+	 */
+	private final List<RouteValidator> validators;
+
+	/**
+	 * 先于路由刷新的路由定义缓存
+	 */
+	private volatile CachingRouteDefinitionLocator routeDefinitionLocator;
+
+	private ApplicationEventPublisher publisher;
 
 	public CachingRouteLocator(RouteLocator delegate) {
+		this(delegate, Collections.emptyList());
+	}
+
+	public CachingRouteLocator(RouteLocator delegate, List<RouteValidator> validators) {
+		this(delegate, Schedulers.newSingle("route-refresh", true), validators);
+	}
+
+	public CachingRouteLocator(RouteLocator delegate, Scheduler scheduler) {
+		this(delegate, scheduler, Collections.emptyList());
+	}
+
+	/**
+	 * @param validators checks every route of a rebuild, a route failing them fails the
+	 * startup or, later on, the refresh, keeping the current routes
+	 */
+	public CachingRouteLocator(RouteLocator delegate, Scheduler scheduler, List<RouteValidator> validators) {
 		this.delegate = delegate;
-		this.cachedRoutes.compareAndSet(null, collectRoutes());
+		this.scheduler = scheduler;
+		this.validators = validators;
+		this.refreshes = new RefreshCoalescer(this::rebuild, scheduler);
+		// 启动时同步加载
+		this.cachedRoutes.compareAndSet(null, index(this.delegate.getRoutes().collectList().block()));
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher publisher) {
+		this.publisher = publisher;
 	}
 
 	@Override
 	public Flux<Route> getRoutes() {
-		return Flux.fromIterable(this.cachedRoutes.get());
+		return Flux.fromIterable(this.cachedRoutes.get().getRoutes());
+	}
+
+	@Override
+	public Flux<Route> getCandidateRoutes(ServerWebExchange exchange) {
+		return Flux.fromIterable(this.cachedRoutes.get().getCandidates(exchange));
+	}
+
+	@Override
+	public long getGeneration() {
+		return this.cachedRoutes.get().getGeneration();
 	}
 
 	/**
-	 * Sets the new routes
+	 * Rebuilds the routes on the refresh scheduler and swaps them in at once, requests
+	 * keep being matched against the old routes until then. Nothing happens until the
+	 * returned {@link Mono} is subscribed. Refreshes requested while one is pending or
+	 * running are coalesced, see {@link #setRefreshDebounce(Duration)}.
 	 * 刷新缓存 {@link cachedRoutes} 属性
-	 * @return old routes
+	 * @return completes once routes rebuilt after this call are live, or with the error
+	 * of the delegate, in which case the old routes are kept
+	 */
+	public Mono<Void> refresh() {
+		return Mono.defer(this.refreshes::request);
+	}
+
+	/**
+	 * Chains the refresh of the definitions the delegate builds routes from to the
+	 * refresh of the routes: every rebuild first reloads the definitions and starts once
+	 * they are swapped in, so that routes are never rebuilt from definitions cached
+	 * before the refresh. The definition locator no longer refreshes on
+	 * {@link RefreshRoutesEvent}s itself.
+	 */
+	public void setRouteDefinitionLocator(CachingRouteDefinitionLocator routeDefinitionLocator) {
+		routeDefinitionLocator.disableRefreshOnEvent();
+		this.routeDefinitionLocator = routeDefinitionLocator;
+	}
+
+	/**
+	 * @return the definition locator chained to this locator, {@code null} if there
+	 * is none
+	 */
+	public CachingRouteDefinitionLocator getRouteDefinitionLocator() {
+		return this.routeDefinitionLocator;
+	}
+
+	/**
+	 * How long a refresh waits for more refresh requests before rebuilding, defaults to
+	 * zero, requests received while a rebuild runs are coalesced either way.
+	 */
+	public void setRefreshDebounce(Duration debounce) {
+		this.refreshes.setDebounce(debounce);
+	}
+
+	public Duration getRefreshDebounce() {
+		return this.refreshes.getDebounce();
+	}
+
+	/**
+	 * @return the number of refreshes requested
 	 */
-	public Flux<Route> refresh() {
-		return Flux.fromIterable(this.cachedRoutes.getAndUpdate(
-				routes -> CachingRouteLocator.this.collectRoutes()));
+	public long getRefreshesReceived() {
+		return this.refreshes.getReceived();
 	}
 
-	private List<Route> collectRoutes() {
-		List<Route> routes = this.delegate.getRoutes().collectList().block();
+	/**
+	 * @return the number of rebuilds the requested refreshes were coalesced into
+	 */
+	public long getRefreshesExecuted() {
+		return this.refreshes.getExecuted();
+	}
+
+	private Mono<Void> rebuild() {
+		CachingRouteDefinitionLocator routeDefinitionLocator = this.routeDefinitionLocator;
+		Mono<Void> definitions = routeDefinitionLocator != null ? routeDefinitionLocator.refreshForRoutes()
+				: Mono.empty();
+		// 路由定义换上之后才开始构建路由
+		return definitions.then(Mono.defer(() -> this.delegate.getRoutes()
+				.subscribeOn(this.scheduler)
+				.collectList()
+				.publishOn(this.scheduler)
+				.map(this::index)
+				.doOnNext(this::publish)
+				.then()));
+	}
+
+	private RouteIndex index(List<Route> routes) {
+		for (Route route : routes) {
+			for (RouteValidator validator : this.validators) {
+				validator.validate(route);
+			}
+		}
 		// 排序
 		AnnotationAwareOrderComparator.sort(routes);
-		return routes;
+		// 建立索引
+		return new RouteIndex(routes, this.generations.incrementAndGet());
+	}
+
+	private void publish(RouteIndex routes) {
+		this.cachedRoutes.set(routes);
+		if (this.publisher != null) {
+			this.publisher.publishEvent(new RoutesRefreshedEvent(this));
+		}
 	}
 
 	//GatewayWebfluxEndpoint 有一个 HTTP API 调用了 ApplicationEventPublisher ，发布 RefreshRoutesEvent 事件
 	@EventListener(RefreshRoutesEvent.class)
-    /* for testing */ void handleRefresh() {
-        refresh();
+    /* for testing */ void handleRefresh(RefreshRoutesEvent event) {
+		// 发布者可等待新路由生效
+		Mono<Void> refresh = refresh().cache();
+		refresh.subscribe(null, e -> logger.error("Error refreshing routes, keeping the current ones", e));
+		event.addRefresh(refresh);
     }
 }
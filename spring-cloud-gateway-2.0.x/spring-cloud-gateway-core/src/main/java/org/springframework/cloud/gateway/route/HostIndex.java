@@ -0,0 +1,171 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Dispatch table for host patterns as matched by {@code AntPathMatcher(".")}. Literal
+ * hosts go in a hash map, patterns ending in literal labels such as
+ * {@code **.example.org} go in a trie over the reversed labels.
+ *
+ * Not thread safe while being built, read only afterwards.
+ */
+class HostIndex {
+
+	private final Map<String, List<Integer>> pendingExact = new HashMap<>();
+
+	private final Map<String, int[]> exact = new HashMap<>();
+
+	private final Node suffixes = new Node();
+
+	private boolean empty = true;
+
+	/**
+	 * Returns the labels of a host the same way {@code AntPathMatcher} tokenizes it,
+	 * or {@code null} if there are none.
+	 */
+	static String[] labels(String host) {
+		if (!StringUtils.hasLength(host) || host.charAt(0) == '.') {
+			// AntPathMatcher never matches a leading separator against a pattern without one
+			return null;
+		}
+		String[] labels = StringUtils.tokenizeToStringArray(host, ".", false, true);
+		return labels.length == 0 ? null : labels;
+	}
+
+	/**
+	 * Returns the trailing labels of the pattern that hold no wildcard, e.g.
+	 * {@code [example, org]} for {@code **.example.org}.
+	 */
+	static List<String> literalSuffix(String[] patternLabels) {
+		int start = patternLabels.length;
+		while (start > 0 && isLiteral(patternLabels[start - 1])) {
+			start--;
+		}
+		return Arrays.asList(patternLabels).subList(start, patternLabels.length);
+	}
+
+	private static boolean isLiteral(String label) {
+		return label.indexOf('*') == -1 && label.indexOf('?') == -1;
+	}
+
+	/**
+	 * Picks the most selective of the host patterns a route requires.
+	 * @return whether the route could be indexed
+	 */
+	boolean add(List<String> patterns, int position) {
+		List<String> longestSuffix = Collections.emptyList();
+		for (String pattern : patterns) {
+			if (pattern.indexOf('{') != -1) {
+				// uri variables may hold separators of their own
+				continue;
+			}
+			String[] labels = labels(pattern);
+			if (labels == null) {
+				continue;
+			}
+			List<String> suffix = literalSuffix(labels);
+			if (suffix.size() == labels.length) {
+				this.pendingExact.computeIfAbsent(StringUtils.arrayToDelimitedString(labels, "."),
+						host -> new ArrayList<>()).add(position);
+				this.empty = false;
+				return true;
+			}
+			if (suffix.size() > longestSuffix.size()) {
+				longestSuffix = suffix;
+			}
+		}
+		if (longestSuffix.isEmpty()) {
+			return false;
+		}
+		Node node = this.suffixes;
+		for (int i = longestSuffix.size() - 1; i >= 0; i--) {
+			node = node.children.computeIfAbsent(longestSuffix.get(i), label -> new Node());
+		}
+		node.pending.add(position);
+		this.empty = false;
+		return true;
+	}
+
+	/**
+	 * Freezes the positions added so far into sorted arrays.
+	 */
+	void build() {
+		this.pendingExact.forEach((host, positions) -> this.exact.put(host, toSortedArray(positions)));
+		this.pendingExact.clear();
+		this.suffixes.build();
+	}
+
+	boolean isEmpty() {
+		return this.empty;
+	}
+
+	/**
+	 * Collects the positions of the routes whose host patterns may match the host.
+	 */
+	List<int[]> match(String host) {
+		String[] labels = labels(host);
+		if (labels == null) {
+			return Collections.emptyList();
+		}
+		List<int[]> matches = new ArrayList<>();
+		int[] exact = this.exact.get(labels.length == 1 ? labels[0]
+				: StringUtils.arrayToDelimitedString(labels, "."));
+		if (exact != null) {
+			matches.add(exact);
+		}
+		Node node = this.suffixes;
+		for (int i = labels.length - 1; i >= 0; i--) {
+			node = node.children.get(labels[i]);
+			if (node == null) {
+				break;
+			}
+			if (node.positions.length > 0) {
+				matches.add(node.positions);
+			}
+		}
+		return matches;
+	}
+
+	private static int[] toSortedArray(List<Integer> positions) {
+		return positions.stream().mapToInt(Integer::intValue).sorted().toArray();
+	}
+
+	private static class Node {
+
+		private final Map<String, Node> children = new HashMap<>();
+
+		private List<Integer> pending = new ArrayList<>();
+
+		private int[] positions;
+
+		private void build() {
+			this.positions = toSortedArray(this.pending);
+			this.pending = null;
+			this.children.values().forEach(Node::build);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.StringUtils;
+
+/**
+ * Trie over the leading literal segments of path patterns. Each pattern is stored at
+ * the node of its last literal segment, so every pattern that can match a path sits
+ * on the walk from the root along that path's segments.
+ *
+ * Not thread safe while being built, read only afterwards.
+ */
+class PathPrefixTrie {
+
+	private final Node root = new Node();
+
+	private boolean empty = true;
+
+	/**
+	 * Returns the segments of the pattern up to the first one holding a wildcard or a
+	 * uri variable, e.g. {@code [foo, bar]} for {@code /foo/bar/{id}/**}.
+	 */
+	static List<String> literalPrefix(String pattern) {
+		if (!StringUtils.hasText(pattern) || pattern.charAt(0) != '/') {
+			return Collections.emptyList();
+		}
+		List<String> segments = new ArrayList<>();
+		for (String segment : StringUtils.delimitedListToStringArray(pattern.substring(1), "/")) {
+			if (segment.isEmpty() || segment.indexOf('*') != -1 || segment.indexOf('?') != -1
+					|| segment.indexOf('{') != -1) {
+				break;
+			}
+			segments.add(segment);
+		}
+		return segments;
+	}
+
+	void add(List<String> prefix, int position) {
+		Node node = this.root;
+		for (String segment : prefix) {
+			node = node.children.computeIfAbsent(segment, s -> new Node());
+		}
+		node.pending.add(position);
+		this.empty = false;
+	}
+
+	/**
+	 * Freezes the positions added so far into sorted arrays.
+	 */
+	void build() {
+		this.root.build();
+	}
+
+	boolean isEmpty() {
+		return this.empty;
+	}
+
+	/**
+	 * Collects the positions stored on the walk along the segments of the path.
+	 */
+	List<int[]> match(PathContainer path) {
+		List<int[]> matches = new ArrayList<>();
+		Node node = this.root;
+		for (PathContainer.Element element : path.elements()) {
+			if (!(element instanceof PathContainer.PathSegment)) {
+				continue;
+			}
+			node = node.children.get(((PathContainer.PathSegment) element).valueToMatch());
+			if (node == null) {
+				break;
+			}
+			if (node.positions.length > 0) {
+				matches.add(node.positions);
+			}
+		}
+		return matches;
+	}
+
+	private static class Node {
+
+		private final Map<String, Node> children = new HashMap<>();
+
+		private List<Integer> pending = new ArrayList<>();
+
+		private int[] positions;
+
+		private void build() {
+			this.positions = this.pending.stream().mapToInt(Integer::intValue).sorted().toArray();
+			this.pending = null;
+			this.children.values().forEach(Node::build);
+		}
+	}
+}
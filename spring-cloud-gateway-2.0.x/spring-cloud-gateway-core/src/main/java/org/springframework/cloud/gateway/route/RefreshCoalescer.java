@@ -0,0 +1,157 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Collapses refresh requests so that at most one rebuild runs at a time and at most one
+ * more is queued behind it. Requests received while a rebuild is queued join it, so a
+ * burst of {@link RefreshRoutesEvent}s costs one rebuild, or two when it arrives while
+ * one is running.
+ *
+ * A queued rebuild waits for the debounce window, counted from the first request that
+ * queued it, to gather the rest of a burst before starting.
+ */
+class RefreshCoalescer {
+
+	private final Supplier<Mono<Void>> rebuild;
+
+	private final Scheduler scheduler;
+
+	private volatile Duration debounce = Duration.ZERO;
+
+	private final AtomicLong received = new AtomicLong();
+
+	private final AtomicLong executed = new AtomicLong();
+
+	// 以下字段由 this 保护
+	private boolean queued;
+
+	private boolean running;
+
+	/**
+	 * 等待下一次重建完成的请求
+	 */
+	private List<MonoProcessor<Void>> waiting = new ArrayList<>();
+
+	RefreshCoalescer(Supplier<Mono<Void>> rebuild, Scheduler scheduler) {
+		this.rebuild = rebuild;
+		this.scheduler = scheduler;
+	}
+
+	void setDebounce(Duration debounce) {
+		Assert.isTrue(debounce != null && !debounce.isNegative(), "debounce must not be negative");
+		this.debounce = debounce;
+	}
+
+	Duration getDebounce() {
+		return this.debounce;
+	}
+
+	long getReceived() {
+		return this.received.get();
+	}
+
+	long getExecuted() {
+		return this.executed.get();
+	}
+
+	/**
+	 * @return completes once a rebuild started after this request is live, or with its
+	 * error
+	 */
+	Mono<Void> request() {
+		return request(this.debounce);
+	}
+
+	/**
+	 * @param debounce how long a rebuild queued by this request waits
+	 */
+	Mono<Void> request(Duration debounce) {
+		MonoProcessor<Void> done = MonoProcessor.create();
+		this.received.incrementAndGet();
+		synchronized (this) {
+			this.waiting.add(done);
+			if (!this.queued) {
+				this.queued = true;
+				// 正在重建时等它结束后再调度
+				if (!this.running) {
+					schedule(debounce);
+				}
+			}
+		}
+		return done;
+	}
+
+	private void schedule(Duration debounce) {
+		long delay = debounce.toMillis();
+		if (delay > 0) {
+			this.scheduler.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+		}
+		else {
+			this.scheduler.schedule(this::run);
+		}
+	}
+
+	private void run() {
+		List<MonoProcessor<Void>> batch;
+		synchronized (this) {
+			this.queued = false;
+			this.running = true;
+			batch = this.waiting;
+			this.waiting = new ArrayList<>();
+		}
+		this.executed.incrementAndGet();
+		Mono<Void> rebuild;
+		try {
+			rebuild = this.rebuild.get();
+		}
+		catch (RuntimeException e) {
+			rebuild = Mono.error(e);
+		}
+		rebuild.subscribe(null, e -> finish(batch, e), () -> finish(batch, null));
+	}
+
+	private void finish(List<MonoProcessor<Void>> batch, Throwable error) {
+		synchronized (this) {
+			this.running = false;
+			if (this.queued) {
+				schedule(this.debounce);
+			}
+		}
+		for (MonoProcessor<Void> done : batch) {
+			if (error != null) {
+				done.onError(error);
+			}
+			else {
+				done.onComplete();
+			}
+		}
+	}
+}
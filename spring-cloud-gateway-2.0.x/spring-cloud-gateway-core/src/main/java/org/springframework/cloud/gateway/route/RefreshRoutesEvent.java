@@ -17,13 +17,25 @@
 
 package org.springframework.cloud.gateway.route;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import reactor.core.publisher.Mono;
+
 import org.springframework.context.ApplicationEvent;
 
 /**
+ * Listeners refreshing in the background hand their refresh back with
+ * {@link #addRefresh(Mono)}, so that the publisher can wait for it.
+ *
  * @author Spencer Gibb
  */
 public class RefreshRoutesEvent extends ApplicationEvent {
 
+	private static final long serialVersionUID = 1L;
+
+	private final transient List<Mono<Void>> refreshes = new CopyOnWriteArrayList<>();
+
     /**
      * Create a new ApplicationEvent.
      *
@@ -32,4 +44,20 @@ public class RefreshRoutesEvent extends ApplicationEvent {
     public RefreshRoutesEvent(Object source) {
         super(source);
     }
+
+	/**
+	 * @param refresh the refresh a listener started for this event, subscribing to it
+	 * must not refresh again
+	 */
+	public void addRefresh(Mono<Void> refresh) {
+		this.refreshes.add(refresh);
+	}
+
+	/**
+	 * @return completes once the refreshes listeners handed back are done, with the
+	 * error of the first failing one
+	 */
+	public Mono<Void> getRefreshes() {
+		return Mono.when(this.refreshes);
+	}
 }
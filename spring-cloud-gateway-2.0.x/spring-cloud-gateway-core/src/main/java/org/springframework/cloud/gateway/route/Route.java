@@ -18,12 +18,15 @@
 package org.springframework.cloud.gateway.route;
 
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDescriptor;
 import org.springframework.core.Ordered;
 import org.springframework.util.Assert;
 import org.springframework.web.server.ServerWebExchange;
 
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 /**
@@ -49,10 +52,22 @@ public class Route implements Ordered {
      * 谓语数组
      */
 	private final Predicate<ServerWebExchange> predicate;
+	/**
+	 * Describes {@link #predicate} for routing indexes
+	 */
+	private final PredicateDescriptor predicateDescriptor;
     /**
      * 过滤器数组
      */
 	private final List<GatewayFilter> gatewayFilters;
+	/**
+	 * 元数据，按 Route 配置转发行为，例如 flush 策略
+	 */
+	private final Map<String, Object> metadata;
+	/**
+	 * 由元数据解析出的值，Route 不可变，每个 key 只解析一次
+	 */
+	private final Map<String, Object> parsedMetadata = new ConcurrentHashMap<>();
 
 	public static Builder builder() {
 		return new Builder();
@@ -62,15 +77,29 @@ public class Route implements Ordered {
 		return new Builder()
 				.id(routeDefinition.getId())
 				.uri(routeDefinition.getUri())
-				.order(routeDefinition.getOrder());
+				.order(routeDefinition.getOrder())
+				.metadata(routeDefinition.getMetadata());
 	}
 
 	public Route(String id, URI uri, int order, Predicate<ServerWebExchange> predicate, List<GatewayFilter> gatewayFilters) {
+		this(id, uri, order, predicate, PredicateDescriptor.opaque(), gatewayFilters);
+	}
+
+	public Route(String id, URI uri, int order, Predicate<ServerWebExchange> predicate,
+				 PredicateDescriptor predicateDescriptor, List<GatewayFilter> gatewayFilters) {
+		this(id, uri, order, predicate, predicateDescriptor, gatewayFilters, Collections.emptyMap());
+	}
+
+	public Route(String id, URI uri, int order, Predicate<ServerWebExchange> predicate,
+				 PredicateDescriptor predicateDescriptor, List<GatewayFilter> gatewayFilters,
+				 Map<String, Object> metadata) {
 		this.id = id;
 		this.uri = uri;
 		this.order = order;
 		this.predicate = predicate;
+		this.predicateDescriptor = predicateDescriptor;
 		this.gatewayFilters = gatewayFilters;
+		this.metadata = Collections.unmodifiableMap(new LinkedHashMap<>(metadata));
 	}
 
 	public static class Builder {
@@ -82,8 +111,12 @@ public class Route implements Ordered {
 
 		private Predicate<ServerWebExchange> predicate;
 
+		private PredicateDescriptor predicateDescriptor = PredicateDescriptor.opaque();
+
 		private List<GatewayFilter> gatewayFilters = new ArrayList<>();
 
+		private Map<String, Object> metadata = new LinkedHashMap<>();
+
 		private Builder() {}
 
 		public Builder id(String id) {
@@ -111,6 +144,11 @@ public class Route implements Ordered {
 			return this;
 		}
 
+		public Builder predicateDescriptor(PredicateDescriptor predicateDescriptor) {
+			this.predicateDescriptor = predicateDescriptor;
+			return this;
+		}
+
 		public Builder gatewayFilters(List<GatewayFilter> gatewayFilters) {
 			this.gatewayFilters = gatewayFilters;
 			return this;
@@ -126,12 +164,25 @@ public class Route implements Ordered {
 			return this;
 		}
 
+		public Builder metadata(String key, Object value) {
+			this.metadata.put(key, value);
+			return this;
+		}
+
+		public Builder metadata(Map<String, Object> metadata) {
+			this.metadata.putAll(metadata);
+			return this;
+		}
+
 		public Route build() {
 			Assert.notNull(this.id, "id can not be null");
 			Assert.notNull(this.uri, "uri can not be null");
 			//TODO: Assert.notNull(this.predicate, "predicate can not be null");
 
-			return new Route(this.id, this.uri, this.order, this.predicate, this.gatewayFilters);
+			Assert.notNull(this.predicateDescriptor, "predicateDescriptor can not be null");
+
+			return new Route(this.id, this.uri, this.order, this.predicate, this.predicateDescriptor, this.gatewayFilters,
+					this.metadata);
 		}
 	}
 
@@ -151,10 +202,29 @@ public class Route implements Ordered {
 		return this.predicate;
 	}
 
+	public PredicateDescriptor getPredicateDescriptor() {
+		return this.predicateDescriptor;
+	}
+
 	public List<GatewayFilter> getFilters() {
 		return Collections.unmodifiableList(this.gatewayFilters);
 	}
 
+	public Map<String, Object> getMetadata() {
+		return this.metadata;
+	}
+
+	/**
+	 * @param key names the parsed value, usually the metadata key it is parsed from
+	 * @param parser parses the value from the route, it is called once per key unless
+	 * it throws
+	 * @return the value the parser returned for this route
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getParsedMetadata(String key, Function<Route, T> parser) {
+		return (T) this.parsedMetadata.computeIfAbsent(key, k -> parser.apply(this));
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -164,7 +234,8 @@ public class Route implements Ordered {
 				Objects.equals(uri, route.uri) &&
 				Objects.equals(order, route.order) &&
 				Objects.equals(predicate, route.predicate) &&
-				Objects.equals(gatewayFilters, route.gatewayFilters);
+				Objects.equals(gatewayFilters, route.gatewayFilters) &&
+				Objects.equals(metadata, route.metadata);
 	}
 
 	@Override
@@ -180,6 +251,7 @@ public class Route implements Ordered {
 		sb.append(", order=").append(order);
 		sb.append(", predicate=").append(predicate);
 		sb.append(", gatewayFilters=").append(gatewayFilters);
+		sb.append(", metadata=").append(metadata);
 		sb.append('}');
 		return sb.toString();
 	}
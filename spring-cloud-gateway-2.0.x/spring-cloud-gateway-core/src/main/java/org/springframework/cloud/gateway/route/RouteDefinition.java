@@ -27,7 +27,9 @@ import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -65,6 +67,10 @@ public class RouteDefinition {
      * 顺序
      */
 	private int order = 0;
+    /**
+     * 元数据，见 {@link Route#getMetadata()}
+     */
+	private Map<String, Object> metadata = new LinkedHashMap<>();
 
 	public RouteDefinition() {}
 
@@ -139,6 +145,14 @@ public class RouteDefinition {
 		this.order = order;
 	}
 
+	public Map<String, Object> getMetadata() {
+		return metadata;
+	}
+
+	public void setMetadata(Map<String, Object> metadata) {
+		this.metadata = metadata;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -147,7 +161,8 @@ public class RouteDefinition {
 		return Objects.equals(id, routeDefinition.id) &&
 				Objects.equals(predicates, routeDefinition.predicates) &&
 				Objects.equals(order, routeDefinition.order) &&
-				Objects.equals(uri, routeDefinition.uri);
+				Objects.equals(uri, routeDefinition.uri) &&
+				Objects.equals(metadata, routeDefinition.metadata);
 	}
 
 	@Override
@@ -163,6 +178,7 @@ public class RouteDefinition {
 				", filters=" + filters +
 				", uri=" + uri +
 				", order=" + order +
+				", metadata=" + metadata +
 				'}';
 	}
 
@@ -22,27 +22,32 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cloud.gateway.config.GatewayProperties;
 import org.springframework.cloud.gateway.filter.FilterDefinition;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
 import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDescriptor;
 import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
 import org.springframework.cloud.gateway.support.ArgumentHints;
 import org.springframework.cloud.gateway.support.NameUtils;
-import org.springframework.context.expression.BeanFactoryResolver;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
-import org.springframework.expression.Expression;
-import org.springframework.expression.common.TemplateParserContext;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.tuple.Tuple;
 import org.springframework.tuple.TupleBuilder;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -51,7 +56,7 @@ import java.util.stream.Collectors;
  * @author Spencer Gibb
  */
 //从 RouteDefinitionLocator 获取 RouteDefinition ，转换成 Route
-public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAware {
+public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAware, DisposableBean {
 	protected final Log logger = LogFactory.getLog(getClass());
 
 	//提供 RouteDefinition
@@ -71,6 +76,20 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 	private final GatewayProperties gatewayProperties;
 	private final SpelExpressionParser parser = new SpelExpressionParser();
 	private BeanFactory beanFactory;
+	/**
+	 * 解析过的 SpEL 参数，所有 Route 共用
+	 */
+	private volatile SpelExpressions expressions = new SpelExpressions(this.parser, null);
+	/**
+	 * 并行转换 Route 的线程池，按需创建，并行度变化时重建，以下字段由 this 保护
+	 */
+	private ForkJoinPool compilationPool;
+	private Scheduler compilationScheduler;
+	/**
+	 * Routes converted by the last complete {@link #getRoutes()}, reused as long as
+	 * their definition and the default filters do not change
+	 */
+	private volatile Generation lastGeneration = new Generation(Collections.emptyList(), Collections.emptyMap());
 
 	public RouteDefinitionRouteLocator(RouteDefinitionLocator routeDefinitionLocator,
 									   List<RoutePredicateFactory> predicates,
@@ -89,6 +108,7 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 	@Override
 	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
 		this.beanFactory = beanFactory;
+		this.expressions = new SpelExpressions(this.parser, beanFactory);
 	}
 
 	private void initFactories(List<RoutePredicateFactory> predicates) {
@@ -108,8 +128,28 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 
 	@Override
 	public Flux<Route> getRoutes() {
-		return this.routeDefinitionLocator.getRouteDefinitions()
-				.map(this::convertToRoute) // RouteDefinition => Route
+		return Flux.defer(() -> {
+			List<FilterDefinition> defaultFilters = copyFilters(this.gatewayProperties.getDefaultFilters());
+			Generation previous = this.lastGeneration;
+			// 默认过滤器变化时，所有 Route 都需要重新转换
+			Map<String, ConvertedRoute> reusable = previous.defaultFilters.equals(defaultFilters)
+					? previous.routes : Collections.emptyMap();
+			Map<String, ConvertedRoute> converted = new ConcurrentHashMap<>();
+			Flux<RouteDefinition> routeDefinitions = this.routeDefinitionLocator.getRouteDefinitions();
+			Flux<Route> routes;
+			int parallelism = this.gatewayProperties.getRouteCompilationParallelism();
+			if (parallelism > 1) {
+				// 并行转换，flatMapSequential 保持 RouteDefinition 的顺序
+				Scheduler scheduler = getCompilationScheduler(parallelism);
+				routes = routeDefinitions.flatMapSequential(routeDefinition -> Mono
+						.fromCallable(() -> convertOrReuse(routeDefinition, reusable, converted))
+						.subscribeOn(scheduler));
+			} else {
+				routes = routeDefinitions
+						.map(routeDefinition -> convertOrReuse(routeDefinition, reusable, converted)); // RouteDefinition => Route
+			}
+			return routes.doOnComplete(() -> this.lastGeneration = new Generation(defaultFilters, converted));
+		})
 				//TODO: error handling
 				.map(route -> { // 打印日志
 					if (logger.isDebugEnabled()) {
@@ -125,15 +165,57 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 			}*/
 	}
 
+	private synchronized Scheduler getCompilationScheduler(int parallelism) {
+		if (this.compilationPool != null && this.compilationPool.getParallelism() != parallelism) {
+			// 已提交的转换仍会执行完
+			this.compilationPool.shutdown();
+			this.compilationPool = null;
+		}
+		if (this.compilationPool == null) {
+			this.compilationPool = new ForkJoinPool(parallelism, forkJoinPool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+				thread.setName("route-compilation-" + thread.getPoolIndex());
+				return thread;
+			}, null, false);
+			this.compilationScheduler = Schedulers.fromExecutorService(this.compilationPool);
+		}
+		return this.compilationScheduler;
+	}
+
+	@Override
+	public synchronized void destroy() {
+		if (this.compilationPool != null) {
+			this.compilationScheduler.dispose();
+			this.compilationPool.shutdown();
+			this.compilationPool = null;
+			this.compilationScheduler = null;
+		}
+	}
+
+	private Route convertOrReuse(RouteDefinition routeDefinition, Map<String, ConvertedRoute> reusable,
+								 Map<String, ConvertedRoute> converted) {
+		ConvertedRoute previous = reusable.get(routeDefinition.getId());
+		ConvertedRoute current;
+		if (previous != null && previous.isConvertedFrom(routeDefinition)) {
+			// 未变化，复用上一代的 Route
+			current = previous;
+		} else {
+			current = new ConvertedRoute(routeDefinition, convertToRoute(routeDefinition));
+		}
+		converted.put(routeDefinition.getId(), current);
+		return current.route;
+	}
+
 	//RouteDefinition => Route
 	private Route convertToRoute(RouteDefinition routeDefinition) {
 	    // 合并 Predicate
 		//将 RouteDefinition.predicates 数组合并成一个 java.util.function.Predicate ，这样 RoutePredicateHandlerMapping 为请求匹配 Route ，只要调用一次 Predicate#test(ServerWebExchange) 方法即可
-		Predicate<ServerWebExchange> predicate = combinePredicates(routeDefinition);
+		Route.Builder builder = Route.builder(routeDefinition);
+		Predicate<ServerWebExchange> predicate = combinePredicates(routeDefinition, builder);
 		// 获得 GatewayFilter
 		List<GatewayFilter> gatewayFilters = getFilters(routeDefinition);
 		// 构建 Route
-		return Route.builder(routeDefinition)
+		return builder
 				.predicate(predicate)
 				.gatewayFilters(gatewayFilters)
 				.build();
@@ -152,7 +234,7 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 					if (logger.isDebugEnabled()) {
 						logger.debug("RouteDefinition " + id + " applying filter " + args + " to " + definition.getName());
 					}
-					Tuple tuple = getTuple(filter, args, this.parser, this.beanFactory);
+					Tuple tuple = getTuple(filter, args, this.expressions);
 					// 获得 GatewayFilter
 					return filter.apply(tuple);
 				})
@@ -168,6 +250,10 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 
 	//TODO: make argument resolving a strategy
 	/* for testing */ static Tuple getTuple(ArgumentHints hasArguments, Map<String, String> args, SpelExpressionParser parser, BeanFactory beanFactory) {
+		return getTuple(hasArguments, args, new SpelExpressions(parser, beanFactory));
+	}
+
+	/* for testing */ static Tuple getTuple(ArgumentHints hasArguments, Map<String, String> args, SpelExpressions expressions) {
 		TupleBuilder builder = TupleBuilder.tuple();
 
 		// 参数为空
@@ -199,10 +285,7 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 			}
 			if (rawValue != null && rawValue.startsWith("#{") && entry.getValue().endsWith("}")) {
 				// assume it's spel
-				StandardEvaluationContext context = new StandardEvaluationContext();
-				context.setBeanResolver(new BeanFactoryResolver(beanFactory));
-				Expression expression = parser.parseExpression(entry.getValue(), new TemplateParserContext());
-				value = expression.getValue(context);
+				value = expressions.evaluate(entry.getValue());
 			} else {
 				value = entry.getValue();
 			}
@@ -241,21 +324,26 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 	}
 
 	//将 RouteDefinition.predicates 数组合并成一个 java.util.function.Predicate ，这样 RoutePredicateHandlerMapping 为请求匹配 Route ，只要调用一次 Predicate#test(ServerWebExchange) 方法即可
-	private Predicate<ServerWebExchange> combinePredicates(RouteDefinition routeDefinition) {
+	private Predicate<ServerWebExchange> combinePredicates(RouteDefinition routeDefinition, Route.Builder builder) {
 		//这里拆成了两部分，第一部分寻找，第二部分拼接
 	    // 寻找 Predicate
 		List<PredicateDefinition> predicates = routeDefinition.getPredicates();
-		Predicate<ServerWebExchange> predicate = lookup(routeDefinition, predicates.get(0));
+		List<PredicateDescriptor> descriptors = new ArrayList<>(predicates.size());
+		Predicate<ServerWebExchange> predicate = lookup(routeDefinition, predicates.get(0), descriptors);
 		// 拼接 Predicate
 		for (PredicateDefinition andPredicate : predicates.subList(1, predicates.size())) {
-			Predicate<ServerWebExchange> found = lookup(routeDefinition, andPredicate);
+			Predicate<ServerWebExchange> found = lookup(routeDefinition, andPredicate, descriptors);
 			predicate = predicate.and(found);
 		}
+		// the descriptors are and-ed the same way as the predicates
+		builder.predicateDescriptor(descriptors.stream()
+				.reduce(PredicateDescriptor.empty(), PredicateDescriptor::and));
 		// 返回 Predicate
 		return predicate;
 	}
 
-	private Predicate<ServerWebExchange> lookup(RouteDefinition routeDefinition, PredicateDefinition predicate) {
+	private Predicate<ServerWebExchange> lookup(RouteDefinition routeDefinition, PredicateDefinition predicate,
+												List<PredicateDescriptor> descriptors) {
 	    // 获得 RoutePredicateFactory
 		RoutePredicateFactory found = this.predicates.get(predicate.getName());
 		if (found == null) {
@@ -267,9 +355,84 @@ public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAwa
 			logger.debug("RouteDefinition " + routeDefinition.getId() + " applying "
 					+ args + " to " + predicate.getName());
 		}
-		Tuple tuple = getTuple(found, args, this.parser, this.beanFactory);
+		Tuple tuple = getTuple(found, args, this.expressions);
+		descriptors.add(found.describe(tuple));
 		// 获得 Predicate
 		return found.apply(tuple);
 	}
 
+	private static List<FilterDefinition> copyFilters(List<FilterDefinition> filters) {
+		List<FilterDefinition> copies = new ArrayList<>(filters.size());
+		for (FilterDefinition filter : filters) {
+			FilterDefinition copy = new FilterDefinition();
+			copy.setName(filter.getName());
+			copy.setArgs(new LinkedHashMap<>(filter.getArgs()));
+			copies.add(copy);
+		}
+		return copies;
+	}
+
+	private static List<PredicateDefinition> copyPredicates(List<PredicateDefinition> predicates) {
+		List<PredicateDefinition> copies = new ArrayList<>(predicates.size());
+		for (PredicateDefinition predicate : predicates) {
+			PredicateDefinition copy = new PredicateDefinition();
+			copy.setName(predicate.getName());
+			copy.setArgs(new LinkedHashMap<>(predicate.getArgs()));
+			copies.add(copy);
+		}
+		return copies;
+	}
+
+	private static class Generation {
+
+		private final List<FilterDefinition> defaultFilters;
+
+		/**
+		 * Key: {@link RouteDefinition#getId()}
+		 */
+		private final Map<String, ConvertedRoute> routes;
+
+		private Generation(List<FilterDefinition> defaultFilters, Map<String, ConvertedRoute> routes) {
+			this.defaultFilters = defaultFilters;
+			this.routes = routes;
+		}
+	}
+
+	/**
+	 * A route and a copy of the definition it was converted from. Definitions are
+	 * mutable and {@link RouteDefinition#equals(Object)} ignores filters, so they are
+	 * compared field by field.
+	 */
+	private static class ConvertedRoute {
+
+		private final URI uri;
+
+		private final int order;
+
+		private final List<PredicateDefinition> predicates;
+
+		private final List<FilterDefinition> filters;
+
+		private final Map<String, Object> metadata;
+
+		private final Route route;
+
+		private ConvertedRoute(RouteDefinition routeDefinition, Route route) {
+			this.uri = routeDefinition.getUri();
+			this.order = routeDefinition.getOrder();
+			this.predicates = copyPredicates(routeDefinition.getPredicates());
+			this.filters = copyFilters(routeDefinition.getFilters());
+			this.metadata = new HashMap<>(routeDefinition.getMetadata());
+			this.route = route;
+		}
+
+		private boolean isConvertedFrom(RouteDefinition routeDefinition) {
+			return this.order == routeDefinition.getOrder()
+					&& Objects.equals(this.uri, routeDefinition.getUri())
+					&& this.predicates.equals(routeDefinition.getPredicates())
+					&& this.filters.equals(routeDefinition.getFilters())
+					&& this.metadata.equals(routeDefinition.getMetadata());
+		}
+	}
+
 }
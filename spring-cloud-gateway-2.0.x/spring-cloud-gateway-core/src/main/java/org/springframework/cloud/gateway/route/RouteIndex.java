@@ -0,0 +1,200 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.cloud.gateway.handler.predicate.PredicateDescriptor;
+import org.springframework.cloud.gateway.handler.support.RequestView;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Immutable snapshot of an ordered route table, indexed by the literal prefix of the
+ * path patterns and by the host patterns found in each
+ * {@link Route#getPredicateDescriptor()}. A route left out of one of the indexes is a
+ * candidate for every request as far as that index is concerned.
+ */
+public class RouteIndex {
+
+	private final List<Route> routes;
+
+	private final long generation;
+
+	/**
+	 * Whether the route at a position is in {@link #pathPrefixTrie}
+	 */
+	private final boolean[] pathIndexed;
+
+	/**
+	 * Positions of the routes that are not in {@link #pathPrefixTrie}
+	 */
+	private final int[] pathUnindexed;
+
+	private final PathPrefixTrie pathPrefixTrie = new PathPrefixTrie();
+
+	/**
+	 * Whether the route at a position is in {@link #hostIndex}
+	 */
+	private final boolean[] hostIndexed;
+
+	/**
+	 * Positions of the routes that are not in {@link #hostIndex}
+	 */
+	private final int[] hostUnindexed;
+
+	private final HostIndex hostIndex = new HostIndex();
+
+	/**
+	 * @param routes the routes, already sorted
+	 */
+	public RouteIndex(List<Route> routes) {
+		this(routes, 0);
+	}
+
+	/**
+	 * @param routes the routes, already sorted
+	 * @param generation number of the route table, higher for newer tables
+	 */
+	public RouteIndex(List<Route> routes, long generation) {
+		this.routes = Collections.unmodifiableList(new ArrayList<>(routes));
+		this.generation = generation;
+		this.pathIndexed = new boolean[this.routes.size()];
+		this.hostIndexed = new boolean[this.routes.size()];
+
+		List<Integer> pathUnindexed = new ArrayList<>();
+		List<Integer> hostUnindexed = new ArrayList<>();
+		for (int i = 0; i < this.routes.size(); i++) {
+			PredicateDescriptor descriptor = this.routes.get(i).getPredicateDescriptor();
+			List<String> prefix = longestLiteralPrefix(descriptor);
+			if (prefix.isEmpty()) {
+				pathUnindexed.add(i);
+			} else {
+				this.pathPrefixTrie.add(prefix, i);
+				this.pathIndexed[i] = true;
+			}
+			if (this.hostIndex.add(descriptor.getHostPatterns(), i)) {
+				this.hostIndexed[i] = true;
+			} else {
+				hostUnindexed.add(i);
+			}
+		}
+		this.pathPrefixTrie.build();
+		this.hostIndex.build();
+		this.pathUnindexed = toArray(pathUnindexed);
+		this.hostUnindexed = toArray(hostUnindexed);
+	}
+
+	private static List<String> longestLiteralPrefix(PredicateDescriptor descriptor) {
+		// all path patterns of a route must match, so any of them can be used
+		List<String> longest = Collections.emptyList();
+		for (String pattern : descriptor.getPathPatterns()) {
+			List<String> prefix = PathPrefixTrie.literalPrefix(pattern);
+			if (prefix.size() > longest.size()) {
+				longest = prefix;
+			}
+		}
+		return longest;
+	}
+
+	private static int[] toArray(List<Integer> positions) {
+		return positions.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	public List<Route> getRoutes() {
+		return this.routes;
+	}
+
+	public long getGeneration() {
+		return this.generation;
+	}
+
+	/**
+	 * Returns the routes that may match the exchange, in route order.
+	 */
+	public List<Route> getCandidates(ServerWebExchange exchange) {
+		boolean byPath = !this.pathPrefixTrie.isEmpty();
+		boolean byHost = !this.hostIndex.isEmpty();
+		if (!byPath && !byHost) {
+			return this.routes;
+		}
+
+		int[] pathCandidates = null;
+		if (byPath) {
+			PathContainer path = RequestView.get(exchange).getPath();
+			pathCandidates = merge(this.pathUnindexed, this.pathPrefixTrie.match(path));
+		}
+		int[] hostCandidates = null;
+		if (byHost) {
+			String host = RequestView.get(exchange).getHost();
+			hostCandidates = merge(this.hostUnindexed, this.hostIndex.match(host));
+		}
+		if (!byHost) {
+			return toRoutes(pathCandidates);
+		}
+		if (!byPath) {
+			return toRoutes(hostCandidates);
+		}
+
+		// a route must be a candidate of both indexes, walk the shorter list
+		if (pathCandidates.length <= hostCandidates.length) {
+			return toRoutes(pathCandidates, this.hostIndexed, hostCandidates);
+		}
+		return toRoutes(hostCandidates, this.pathIndexed, pathCandidates);
+	}
+
+	private static int[] merge(int[] unindexed, List<int[]> matches) {
+		if (matches.isEmpty()) {
+			return unindexed;
+		}
+		int length = unindexed.length;
+		for (int[] match : matches) {
+			length += match.length;
+		}
+		int[] positions = Arrays.copyOf(unindexed, length);
+		int offset = unindexed.length;
+		for (int[] match : matches) {
+			System.arraycopy(match, 0, positions, offset, match.length);
+			offset += match.length;
+		}
+		// every route sits in exactly one bucket, sorting restores the route order
+		Arrays.sort(positions);
+		return positions;
+	}
+
+	private List<Route> toRoutes(int[] positions) {
+		List<Route> candidates = new ArrayList<>(positions.length);
+		for (int position : positions) {
+			candidates.add(this.routes.get(position));
+		}
+		return candidates;
+	}
+
+	private List<Route> toRoutes(int[] positions, boolean[] otherIndexed, int[] otherCandidates) {
+		List<Route> candidates = new ArrayList<>(positions.length);
+		for (int position : positions) {
+			if (!otherIndexed[position] || Arrays.binarySearch(otherCandidates, position) >= 0) {
+				candidates.add(this.routes.get(position));
+			}
+		}
+		return candidates;
+	}
+}
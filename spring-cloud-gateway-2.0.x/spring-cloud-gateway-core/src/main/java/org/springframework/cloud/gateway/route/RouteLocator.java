@@ -17,6 +17,7 @@
 
 package org.springframework.cloud.gateway.route;
 
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 
 /**
@@ -29,4 +30,23 @@ public interface RouteLocator {
 
 	Flux<Route> getRoutes();
 
+	/**
+	 * Returns the routes that may match the given exchange, in the same order as
+	 * {@link #getRoutes()}. Implementations may use an index to skip routes that
+	 * can not match; the route predicates still have to be tested.
+	 */
+	default Flux<Route> getCandidateRoutes(ServerWebExchange exchange) {
+		return getRoutes();
+	}
+
+	/**
+	 * Returns the generation of the routes, higher whenever they were replaced. Read
+	 * before {@link #getCandidateRoutes(ServerWebExchange)}, it is never newer than the
+	 * candidates, so what is derived from them may be kept under it. Locators that do
+	 * not track generations return 0.
+	 */
+	default long getGeneration() {
+		return 0;
+	}
+
 }
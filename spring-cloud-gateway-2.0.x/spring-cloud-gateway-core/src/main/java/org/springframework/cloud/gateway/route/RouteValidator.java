@@ -0,0 +1,34 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+/**
+ * Checks a route before it is served, once per rebuild of the routes rather than per
+ * request, so that a route naming something that does not exist fails startup or the
+ * refresh instead of every request it matches.
+ *
+ * @see CachingRouteLocator
+ */
+@FunctionalInterface
+public interface RouteValidator {
+
+	/**
+	 * @throws IllegalArgumentException if the route cannot be served, naming its id
+	 */
+	void validate(Route route);
+}
@@ -111,6 +111,11 @@ public class Routes {
 			return this;
 		}
 
+		public PredicateSpec metadata(String key, Object value) {
+			this.builder.metadata(key, value);
+			return this;
+		}
+
 		public GatewayFilterSpec predicate(Predicate<ServerWebExchange> predicate) {
 			this.builder.predicate(predicate);
 			return gatewayFilterBuilder();
@@ -161,6 +166,11 @@ public class Routes {
 			return this;
 		}
 
+		public GatewayFilterSpec metadata(String key, Object value) {
+			this.builder.metadata(key, value);
+			return this;
+		}
+
 		public GatewayFilterSpec addResponseHeader(String headerName, String headerValue) {
 			return add(GatewayFilters.addResponseHeader(headerName, headerValue));
 		}
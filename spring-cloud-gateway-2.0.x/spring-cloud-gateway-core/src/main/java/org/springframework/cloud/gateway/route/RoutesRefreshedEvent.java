@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by {@link CachingRouteLocator} once the routes rebuilt after a
+ * {@link RefreshRoutesEvent} are live. The rebuild runs in the background, so anything
+ * derived from the old routes should be dropped on this event rather than on the request.
+ */
+public class RoutesRefreshedEvent extends ApplicationEvent {
+
+	private static final long serialVersionUID = 1L;
+
+    /**
+     * Create a new ApplicationEvent.
+     *
+     * @param source the object on which the event initially occurred (never {@code null})
+     */
+    public RoutesRefreshedEvent(Object source) {
+        super(source);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.expression.BeanFactoryResolver;
+import org.springframework.expression.BeanResolver;
+import org.springframework.expression.Expression;
+import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+/**
+ * Evaluates {@code #{...}} route arguments, parsing each distinct expression once.
+ * Expressions are evaluated on every call, so one that creates an object still gives
+ * each route its own. Safe for use by concurrent route conversions: parsed expressions
+ * are shared, but {@link StandardEvaluationContext} is not thread-safe, so each
+ * evaluation gets its own.
+ */
+class SpelExpressions {
+
+	private static final TemplateParserContext TEMPLATE = new TemplateParserContext();
+
+	private final SpelExpressionParser parser;
+
+	private final BeanResolver beanResolver;
+
+	/**
+	 * Key: the expression string
+	 */
+	private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+	SpelExpressions(SpelExpressionParser parser, BeanFactory beanFactory) {
+		this.parser = parser;
+		this.beanResolver = beanFactory != null ? new BeanFactoryResolver(beanFactory) : null;
+	}
+
+	Object evaluate(String expression) {
+		StandardEvaluationContext context = new StandardEvaluationContext();
+		if (this.beanResolver != null) {
+			context.setBeanResolver(this.beanResolver);
+		}
+		return this.expressions.computeIfAbsent(expression,
+				key -> this.parser.parseExpression(key, TEMPLATE)).getValue(context);
+	}
+
+	/* for testing */ int size() {
+		return this.expressions.size();
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+import io.netty.util.NetUtil;
+
+/**
+ * Binary radix trie over the bits of IPv4 and IPv6 addresses, telling whether an
+ * address is in any of a set of CIDR blocks such as {@code 192.168.0.0/16} or
+ * {@code 2001:db8::/32}. A lookup walks at most one node per address bit, whatever the
+ * number of blocks, and {@link #contains(byte[])} does not allocate.
+ *
+ * Not thread safe while being built, read only afterwards.
+ */
+public class CidrTrie {
+
+	private final Trie ipv4 = new Trie();
+
+	private final Trie ipv6 = new Trie();
+
+	/**
+	 * Adds a CIDR block, or a single address if there is no prefix length.
+	 * @throws IllegalArgumentException if the block is not an IPv4 or IPv6 literal,
+	 * host names are not resolved
+	 */
+	public CidrTrie add(String cidr) {
+		String address = cidr.trim();
+		int prefixLength = -1;
+		int slash = address.indexOf('/');
+		if (slash != -1) {
+			try {
+				prefixLength = Integer.parseInt(address.substring(slash + 1).trim());
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid prefix length in '" + cidr + "'");
+			}
+			address = address.substring(0, slash).trim();
+		}
+		byte[] bytes = NetUtil.createByteArrayFromIpAddressString(address);
+		if (bytes == null) {
+			throw new IllegalArgumentException("Not an IP address '" + cidr + "'");
+		}
+		int bits = bytes.length * 8;
+		if (prefixLength == -1) {
+			prefixLength = bits;
+		}
+		if (prefixLength < 0 || prefixLength > bits) {
+			throw new IllegalArgumentException("Prefix length of '" + cidr + "' must be between 0 and " + bits);
+		}
+		trie(bytes.length).add(bytes, prefixLength);
+		return this;
+	}
+
+	public boolean contains(InetAddress address) {
+		return address != null && contains(address.getAddress());
+	}
+
+	/**
+	 * @param address the raw address, 4 bytes for IPv4 or 16 for IPv6
+	 */
+	public boolean contains(byte[] address) {
+		Trie trie = trie(address.length);
+		return trie != null && trie.contains(address);
+	}
+
+	private Trie trie(int addressLength) {
+		if (addressLength == 4) {
+			return this.ipv4;
+		}
+		if (addressLength == 16) {
+			return this.ipv6;
+		}
+		return null;
+	}
+
+	private static class Trie {
+
+		/**
+		 * Child node indexes per node, {@code [2 * node + bit]}, 0 for none since the
+		 * root is never a child
+		 */
+		private int[] children = new int[2 * 16];
+
+		/**
+		 * Whether a block ends at a node, every address below it is in the set
+		 */
+		private boolean[] terminal = new boolean[16];
+
+		private int size = 1;
+
+		private void add(byte[] address, int prefixLength) {
+			int node = 0;
+			for (int bit = 0; bit < prefixLength; bit++) {
+				if (this.terminal[node]) {
+					// already covered by a shorter block
+					return;
+				}
+				int index = 2 * node + bit(address, bit);
+				if (this.children[index] == 0) {
+					// grow before storing, newNode() may replace the array
+					int child = newNode();
+					this.children[index] = child;
+				}
+				node = this.children[index];
+			}
+			this.terminal[node] = true;
+		}
+
+		private int newNode() {
+			if (this.size == this.terminal.length) {
+				this.terminal = Arrays.copyOf(this.terminal, this.size * 2);
+				this.children = Arrays.copyOf(this.children, this.size * 4);
+			}
+			return this.size++;
+		}
+
+		private boolean contains(byte[] address) {
+			int node = 0;
+			int bits = address.length * 8;
+			for (int bit = 0; ; bit++) {
+				if (this.terminal[node]) {
+					return true;
+				}
+				if (bit == bits) {
+					return false;
+				}
+				node = this.children[2 * node + bit(address, bit)];
+				if (node == 0) {
+					return false;
+				}
+			}
+		}
+
+		private static int bit(byte[] address, int bit) {
+			return (address[bit >>> 3] >>> (7 - (bit & 7))) & 1;
+		}
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.function.ToIntFunction;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+
+import org.springframework.cloud.gateway.route.Route;
+
+/**
+ * When a proxied body is flushed to the socket, set per route with the
+ * {@link #REQUEST_FLUSH_STRATEGY} and {@link #RESPONSE_FLUSH_STRATEGY} metadata:
+ * <ul>
+ * <li>{@code each}: after every chunk, e.g. for server-sent events</li>
+ * <li>{@code batch}: once the chunks available at hand are written</li>
+ * <li>{@code bytes:<n>}: once at least {@code n} bytes are written</li>
+ * <li>{@code chunks:<n>}: after every {@code n} chunks</li>
+ * </ul>
+ * The body is always flushed when it completes.
+ */
+public final class FlushStrategy {
+
+	/**
+	 * Route metadata with the strategy for the request body sent upstream
+	 */
+	public static final String REQUEST_FLUSH_STRATEGY = "request-flush-strategy";
+
+	/**
+	 * Route metadata with the strategy for the response body sent to the client
+	 */
+	public static final String RESPONSE_FLUSH_STRATEGY = "response-flush-strategy";
+
+	private static final FlushStrategy EACH = new FlushStrategy(Mode.EACH, 1);
+
+	private static final FlushStrategy BATCH = new FlushStrategy(Mode.BATCH, 0);
+
+	private final Mode mode;
+
+	private final long threshold;
+
+	private FlushStrategy(Mode mode, long threshold) {
+		this.mode = mode;
+		this.threshold = threshold;
+	}
+
+	public static FlushStrategy onEach() {
+		return EACH;
+	}
+
+	public static FlushStrategy onBatch() {
+		return BATCH;
+	}
+
+	public static FlushStrategy onBytes(long bytes) {
+		if (bytes <= 0) {
+			throw new IllegalArgumentException("Flush threshold must be positive, was " + bytes + " bytes");
+		}
+		return new FlushStrategy(Mode.BYTES, bytes);
+	}
+
+	public static FlushStrategy onChunks(int chunks) {
+		if (chunks <= 0) {
+			throw new IllegalArgumentException("Flush threshold must be positive, was " + chunks + " chunks");
+		}
+		return chunks == 1 ? EACH : new FlushStrategy(Mode.CHUNKS, chunks);
+	}
+
+	/**
+	 * @param value a {@link FlushStrategy} or its text form such as {@code bytes:65536}
+	 * @throws IllegalArgumentException if the value is not a strategy
+	 */
+	public static FlushStrategy parse(Object value) {
+		if (value instanceof FlushStrategy) {
+			return (FlushStrategy) value;
+		}
+		return parseText(String.valueOf(value).trim());
+	}
+
+	private static FlushStrategy parseText(String value) {
+		if ("each".equalsIgnoreCase(value)) {
+			return EACH;
+		}
+		if ("batch".equalsIgnoreCase(value)) {
+			return BATCH;
+		}
+		int colon = value.indexOf(':');
+		if (colon != -1) {
+			String mode = value.substring(0, colon).trim();
+			String threshold = value.substring(colon + 1).trim();
+			try {
+				if ("bytes".equalsIgnoreCase(mode)) {
+					return onBytes(Long.parseLong(threshold));
+				}
+				if ("chunks".equalsIgnoreCase(mode)) {
+					return onChunks(Integer.parseInt(threshold));
+				}
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid flush threshold in '" + value + "'");
+			}
+		}
+		throw new IllegalArgumentException("Unknown flush strategy '" + value
+				+ "', must be each, batch, bytes:<n> or chunks:<n>");
+	}
+
+	/**
+	 * @return the strategy in the metadata of the route, parsed once per route, or the
+	 * default if the route is {@code null} or has no such metadata
+	 * @throws IllegalArgumentException if the metadata is not a strategy
+	 */
+	public static FlushStrategy forRoute(Route route, String metadataKey, FlushStrategy defaultStrategy) {
+		if (route == null || route.getMetadata().get(metadataKey) == null) {
+			return defaultStrategy;
+		}
+		return route.getParsedMetadata(metadataKey, r -> {
+			try {
+				return parse(r.getMetadata().get(metadataKey));
+			}
+			catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Invalid " + metadataKey + " of route " + r.getId() + ": "
+						+ e.getMessage(), e);
+			}
+		});
+	}
+
+	/**
+	 * Parses both strategies of the route, for use as a
+	 * {@link org.springframework.cloud.gateway.route.RouteValidator}.
+	 * @throws IllegalArgumentException if one is not a strategy
+	 */
+	public static void validate(Route route) {
+		forRoute(route, REQUEST_FLUSH_STRATEGY, EACH);
+		forRoute(route, RESPONSE_FLUSH_STRATEGY, BATCH);
+	}
+
+	public boolean isFlushOnEach() {
+		return this.mode == Mode.EACH;
+	}
+
+	/**
+	 * @return whether the body has to be split by {@link #group(Flux, ToIntFunction)},
+	 * one flush per group
+	 */
+	public boolean isGrouped() {
+		return this.mode == Mode.BYTES || this.mode == Mode.CHUNKS;
+	}
+
+	/**
+	 * Splits the body into groups that end where the body should be flushed.
+	 * @param size the readable bytes of a chunk
+	 */
+	public <T> Flux<Publisher<T>> group(Flux<T> body, ToIntFunction<? super T> size) {
+		switch (this.mode) {
+		case CHUNKS:
+			return body.window((int) this.threshold).map(window -> window);
+		case BYTES:
+			return Flux.defer(() -> {
+				// 每次订阅单独计数
+				long[] pending = new long[1];
+				return body.windowUntil(chunk -> {
+					pending[0] += size.applyAsInt(chunk);
+					if (pending[0] >= this.threshold) {
+						pending[0] = 0;
+						return true;
+					}
+					return false;
+				}).map(window -> window);
+			});
+		default:
+			return body.map(Flux::just);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		FlushStrategy that = (FlushStrategy) o;
+		return this.mode == that.mode && this.threshold == that.threshold;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * this.mode.hashCode() + Long.hashCode(this.threshold);
+	}
+
+	@Override
+	public String toString() {
+		switch (this.mode) {
+		case BYTES:
+			return "bytes:" + this.threshold;
+		case CHUNKS:
+			return "chunks:" + this.threshold;
+		default:
+			return this.mode.name().toLowerCase();
+		}
+	}
+
+	private enum Mode {
+		EACH, BATCH, BYTES, CHUNKS
+	}
+}
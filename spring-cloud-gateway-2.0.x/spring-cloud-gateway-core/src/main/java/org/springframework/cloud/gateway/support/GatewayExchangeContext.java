@@ -0,0 +1,344 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.net.URI;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ALREADY_ROUTED_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_SERVICE_INSTANCE_ATTR;
+
+/**
+ * Typed fields for the exchange attributes the gateway reads on every request:
+ * {@link ServerWebExchangeUtils#GATEWAY_ROUTE_ATTR},
+ * {@link ServerWebExchangeUtils#GATEWAY_REQUEST_URL_ATTR} and
+ * {@link ServerWebExchangeUtils#GATEWAY_ALREADY_ROUTED_ATTR}.
+ *
+ * The attribute names keep working. On an exchange decorated with
+ * {@link #decorate(ServerWebExchange)} reads of those attributes are served from the
+ * fields and writes update them, while the fields are written through to the original
+ * attributes for code holding the undecorated exchange. On other exchanges the context
+ * reads and writes the attributes.
+ */
+public class GatewayExchangeContext {
+
+	private static final Log log = LogFactory.getLog(GatewayExchangeContext.class);
+
+	/**
+	 * Callbacks run once the exchange is handled, kept in the attributes so that
+	 * exchanges that were not decorated support them too
+	 */
+	private static final String COMPLETION_CALLBACKS_ATTR = GatewayExchangeContext.class.getName() + ".completionCallbacks";
+
+	private final Map<String, Object> attributes;
+
+	private Route route;
+
+	private URI requestUrl;
+
+	private boolean alreadyRouted;
+
+	private GatewayExchangeContext(Map<String, Object> attributes) {
+		this.attributes = attributes;
+	}
+
+	/**
+	 * @return the context of the exchange, or a view of its attributes if it was not
+	 * decorated
+	 */
+	public static GatewayExchangeContext get(ServerWebExchange exchange) {
+		ServerWebExchange current = exchange;
+		// exchange.mutate() 会再包装一层
+		while (current instanceof ServerWebExchangeDecorator) {
+			if (current instanceof ContextServerWebExchange) {
+				return ((ContextServerWebExchange) current).context;
+			}
+			current = ((ServerWebExchangeDecorator) current).getDelegate();
+		}
+		return new AttributesContext(exchange.getAttributes());
+	}
+
+	/**
+	 * @return an exchange holding a context, attributes already set on it are moved to
+	 * the context
+	 */
+	public static ServerWebExchange decorate(ServerWebExchange exchange) {
+		if (exchange instanceof ContextServerWebExchange) {
+			return exchange;
+		}
+		return new ContextServerWebExchange(exchange);
+	}
+
+	public Route getRoute() {
+		return this.route;
+	}
+
+	public Route getRequiredRoute() {
+		Route route = getRoute();
+		if (route == null) {
+			throw new IllegalArgumentException("Required attribute '" + GATEWAY_ROUTE_ATTR + "' is missing");
+		}
+		return route;
+	}
+
+	public void setRoute(Route route) {
+		this.route = route;
+		writeThrough(GATEWAY_ROUTE_ATTR, route);
+	}
+
+	public URI getRequestUrl() {
+		return this.requestUrl;
+	}
+
+	public URI getRequiredRequestUrl() {
+		URI requestUrl = getRequestUrl();
+		if (requestUrl == null) {
+			throw new IllegalArgumentException("Required attribute '" + GATEWAY_REQUEST_URL_ATTR + "' is missing");
+		}
+		return requestUrl;
+	}
+
+	public void setRequestUrl(URI requestUrl) {
+		this.requestUrl = requestUrl;
+		writeThrough(GATEWAY_REQUEST_URL_ATTR, requestUrl);
+	}
+
+	public boolean isAlreadyRouted() {
+		return this.alreadyRouted;
+	}
+
+	public void setAlreadyRouted(boolean alreadyRouted) {
+		this.alreadyRouted = alreadyRouted;
+		writeThrough(GATEWAY_ALREADY_ROUTED_ATTR, alreadyRouted ? Boolean.TRUE : null);
+	}
+
+	/**
+	 * @return the instance the request was balanced to, {@code null} if it was not
+	 * balanced
+	 */
+	public ServiceInstance getServiceInstance() {
+		return (ServiceInstance) this.attributes.get(GATEWAY_SERVICE_INSTANCE_ATTR);
+	}
+
+	public void setServiceInstance(ServiceInstance serviceInstance) {
+		writeThrough(GATEWAY_SERVICE_INSTANCE_ATTR, serviceInstance);
+	}
+
+	/**
+	 * Registers a callback to run once the gateway has handled the exchange: the
+	 * response is written, or handling failed or was cancelled. Callbacks are run by
+	 * {@link org.springframework.cloud.gateway.handler.FilteringWebHandler}, in the
+	 * order they were registered.
+	 */
+	@SuppressWarnings("unchecked")
+	public void onComplete(Runnable callback) {
+		List<Runnable> callbacks = (List<Runnable>) this.attributes
+				.computeIfAbsent(COMPLETION_CALLBACKS_ATTR, name -> new ArrayList<Runnable>());
+		callbacks.add(callback);
+	}
+
+	/**
+	 * Runs the callbacks registered with {@link #onComplete(Runnable)} so far, each one
+	 * once.
+	 */
+	@SuppressWarnings("unchecked")
+	public void complete() {
+		List<Runnable> callbacks = (List<Runnable>) this.attributes.remove(COMPLETION_CALLBACKS_ATTR);
+		if (callbacks == null) {
+			return;
+		}
+		for (Runnable callback : callbacks) {
+			try {
+				callback.run();
+			}
+			catch (RuntimeException e) {
+				// 不影响其它回调
+				log.warn("Exchange completion callback failed", e);
+			}
+		}
+	}
+
+	private void writeThrough(String name, Object value) {
+		if (value != null) {
+			this.attributes.put(name, value);
+		}
+		else {
+			this.attributes.remove(name);
+		}
+	}
+
+	/**
+	 * Context of an exchange that was not decorated, backed by its attributes.
+	 */
+	private static class AttributesContext extends GatewayExchangeContext {
+
+		private final Map<String, Object> attributes;
+
+		private AttributesContext(Map<String, Object> attributes) {
+			super(attributes);
+			this.attributes = attributes;
+		}
+
+		@Override
+		public Route getRoute() {
+			return (Route) this.attributes.get(GATEWAY_ROUTE_ATTR);
+		}
+
+		@Override
+		public URI getRequestUrl() {
+			return (URI) this.attributes.get(GATEWAY_REQUEST_URL_ATTR);
+		}
+
+		@Override
+		public boolean isAlreadyRouted() {
+			return Boolean.TRUE.equals(this.attributes.get(GATEWAY_ALREADY_ROUTED_ATTR));
+		}
+	}
+
+	private static class ContextServerWebExchange extends ServerWebExchangeDecorator {
+
+		private final GatewayExchangeContext context;
+
+		private final ContextAttributes attributes;
+
+		private ContextServerWebExchange(ServerWebExchange delegate) {
+			super(delegate);
+			Map<String, Object> original = delegate.getAttributes();
+			this.context = new GatewayExchangeContext(original);
+			this.attributes = new ContextAttributes(original, this.context);
+			this.context.route = (Route) original.get(GATEWAY_ROUTE_ATTR);
+			this.context.requestUrl = (URI) original.get(GATEWAY_REQUEST_URL_ATTR);
+			this.context.alreadyRouted = Boolean.TRUE.equals(original.get(GATEWAY_ALREADY_ROUTED_ATTR));
+		}
+
+		@Override
+		public Map<String, Object> getAttributes() {
+			return this.attributes;
+		}
+	}
+
+	/**
+	 * The attributes of a decorated exchange. The fields of the context mirror their
+	 * attributes, which are written through, so only access by name needs redirecting.
+	 */
+	private static class ContextAttributes extends AbstractMap<String, Object> {
+
+		private final Map<String, Object> delegate;
+
+		private final GatewayExchangeContext context;
+
+		private ContextAttributes(Map<String, Object> delegate, GatewayExchangeContext context) {
+			this.delegate = delegate;
+			this.context = context;
+		}
+
+		@Override
+		public Object get(Object key) {
+			if (isRoute(key)) {
+				return this.context.route;
+			}
+			if (isRequestUrl(key)) {
+				return this.context.requestUrl;
+			}
+			if (isAlreadyRouted(key)) {
+				return this.context.alreadyRouted ? Boolean.TRUE : this.delegate.get(key);
+			}
+			return this.delegate.get(key);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public Object put(String key, Object value) {
+			Object previous = get(key);
+			if (isRoute(key)) {
+				this.context.setRoute((Route) value);
+			}
+			else if (isRequestUrl(key)) {
+				this.context.setRequestUrl((URI) value);
+			}
+			else if (isAlreadyRouted(key)) {
+				// 保留原值，例如 Boolean.FALSE
+				this.context.alreadyRouted = Boolean.TRUE.equals(value);
+				if (value != null) {
+					this.delegate.put(key, value);
+				}
+				else {
+					this.delegate.remove(key);
+				}
+			}
+			else {
+				return this.delegate.put(key, value);
+			}
+			return previous;
+		}
+
+		@Override
+		public Object remove(Object key) {
+			if (isRoute(key) || isRequestUrl(key) || isAlreadyRouted(key)) {
+				Object previous = get(key);
+				put((String) key, null);
+				return previous;
+			}
+			return this.delegate.remove(key);
+		}
+
+		@Override
+		public void clear() {
+			this.delegate.clear();
+			this.context.route = null;
+			this.context.requestUrl = null;
+			this.context.alreadyRouted = false;
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			// 与字段一致，直接遍历原始的 attributes
+			return this.delegate.entrySet();
+		}
+
+		private static boolean isRoute(Object key) {
+			return key == GATEWAY_ROUTE_ATTR || GATEWAY_ROUTE_ATTR.equals(key);
+		}
+
+		private static boolean isRequestUrl(Object key) {
+			return key == GATEWAY_REQUEST_URL_ATTR || GATEWAY_REQUEST_URL_ATTR.equals(key);
+		}
+
+		private static boolean isAlreadyRouted(Object key) {
+			return key == GATEWAY_ALREADY_ROUTED_ATTR || GATEWAY_ALREADY_ROUTED_ATTR.equals(key);
+		}
+	}
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.ChannelPoolHandler;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.resources.PoolResources;
+
+import org.springframework.util.Assert;
+
+/**
+ * Fixed size {@link PoolResources}, one pool per upstream host and port. Unlike
+ * {@link PoolResources#fixed(String, int, long)} it bounds the acquires waiting for a
+ * connection, closes connections idle for too long and reports active, idle and
+ * pending counts per host through {@link #getMetrics()}.
+ */
+public class HostPoolResources implements PoolResources {
+
+	private static final Log log = LogFactory.getLog(HostPoolResources.class);
+
+	private static final AttributeKey<Boolean> CLOSE_HANDLER_ADDED = AttributeKey.valueOf("gatewayPoolCloseHandlerAdded");
+
+	/**
+	 * When a pooled connection was last released, {@code null} while it is acquired
+	 */
+	private static final AttributeKey<Long> RELEASED_AT = AttributeKey.valueOf("gatewayPoolReleasedAt");
+
+	private final String name;
+
+	private final int maxConnections;
+
+	private final int maxPendingAcquires;
+
+	private final Duration acquireTimeout;
+
+	private final Duration maxIdleTime;
+
+	private final ConcurrentMap<String, HostPool> pools = new ConcurrentHashMap<>();
+
+	private final AtomicBoolean disposed = new AtomicBoolean();
+
+	/**
+	 * @param maxConnections maximum connections per host
+	 * @param maxPendingAcquires maximum acquires waiting for a connection per host,
+	 * further acquires fail right away
+	 * @param acquireTimeout how long an acquire waits for a connection before failing
+	 * @param maxIdleTime how long a connection stays pooled without being used,
+	 * {@code null} to keep idle connections
+	 */
+	public HostPoolResources(String name, int maxConnections, int maxPendingAcquires, Duration acquireTimeout,
+							 Duration maxIdleTime) {
+		Assert.isTrue(maxConnections > 0, "maxConnections must be positive");
+		Assert.isTrue(maxPendingAcquires > 0, "maxPendingAcquires must be positive");
+		Assert.notNull(acquireTimeout, "acquireTimeout can not be null");
+		this.name = name;
+		this.maxConnections = maxConnections;
+		this.maxPendingAcquires = maxPendingAcquires;
+		this.acquireTimeout = acquireTimeout;
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	@Override
+	public ChannelPool selectOrCreate(SocketAddress remote, Supplier<? extends Bootstrap> bootstrap,
+									  Consumer<? super Channel> onChannelCreate, EventLoopGroup group) {
+		String host = host(remote);
+		for (;;) {
+			HostPool pool = this.pools.get(host);
+			if (pool != null) {
+				return pool;
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("New " + this.name + " client pool for " + host);
+			}
+			pool = new HostPool(host, bootstrap.get().remoteAddress(remote), onChannelCreate, group);
+			if (this.pools.putIfAbsent(host, pool) == null) {
+				return pool;
+			}
+			pool.close();
+		}
+	}
+
+	private static String host(SocketAddress remote) {
+		if (remote instanceof InetSocketAddress) {
+			InetSocketAddress address = (InetSocketAddress) remote;
+			return address.getHostString() + ":" + address.getPort();
+		}
+		return String.valueOf(remote);
+	}
+
+	/**
+	 * @return the counts of every host pool, by {@code host:port}
+	 */
+	public Map<String, PoolMetrics> getMetrics() {
+		Map<String, PoolMetrics> metrics = new TreeMap<>();
+		this.pools.forEach((host, pool) -> metrics.put(host, pool.metrics()));
+		return metrics;
+	}
+
+	@Override
+	public void dispose() {
+		disposeLater().subscribe();
+	}
+
+	@Override
+	public Mono<Void> disposeLater() {
+		return Mono.fromRunnable(() -> {
+			this.disposed.set(true);
+			this.pools.values().forEach(HostPool::close);
+			this.pools.clear();
+		});
+	}
+
+	@Override
+	public boolean isDisposed() {
+		return this.disposed.get();
+	}
+
+	@Override
+	public String toString() {
+		return "HostPoolResources{name='" + this.name + "', maxConnections=" + this.maxConnections
+				+ ", maxPendingAcquires=" + this.maxPendingAcquires + ", acquireTimeout=" + this.acquireTimeout
+				+ ", maxIdleTime=" + this.maxIdleTime + "}";
+	}
+
+	/**
+	 * Counts of one host pool at some point in time.
+	 */
+	public static class PoolMetrics {
+
+		private final int active;
+
+		private final int idle;
+
+		private final int pending;
+
+		PoolMetrics(int active, int idle, int pending) {
+			this.active = active;
+			this.idle = idle;
+			this.pending = pending;
+		}
+
+		/**
+		 * @return connections acquired by requests
+		 */
+		public int getActive() {
+			return this.active;
+		}
+
+		/**
+		 * @return open connections waiting in the pool
+		 */
+		public int getIdle() {
+			return this.idle;
+		}
+
+		/**
+		 * @return acquires waiting for a connection
+		 */
+		public int getPending() {
+			return this.pending;
+		}
+
+		@Override
+		public String toString() {
+			return "PoolMetrics{active=" + this.active + ", idle=" + this.idle + ", pending=" + this.pending + "}";
+		}
+	}
+
+	private class HostPool implements ChannelPool, ChannelPoolHandler, ChannelHealthChecker {
+
+		private final String host;
+
+		private final ChannelPool pool;
+
+		private final Consumer<? super Channel> onChannelCreate;
+
+		private final EventLoopGroup group;
+
+		private final AtomicInteger open = new AtomicInteger();
+
+		private final AtomicInteger active = new AtomicInteger();
+
+		private final AtomicInteger pending = new AtomicInteger();
+
+		private HostPool(String host, Bootstrap bootstrap, Consumer<? super Channel> onChannelCreate,
+						 EventLoopGroup group) {
+			this.host = host;
+			this.onChannelCreate = onChannelCreate;
+			this.group = group;
+			this.pool = new FixedChannelPool(bootstrap, this, this, FixedChannelPool.AcquireTimeoutAction.FAIL,
+					acquireTimeout.toMillis(), maxConnections, maxPendingAcquires);
+		}
+
+		@Override
+		public Future<Channel> acquire() {
+			return acquire(this.group.next().newPromise());
+		}
+
+		@Override
+		public Future<Channel> acquire(Promise<Channel> promise) {
+			this.pending.incrementAndGet();
+			return this.pool.acquire(promise).addListener(future -> {
+				this.pending.decrementAndGet();
+				if (future.isSuccess()) {
+					acquired((Channel) future.getNow());
+				}
+			});
+		}
+
+		private void acquired(Channel channel) {
+			this.active.incrementAndGet();
+			channel.attr(RELEASED_AT).set(null);
+			if (channel.attr(CLOSE_HANDLER_ADDED).setIfAbsent(Boolean.TRUE) == null) {
+				// 连接关闭时归还给连接池，同 reactor-netty 的默认实现
+				channel.closeFuture().addListener(future -> this.pool.release(channel));
+			}
+		}
+
+		@Override
+		public Future<Void> release(Channel channel) {
+			return this.pool.release(channel);
+		}
+
+		@Override
+		public Future<Void> release(Channel channel, Promise<Void> promise) {
+			return this.pool.release(channel, promise);
+		}
+
+		@Override
+		public void close() {
+			this.pool.close();
+		}
+
+		@Override
+		public void channelCreated(Channel channel) {
+			this.open.incrementAndGet();
+			channel.closeFuture().addListener(future -> this.open.decrementAndGet());
+			if (log.isDebugEnabled()) {
+				log.debug("Created new pooled channel " + channel + " for " + this.host);
+			}
+			if (this.onChannelCreate != null) {
+				this.onChannelCreate.accept(channel);
+			}
+		}
+
+		@Override
+		public void channelAcquired(Channel channel) {
+		}
+
+		@Override
+		public void channelReleased(Channel channel) {
+			this.active.decrementAndGet();
+			if (maxIdleTime != null && channel.isActive()) {
+				long releasedAt = System.nanoTime();
+				channel.attr(RELEASED_AT).set(releasedAt);
+				// 使用 EventLoop 的定时任务，到期时仍未被复用则关闭
+				channel.eventLoop().schedule(() -> {
+					Long current = channel.attr(RELEASED_AT).get();
+					if (current != null && current == releasedAt) {
+						if (log.isDebugEnabled()) {
+							log.debug("Closing idle pooled channel " + channel + " for " + this.host);
+						}
+						channel.close();
+					}
+				}, maxIdleTime.toNanos(), TimeUnit.NANOSECONDS);
+			}
+		}
+
+		@Override
+		public Future<Boolean> isHealthy(Channel channel) {
+			Long releasedAt = channel.attr(RELEASED_AT).get();
+			boolean expired = maxIdleTime != null && releasedAt != null
+					&& System.nanoTime() - releasedAt >= maxIdleTime.toNanos();
+			return channel.eventLoop().newSucceededFuture(channel.isActive() && !expired);
+		}
+
+		private PoolMetrics metrics() {
+			int active = this.active.get();
+			return new PoolMetrics(active, Math.max(0, this.open.get() - active), this.pending.get());
+		}
+	}
+}
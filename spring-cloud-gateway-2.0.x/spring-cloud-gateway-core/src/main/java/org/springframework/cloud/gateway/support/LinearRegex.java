@@ -0,0 +1,684 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+/**
+ * Regular expression matcher that runs in time linear in the input length, whatever
+ * the pattern and input. Patterns are compiled to a non deterministic automaton which
+ * is simulated one input char at a time, so there is no backtracking.
+ *
+ * Supports the common subset of {@link java.util.regex.Pattern} syntax: literals,
+ * {@code .}, character classes with ranges and negation, {@code \d \D \w \W \s \S},
+ * groups, alternation, the {@code * + ? {n} {n,} {n,m}} quantifiers (lazy ones behave
+ * like greedy ones, as only whole input matches are reported) and {@code ^ $} anchors.
+ * Back references, look arounds and other constructs that need backtracking are
+ * rejected.
+ *
+ * Like {@link String#matches(String)}, {@link #matches(CharSequence)} tests the whole
+ * input. Instances are immutable and thread safe.
+ */
+public final class LinearRegex {
+
+	/**
+	 * Upper bound of the program size, as counted quantifiers are expanded
+	 */
+	private static final int MAX_PROGRAM_SIZE = 10_000;
+
+	private static final int CHAR = 0;
+	private static final int SPLIT = 1;
+	private static final int JUMP = 2;
+	private static final int BEGIN = 3;
+	private static final int END = 4;
+	private static final int MATCH = 5;
+
+	private final String regex;
+
+	private final int[] opcodes;
+
+	/**
+	 * First target of {@link #SPLIT} and {@link #JUMP}
+	 */
+	private final int[] targets;
+
+	/**
+	 * Second target of {@link #SPLIT}
+	 */
+	private final int[] alternatives;
+
+	/**
+	 * Chars accepted by {@link #CHAR}
+	 */
+	private final CharClass[] classes;
+
+	private LinearRegex(String regex, Program program) {
+		this.regex = regex;
+		int size = program.opcodes.size();
+		this.opcodes = new int[size];
+		this.targets = new int[size];
+		this.alternatives = new int[size];
+		this.classes = new CharClass[size];
+		for (int i = 0; i < size; i++) {
+			this.opcodes[i] = program.opcodes.get(i);
+			this.targets[i] = program.targets.get(i);
+			this.alternatives[i] = program.alternatives.get(i);
+			this.classes[i] = program.classes.get(i);
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the regex is invalid or uses a construct that
+	 * needs backtracking
+	 */
+	public static LinearRegex compile(String regex) {
+		Assert.notNull(regex, "regex can not be null");
+		Program program = new Program();
+		Node node = new Parser(regex).parse();
+		node.emit(program);
+		program.add(MATCH, 0, 0, null);
+		return new LinearRegex(regex, program);
+	}
+
+	/**
+	 * Tells whether the whole input matches.
+	 */
+	public boolean matches(CharSequence input) {
+		int size = this.opcodes.length;
+		int[] current = new int[size];
+		int[] next = new int[size];
+		// generation per instruction makes clearing the thread lists free
+		int[] seen = new int[size];
+		// every instruction is expanded once and pushes at most two others
+		int[] stack = new int[2 * size + 1];
+		int generation = 1;
+
+		int length = input.length();
+		int count = addThread(0, 0, length, current, 0, seen, generation, stack);
+		for (int position = 0; position < length && count > 0; position++) {
+			char c = input.charAt(position);
+			generation++;
+			int nextCount = 0;
+			for (int i = 0; i < count; i++) {
+				int pc = current[i];
+				if (this.opcodes[pc] == CHAR && this.classes[pc].matches(c)) {
+					nextCount = addThread(pc + 1, position + 1, length, next, nextCount, seen, generation, stack);
+				}
+			}
+			int[] swap = current;
+			current = next;
+			next = swap;
+			count = nextCount;
+		}
+		for (int i = 0; i < count; i++) {
+			if (this.opcodes[current[i]] == MATCH) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the instructions reachable from {@code start} without consuming input.
+	 */
+	private int addThread(int start, int position, int length, int[] threads, int count, int[] seen,
+						  int generation, int[] stack) {
+		int top = 0;
+		stack[top++] = start;
+		while (top > 0) {
+			int pc = stack[--top];
+			if (seen[pc] == generation) {
+				continue;
+			}
+			seen[pc] = generation;
+			switch (this.opcodes[pc]) {
+				case JUMP:
+					stack[top++] = this.targets[pc];
+					break;
+				case SPLIT:
+					// pushed in reverse so the preferred branch is explored first
+					stack[top++] = this.alternatives[pc];
+					stack[top++] = this.targets[pc];
+					break;
+				case BEGIN:
+					if (position == 0) {
+						stack[top++] = pc + 1;
+					}
+					break;
+				case END:
+					if (position == length) {
+						stack[top++] = pc + 1;
+					}
+					break;
+				default:
+					threads[count++] = pc;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return this.regex;
+	}
+
+	private static class Program {
+
+		private final List<Integer> opcodes = new ArrayList<>();
+		private final List<Integer> targets = new ArrayList<>();
+		private final List<Integer> alternatives = new ArrayList<>();
+		private final List<CharClass> classes = new ArrayList<>();
+
+		private int add(int opcode, int target, int alternative, CharClass charClass) {
+			if (this.opcodes.size() >= MAX_PROGRAM_SIZE) {
+				throw new IllegalArgumentException("Regex is too large, it compiles to more than "
+						+ MAX_PROGRAM_SIZE + " instructions");
+			}
+			this.opcodes.add(opcode);
+			this.targets.add(target);
+			this.alternatives.add(alternative);
+			this.classes.add(charClass);
+			return this.opcodes.size() - 1;
+		}
+
+		private int size() {
+			return this.opcodes.size();
+		}
+
+		private void setTarget(int pc, int target) {
+			this.targets.set(pc, target);
+		}
+
+		private void setAlternative(int pc, int alternative) {
+			this.alternatives.set(pc, alternative);
+		}
+	}
+
+	private interface Node {
+
+		void emit(Program program);
+	}
+
+	private static class CharNode implements Node {
+
+		private final CharClass charClass;
+
+		CharNode(CharClass charClass) {
+			this.charClass = charClass;
+		}
+
+		@Override
+		public void emit(Program program) {
+			program.add(CHAR, 0, 0, this.charClass);
+		}
+	}
+
+	private static class AssertNode implements Node {
+
+		private final int opcode;
+
+		AssertNode(int opcode) {
+			this.opcode = opcode;
+		}
+
+		@Override
+		public void emit(Program program) {
+			program.add(this.opcode, 0, 0, null);
+		}
+	}
+
+	private static class ConcatNode implements Node {
+
+		private final List<Node> nodes;
+
+		ConcatNode(List<Node> nodes) {
+			this.nodes = nodes;
+		}
+
+		@Override
+		public void emit(Program program) {
+			for (Node node : this.nodes) {
+				node.emit(program);
+			}
+		}
+	}
+
+	private static class AlternationNode implements Node {
+
+		private final List<Node> nodes;
+
+		AlternationNode(List<Node> nodes) {
+			this.nodes = nodes;
+		}
+
+		@Override
+		public void emit(Program program) {
+			// split L1, next; L1: a; jump end; next: split L2, ...; last alternative
+			List<Integer> jumps = new ArrayList<>();
+			for (int i = 0; i < this.nodes.size() - 1; i++) {
+				int split = program.add(SPLIT, 0, 0, null);
+				program.setTarget(split, program.size());
+				this.nodes.get(i).emit(program);
+				jumps.add(program.add(JUMP, 0, 0, null));
+				program.setAlternative(split, program.size());
+			}
+			this.nodes.get(this.nodes.size() - 1).emit(program);
+			for (int jump : jumps) {
+				program.setTarget(jump, program.size());
+			}
+		}
+	}
+
+	private static class RepeatNode implements Node {
+
+		private final Node node;
+
+		private final int min;
+
+		/**
+		 * -1 for unbounded
+		 */
+		private final int max;
+
+		RepeatNode(Node node, int min, int max) {
+			this.node = node;
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		public void emit(Program program) {
+			for (int i = 0; i < this.min; i++) {
+				this.node.emit(program);
+			}
+			if (this.max == -1) {
+				// L1: split L2, end; L2: node; jump L1; end:
+				int split = program.add(SPLIT, 0, 0, null);
+				program.setTarget(split, program.size());
+				this.node.emit(program);
+				program.add(JUMP, split, 0, null);
+				program.setAlternative(split, program.size());
+				return;
+			}
+			List<Integer> splits = new ArrayList<>();
+			for (int i = this.min; i < this.max; i++) {
+				int split = program.add(SPLIT, 0, 0, null);
+				program.setTarget(split, program.size());
+				splits.add(split);
+				this.node.emit(program);
+			}
+			for (int split : splits) {
+				program.setAlternative(split, program.size());
+			}
+		}
+	}
+
+	private static class Parser {
+
+		private final String regex;
+
+		private int position;
+
+		Parser(String regex) {
+			this.regex = regex;
+		}
+
+		Node parse() {
+			Node node = parseAlternation();
+			if (this.position < this.regex.length()) {
+				throw error("Unmatched ')'");
+			}
+			return node;
+		}
+
+		private Node parseAlternation() {
+			List<Node> alternatives = new ArrayList<>();
+			alternatives.add(parseConcatenation());
+			while (peek('|')) {
+				this.position++;
+				alternatives.add(parseConcatenation());
+			}
+			return alternatives.size() == 1 ? alternatives.get(0) : new AlternationNode(alternatives);
+		}
+
+		private Node parseConcatenation() {
+			List<Node> nodes = new ArrayList<>();
+			while (this.position < this.regex.length() && !peek('|') && !peek(')')) {
+				nodes.add(parseQuantified());
+			}
+			return nodes.size() == 1 ? nodes.get(0) : new ConcatNode(nodes);
+		}
+
+		private Node parseQuantified() {
+			Node atom = parseAtom();
+			while (this.position < this.regex.length()) {
+				int min;
+				int max;
+				char c = this.regex.charAt(this.position);
+				if (c == '*') {
+					min = 0;
+					max = -1;
+					this.position++;
+				}
+				else if (c == '+') {
+					min = 1;
+					max = -1;
+					this.position++;
+				}
+				else if (c == '?') {
+					min = 0;
+					max = 1;
+					this.position++;
+				}
+				else if (c == '{') {
+					this.position++;
+					min = parseNumber();
+					max = min;
+					if (peek(',')) {
+						this.position++;
+						max = peek('}') ? -1 : parseNumber();
+					}
+					expect('}');
+					if (max != -1 && max < min) {
+						throw error("Illegal repetition range");
+					}
+				}
+				else {
+					return atom;
+				}
+				if (peek('?')) {
+					// lazy, same outcome for whole input matches
+					this.position++;
+				}
+				else if (peek('+')) {
+					throw error("Possessive quantifiers are not supported");
+				}
+				atom = new RepeatNode(atom, min, max);
+			}
+			return atom;
+		}
+
+		private Node parseAtom() {
+			char c = this.regex.charAt(this.position++);
+			switch (c) {
+				case '(':
+					if (peek('?')) {
+						this.position++;
+						if (!peek(':')) {
+							throw error("Only non capturing groups are supported");
+						}
+						this.position++;
+					}
+					Node group = parseAlternation();
+					expect(')');
+					return group;
+				case '[':
+					return new CharNode(parseClass());
+				case '.':
+					return new CharNode(CharClass.DOT);
+				case '^':
+					return new AssertNode(BEGIN);
+				case '$':
+					return new AssertNode(END);
+				case '\\':
+					return new CharNode(parseEscape(false));
+				case '*':
+				case '+':
+				case '?':
+				case '{':
+					throw error("Dangling meta character '" + c + "'");
+				default:
+					return new CharNode(CharClass.of(c));
+			}
+		}
+
+		private CharClass parseClass() {
+			boolean negated = false;
+			if (peek('^')) {
+				negated = true;
+				this.position++;
+			}
+			CharClass.Builder builder = new CharClass.Builder();
+			boolean first = true;
+			while (true) {
+				if (this.position >= this.regex.length()) {
+					throw error("Unclosed character class");
+				}
+				char c = this.regex.charAt(this.position);
+				if (c == ']' && !first) {
+					this.position++;
+					break;
+				}
+				first = false;
+				if (c == '[' || (c == '&' && this.regex.startsWith("&&", this.position))) {
+					throw error("Nested classes and intersections are not supported");
+				}
+				this.position++;
+				char low;
+				if (c == '\\') {
+					CharClass escaped = parseEscape(true);
+					if (!escaped.isSingleChar()) {
+						builder.add(escaped);
+						continue;
+					}
+					low = escaped.singleChar();
+				}
+				else {
+					low = c;
+				}
+				if (peek('-') && this.position + 1 < this.regex.length()
+						&& this.regex.charAt(this.position + 1) != ']') {
+					this.position++;
+					char high = this.regex.charAt(this.position++);
+					if (high == '\\') {
+						CharClass escaped = parseEscape(true);
+						if (!escaped.isSingleChar()) {
+							throw error("Illegal character range");
+						}
+						high = escaped.singleChar();
+					}
+					if (high < low) {
+						throw error("Illegal character range");
+					}
+					builder.addRange(low, high);
+				}
+				else {
+					builder.addRange(low, low);
+				}
+			}
+			return builder.build(negated);
+		}
+
+		private CharClass parseEscape(boolean inClass) {
+			if (this.position >= this.regex.length()) {
+				throw error("Unexpected end of regex");
+			}
+			char c = this.regex.charAt(this.position++);
+			switch (c) {
+				case 'd':
+					return CharClass.DIGIT;
+				case 'D':
+					return CharClass.DIGIT.negate();
+				case 'w':
+					return CharClass.WORD;
+				case 'W':
+					return CharClass.WORD.negate();
+				case 's':
+					return CharClass.SPACE;
+				case 'S':
+					return CharClass.SPACE.negate();
+				case 't':
+					return CharClass.of('\t');
+				case 'n':
+					return CharClass.of('\n');
+				case 'r':
+					return CharClass.of('\r');
+				case 'f':
+					return CharClass.of('\f');
+				case 'e':
+					return CharClass.of('\u001B');
+				case 'a':
+					return CharClass.of('\u0007');
+				default:
+					if (Character.isLetterOrDigit(c)) {
+						throw error("Unsupported escape '\\" + c + "'");
+					}
+					return CharClass.of(c);
+			}
+		}
+
+		private int parseNumber() {
+			int start = this.position;
+			while (this.position < this.regex.length() && Character.isDigit(this.regex.charAt(this.position))) {
+				this.position++;
+			}
+			if (start == this.position) {
+				throw error("Illegal repetition");
+			}
+			try {
+				return Integer.parseInt(this.regex.substring(start, this.position));
+			}
+			catch (NumberFormatException e) {
+				throw error("Illegal repetition");
+			}
+		}
+
+		private boolean peek(char c) {
+			return this.position < this.regex.length() && this.regex.charAt(this.position) == c;
+		}
+
+		private void expect(char c) {
+			if (!peek(c)) {
+				throw error("Expected '" + c + "'");
+			}
+			this.position++;
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " near index " + this.position + " of regex '"
+					+ this.regex + "'");
+		}
+	}
+
+	/**
+	 * Set of chars as sorted, non overlapping inclusive ranges.
+	 */
+	private static class CharClass {
+
+		static final CharClass DIGIT = new Builder().addRange('0', '9').build(false);
+
+		static final CharClass WORD = new Builder().addRange('a', 'z').addRange('A', 'Z')
+				.addRange('_', '_').addRange('0', '9').build(false);
+
+		static final CharClass SPACE = new Builder().addRange(' ', ' ').addRange('\t', '\r').build(false);
+
+		/**
+		 * Any char but line terminators, as {@code .} without {@code DOTALL}
+		 */
+		static final CharClass DOT = new Builder().addRange('\n', '\n').addRange('\r', '\r')
+				.addRange('\u0085', '\u0085').addRange('\u2028', '\u2029').build(true);
+
+		private final char[] ranges;
+
+		private CharClass(char[] ranges) {
+			this.ranges = ranges;
+		}
+
+		static CharClass of(char c) {
+			return new CharClass(new char[] { c, c });
+		}
+
+		boolean matches(char c) {
+			for (int i = 0; i < this.ranges.length; i += 2) {
+				if (c < this.ranges[i]) {
+					return false;
+				}
+				if (c <= this.ranges[i + 1]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		boolean isSingleChar() {
+			return this.ranges.length == 2 && this.ranges[0] == this.ranges[1];
+		}
+
+		char singleChar() {
+			return this.ranges[0];
+		}
+
+		CharClass negate() {
+			return new Builder().add(this).build(true);
+		}
+
+		private static class Builder {
+
+			private final List<char[]> ranges = new ArrayList<>();
+
+			Builder addRange(char low, char high) {
+				this.ranges.add(new char[] { low, high });
+				return this;
+			}
+
+			Builder add(CharClass charClass) {
+				for (int i = 0; i < charClass.ranges.length; i += 2) {
+					addRange(charClass.ranges[i], charClass.ranges[i + 1]);
+				}
+				return this;
+			}
+
+			CharClass build(boolean negated) {
+				this.ranges.sort((r1, r2) -> Character.compare(r1[0], r2[0]));
+				List<char[]> merged = new ArrayList<>();
+				for (char[] range : this.ranges) {
+					char[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+					if (last != null && range[0] <= last[1] + 1) {
+						last[1] = (char) Math.max(last[1], range[1]);
+					}
+					else {
+						merged.add(new char[] { range[0], range[1] });
+					}
+				}
+				if (negated) {
+					List<char[]> complement = new ArrayList<>();
+					int next = Character.MIN_VALUE;
+					for (char[] range : merged) {
+						if (range[0] > next) {
+							complement.add(new char[] { (char) next, (char) (range[0] - 1) });
+						}
+						next = range[1] + 1;
+					}
+					if (next <= Character.MAX_VALUE) {
+						complement.add(new char[] { (char) next, Character.MAX_VALUE });
+					}
+					merged = complement;
+				}
+				char[] flat = new char[merged.size() * 2];
+				for (int i = 0; i < merged.size(); i++) {
+					flat[2 * i] = merged.get(i)[0];
+					flat[2 * i + 1] = merged.get(i)[1];
+				}
+				return new CharClass(flat);
+			}
+		}
+	}
+}
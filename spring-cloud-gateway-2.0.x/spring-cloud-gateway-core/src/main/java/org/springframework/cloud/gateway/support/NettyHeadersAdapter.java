@@ -0,0 +1,222 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.netty.handler.codec.http.HttpHeaders;
+
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Views Netty {@link HttpHeaders} as a Spring {@link MultiValueMap}, e.g. to add the
+ * headers of a proxied response to {@link org.springframework.http.HttpHeaders} without
+ * copying them to an intermediate map first. Changes write through to the Netty headers.
+ *
+ * @see SpringHeadersAdapter
+ */
+public class NettyHeadersAdapter implements MultiValueMap<String, String> {
+
+	private final HttpHeaders headers;
+
+	public NettyHeadersAdapter(HttpHeaders headers) {
+		this.headers = headers;
+	}
+
+	@Override
+	public String getFirst(String key) {
+		return this.headers.get(key);
+	}
+
+	@Override
+	public void add(String key, String value) {
+		this.headers.add(key, value);
+	}
+
+	@Override
+	public void addAll(String key, List<? extends String> values) {
+		this.headers.add(key, values);
+	}
+
+	@Override
+	public void addAll(MultiValueMap<String, String> values) {
+		values.forEach(this.headers::add);
+	}
+
+	@Override
+	public void set(String key, String value) {
+		this.headers.set(key, value);
+	}
+
+	@Override
+	public void setAll(Map<String, String> values) {
+		values.forEach(this.headers::set);
+	}
+
+	@Override
+	public Map<String, String> toSingleValueMap() {
+		Map<String, String> singleValueMap = new LinkedHashMap<>(this.headers.size());
+		for (String name : this.headers.names()) {
+			singleValueMap.put(name, this.headers.get(name));
+		}
+		return singleValueMap;
+	}
+
+	@Override
+	public int size() {
+		return this.headers.names().size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.headers.isEmpty();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && this.headers.contains((String) key);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		if (!(value instanceof List)) {
+			return false;
+		}
+		for (String name : this.headers.names()) {
+			if (this.headers.getAll(name).equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public List<String> get(Object key) {
+		return containsKey(key) ? this.headers.getAll((String) key) : null;
+	}
+
+	@Override
+	public List<String> put(String key, List<String> value) {
+		List<String> previous = get(key);
+		this.headers.set(key, value);
+		return previous;
+	}
+
+	@Override
+	public List<String> remove(Object key) {
+		List<String> previous = get(key);
+		if (previous != null) {
+			this.headers.remove((String) key);
+		}
+		return previous;
+	}
+
+	@Override
+	public void putAll(Map<? extends String, ? extends List<String>> map) {
+		map.forEach(this.headers::set);
+	}
+
+	@Override
+	public void clear() {
+		this.headers.clear();
+	}
+
+	/**
+	 * @return the header names, changes do not write through
+	 */
+	@Override
+	public Set<String> keySet() {
+		return this.headers.names();
+	}
+
+	@Override
+	public Collection<List<String>> values() {
+		List<List<String>> values = new ArrayList<>();
+		for (String name : this.headers.names()) {
+			values.add(this.headers.getAll(name));
+		}
+		return values;
+	}
+
+	@Override
+	public Set<Entry<String, List<String>>> entrySet() {
+		return new AbstractSet<Entry<String, List<String>>>() {
+
+			@Override
+			public Iterator<Entry<String, List<String>>> iterator() {
+				Iterator<String> names = headers.names().iterator();
+				return new Iterator<Entry<String, List<String>>>() {
+
+					@Override
+					public boolean hasNext() {
+						return names.hasNext();
+					}
+
+					@Override
+					public Entry<String, List<String>> next() {
+						String name = names.next();
+						return new HeaderEntry(name);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return NettyHeadersAdapter.this.size();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return this.headers.toString();
+	}
+
+	private class HeaderEntry implements Entry<String, List<String>> {
+
+		private final String name;
+
+		private HeaderEntry(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getKey() {
+			return this.name;
+		}
+
+		@Override
+		public List<String> getValue() {
+			return headers.getAll(this.name);
+		}
+
+		@Override
+		public List<String> setValue(List<String> value) {
+			List<String> previous = getValue();
+			headers.set(this.name, value);
+			return previous;
+		}
+	}
+}
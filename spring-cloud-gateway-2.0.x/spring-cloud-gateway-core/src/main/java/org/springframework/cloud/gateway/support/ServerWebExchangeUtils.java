@@ -42,6 +42,18 @@ public class ServerWebExchangeUtils {
 
 	public static final String GATEWAY_HANDLER_MAPPER_ATTR = qualify("gatewayHandlerMapper");
 
+	/**
+	 * The {@link org.springframework.cloud.client.ServiceInstance} an {@code lb://}
+	 * request was balanced to.
+	 */
+	public static final String GATEWAY_SERVICE_INSTANCE_ATTR = qualify("gatewayServiceInstance");
+
+	/**
+	 * Memoized {@link org.springframework.cloud.gateway.handler.support.RequestView} of
+	 * the request, shared by route predicates.
+	 */
+	public static final String REQUEST_VIEW_ATTR = qualify("requestView");
+
 	/**
 	 * Used when a routing filter has been successfully call. Allows users to write custom
 	 * routing filters that disable built in routing filters.
@@ -53,11 +65,11 @@ public class ServerWebExchangeUtils {
 	}
 
 	public static void setAlreadyRouted(ServerWebExchange exchange) {
-		exchange.getAttributes().put(GATEWAY_ALREADY_ROUTED_ATTR, true);
+		GatewayExchangeContext.get(exchange).setAlreadyRouted(true);
 	}
 
 	public static boolean isAlreadyRouted(ServerWebExchange exchange) {
-		return exchange.getAttributeOrDefault(GATEWAY_ALREADY_ROUTED_ATTR, false);
+		return GatewayExchangeContext.get(exchange).isAlreadyRouted();
 	}
 
 	public static boolean setResponseStatus(ServerWebExchange exchange, HttpStatus httpStatus) {
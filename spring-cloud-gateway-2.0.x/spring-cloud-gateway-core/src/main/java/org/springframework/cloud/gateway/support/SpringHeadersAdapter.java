@@ -0,0 +1,258 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import io.netty.handler.codec.DateFormatter;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Views Spring {@link HttpHeaders} as Netty {@link io.netty.handler.codec.http.HttpHeaders},
+ * e.g. to hand the headers of the gateway request to the Netty client without copying
+ * them to intermediate {@code DefaultHttpHeaders} first. Changes write through to the
+ * Spring headers.
+ *
+ * @see NettyHeadersAdapter
+ */
+public class SpringHeadersAdapter extends io.netty.handler.codec.http.HttpHeaders {
+
+	private final HttpHeaders headers;
+
+	public SpringHeadersAdapter(HttpHeaders headers) {
+		this.headers = headers;
+	}
+
+	@Override
+	public String get(String name) {
+		return this.headers.getFirst(name);
+	}
+
+	@Override
+	public Integer getInt(CharSequence name) {
+		String value = get(name.toString());
+		try {
+			return value != null ? Integer.valueOf(value) : null;
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public int getInt(CharSequence name, int defaultValue) {
+		Integer value = getInt(name);
+		return value != null ? value : defaultValue;
+	}
+
+	@Override
+	public Short getShort(CharSequence name) {
+		String value = get(name.toString());
+		try {
+			return value != null ? Short.valueOf(value) : null;
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public short getShort(CharSequence name, short defaultValue) {
+		Short value = getShort(name);
+		return value != null ? value : defaultValue;
+	}
+
+	@Override
+	public Long getTimeMillis(CharSequence name) {
+		String value = get(name.toString());
+		Date date = value != null ? DateFormatter.parseHttpDate(value) : null;
+		return date != null ? date.getTime() : null;
+	}
+
+	@Override
+	public long getTimeMillis(CharSequence name, long defaultValue) {
+		Long value = getTimeMillis(name);
+		return value != null ? value : defaultValue;
+	}
+
+	@Override
+	public List<String> getAll(String name) {
+		List<String> values = this.headers.get(name);
+		return values != null ? values : Collections.emptyList();
+	}
+
+	@Override
+	public List<Map.Entry<String, String>> entries() {
+		List<Map.Entry<String, String>> entries = new ArrayList<>(size());
+		for (Map.Entry<String, String> entry : this) {
+			entries.add(entry);
+		}
+		return entries;
+	}
+
+	@Override
+	public boolean contains(String name) {
+		return this.headers.containsKey(name);
+	}
+
+	/**
+	 * Netty 已弃用该方法，但 {@code HttpHeaders.set(HttpHeaders)} 等仍通过它遍历
+	 */
+	@Override
+	@Deprecated
+	public Iterator<Map.Entry<String, String>> iterator() {
+		return new EntryIterator();
+	}
+
+	@Override
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public Iterator<Map.Entry<CharSequence, CharSequence>> iteratorCharSequence() {
+		return (Iterator) new EntryIterator();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.headers.isEmpty();
+	}
+
+	/**
+	 * @return the number of values, as for other Netty headers
+	 */
+	@Override
+	public int size() {
+		int size = 0;
+		for (List<String> values : this.headers.values()) {
+			size += values.size();
+		}
+		return size;
+	}
+
+	@Override
+	public Set<String> names() {
+		return this.headers.keySet();
+	}
+
+	@Override
+	public io.netty.handler.codec.http.HttpHeaders add(String name, Object value) {
+		this.headers.add(name, toString(value));
+		return this;
+	}
+
+	@Override
+	public io.netty.handler.codec.http.HttpHeaders add(String name, Iterable<?> values) {
+		for (Object value : values) {
+			this.headers.add(name, toString(value));
+		}
+		return this;
+	}
+
+	@Override
+	public io.netty.handler.codec.http.HttpHeaders addInt(CharSequence name, int value) {
+		return add(name.toString(), value);
+	}
+
+	@Override
+	public io.netty.handler.codec.http.HttpHeaders addShort(CharSequence name, short value) {
+		return add(name.toString(), value);
+	}
+
+	@Override
+	public io.netty.handler.codec.http.HttpHeaders set(String name, Object value) {
+		this.headers.set(name, toString(value));
+		return this;
+	}
+
+	@Override
+	public io.netty.handler.codec.http.HttpHeaders set(String name, Iterable<?> values) {
+		List<String> list = new ArrayList<>();
+		for (Object value : values) {
+			list.add(toString(value));
+		}
+		this.headers.put(name, list);
+		return this;
+	}
+
+	@Override
+	public io.netty.handler.codec.http.HttpHeaders setInt(CharSequence name, int value) {
+		return set(name.toString(), value);
+	}
+
+	@Override
+	public io.netty.handler.codec.http.HttpHeaders setShort(CharSequence name, short value) {
+		return set(name.toString(), value);
+	}
+
+	@Override
+	public io.netty.handler.codec.http.HttpHeaders remove(String name) {
+		this.headers.remove(name);
+		return this;
+	}
+
+	@Override
+	public io.netty.handler.codec.http.HttpHeaders clear() {
+		this.headers.clear();
+		return this;
+	}
+
+	private static String toString(Object value) {
+		// 与 Netty 一致，日期使用 HTTP 格式
+		return value instanceof Date ? DateFormatter.format((Date) value) : String.valueOf(value);
+	}
+
+	/**
+	 * One entry per value, in the order of the names and of their values.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<String, String>> {
+
+		private final Iterator<Map.Entry<String, List<String>>> names = headers.entrySet().iterator();
+
+		private String name;
+
+		private Iterator<String> values = Collections.emptyIterator();
+
+		@Override
+		public boolean hasNext() {
+			while (!this.values.hasNext()) {
+				if (!this.names.hasNext()) {
+					return false;
+				}
+				Map.Entry<String, List<String>> next = this.names.next();
+				this.name = next.getKey();
+				this.values = next.getValue().iterator();
+			}
+			return true;
+		}
+
+		@Override
+		public Map.Entry<String, String> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return new SimpleImmutableEntry<>(this.name, this.values.next());
+		}
+	}
+}
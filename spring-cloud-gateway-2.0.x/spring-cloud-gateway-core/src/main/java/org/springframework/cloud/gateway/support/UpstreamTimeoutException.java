@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+
+/**
+ * A proxied request did not get a connection or a response from upstream in time.
+ */
+public class UpstreamTimeoutException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Phase phase;
+
+	private final Duration timeout;
+
+	public UpstreamTimeoutException(Phase phase, Duration timeout) {
+		super(phase.description + " timeout of " + timeout.toMillis() + "ms exceeded");
+		this.phase = phase;
+		this.timeout = timeout;
+	}
+
+	public Phase getPhase() {
+		return this.phase;
+	}
+
+	public Duration getTimeout() {
+		return this.timeout;
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		// 超时由定时器触发，栈没有意义
+		return this;
+	}
+
+	public enum Phase {
+
+		CONNECT("Connect"), RESPONSE("Response"), IDLE("Idle");
+
+		private final String description;
+
+		Phase(String description) {
+			this.description = description;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+
+import org.springframework.cloud.gateway.support.UpstreamTimeoutException.Phase;
+
+/**
+ * Times a proxied request on the event loop of its upstream channel: the response
+ * headers must arrive within the response timeout, and the channel must not go without
+ * reading or writing for longer than the idle timeout. On timeout the channel is
+ * closed, so that it is not handed out by the pool again, and the
+ * {@link UpstreamTimeoutException} is available from {@link #getTimeout()}. Once the
+ * response has started, the exception is also fired down the pipeline to fail the
+ * body.
+ *
+ * One instance per request, to be removed once the request is done.
+ */
+public class UpstreamTimeoutHandler extends IdleStateHandler {
+
+	public static final String NAME = "gatewayUpstreamTimeout";
+
+	private final Duration responseTimeout;
+
+	private final Duration idleTimeout;
+
+	private ScheduledFuture<?> responseTimer;
+
+	private boolean responded;
+
+	private volatile UpstreamTimeoutException timeout;
+
+	/**
+	 * @param responseTimeout {@link Duration#ZERO} for none
+	 * @param idleTimeout {@link Duration#ZERO} for none
+	 */
+	public UpstreamTimeoutHandler(Duration responseTimeout, Duration idleTimeout) {
+		super(0, 0, idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+		this.responseTimeout = responseTimeout;
+		this.idleTimeout = idleTimeout;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		super.handlerAdded(ctx);
+		if (!this.responseTimeout.isZero()) {
+			this.responseTimer = ctx.executor().schedule(() -> timeout(ctx, Phase.RESPONSE, this.responseTimeout),
+					this.responseTimeout.toNanos(), TimeUnit.NANOSECONDS);
+		}
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		cancelResponseTimer();
+		super.handlerRemoved(ctx);
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (msg instanceof HttpResponse) {
+			// 响应头已到，之后只看空闲时间
+			this.responded = true;
+			cancelResponseTimer();
+		}
+		super.channelRead(ctx, msg);
+	}
+
+	@Override
+	protected void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) {
+		if (evt.state() == IdleState.ALL_IDLE) {
+			timeout(ctx, Phase.IDLE, this.idleTimeout);
+		}
+	}
+
+	/**
+	 * @return the timeout that closed the channel, {@code null} if none did
+	 */
+	public UpstreamTimeoutException getTimeout() {
+		return this.timeout;
+	}
+
+	private void timeout(ChannelHandlerContext ctx, Phase phase, Duration timeout) {
+		if (this.timeout != null) {
+			return;
+		}
+		this.timeout = new UpstreamTimeoutException(phase, timeout);
+		cancelResponseTimer();
+		if (this.responded) {
+			ctx.fireExceptionCaught(this.timeout);
+		}
+		// 关闭连接，连接池不会再复用它。
+		// 响应头之前 reactor-netty 只报告连接提前关闭，由 UpstreamTimeouts 换回超时
+		ctx.close();
+	}
+
+	private void cancelResponseTimer() {
+		if (this.responseTimer != null) {
+			this.responseTimer.cancel(false);
+			this.responseTimer = null;
+		}
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.UpstreamTimeoutException.Phase;
+
+/**
+ * Timeouts of the requests proxied for a route, set with its metadata:
+ * <ul>
+ * <li>{@link #CONNECT_TIMEOUT}: to get a connection ready to send the request on,
+ * pooled or new, TLS handshake included</li>
+ * <li>{@link #RESPONSE_TIMEOUT}: from then on until the response headers arrive</li>
+ * <li>{@link #IDLE_TIMEOUT}: longest time the connection may neither read nor write</li>
+ * </ul>
+ * Values are durations such as {@code 500ms}, {@code 5s} or {@code PT5S}, or numbers
+ * of milliseconds. None are set by default.
+ *
+ * Connect timeouts are kept on a shared {@link HashedWheelTimer}, there is no channel
+ * yet. The others are kept on the event loop of the channel by an
+ * {@link UpstreamTimeoutHandler}. No Reactor scheduler task is used per request.
+ */
+public final class UpstreamTimeouts {
+
+	public static final String CONNECT_TIMEOUT = "connect-timeout";
+
+	public static final String RESPONSE_TIMEOUT = "response-timeout";
+
+	public static final String IDLE_TIMEOUT = "idle-timeout";
+
+	private static final UpstreamTimeouts NONE = new UpstreamTimeouts(Duration.ZERO, Duration.ZERO, Duration.ZERO);
+
+	/**
+	 * Connect timers of all requests, a tick is coarse enough for a timeout
+	 */
+	private static final Timer connectTimer = new HashedWheelTimer(
+			new DefaultThreadFactory("gateway-connect-timeout", true), 10, TimeUnit.MILLISECONDS);
+
+	private final Duration connectTimeout;
+
+	private final Duration responseTimeout;
+
+	private final Duration idleTimeout;
+
+	private UpstreamTimeouts(Duration connectTimeout, Duration responseTimeout, Duration idleTimeout) {
+		this.connectTimeout = connectTimeout;
+		this.responseTimeout = responseTimeout;
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * @param connectTimeout {@code null} or zero for none, as the others
+	 * @throws IllegalArgumentException if a timeout is negative
+	 */
+	public static UpstreamTimeouts of(Duration connectTimeout, Duration responseTimeout, Duration idleTimeout) {
+		UpstreamTimeouts timeouts = new UpstreamTimeouts(parseDuration(connectTimeout),
+				parseDuration(responseTimeout), parseDuration(idleTimeout));
+		return timeouts.connectTimeout.isZero() && timeouts.responseTimeout.isZero()
+				&& timeouts.idleTimeout.isZero() ? NONE : timeouts;
+	}
+
+	public static UpstreamTimeouts none() {
+		return NONE;
+	}
+
+	/**
+	 * @param defaults the timeouts of the route's client profile, used where the route
+	 * sets none of its own
+	 * @return the timeouts of the route, merged once per route
+	 */
+	public static UpstreamTimeouts forRoute(Route route, UpstreamTimeouts defaults) {
+		if (route == null) {
+			return defaults;
+		}
+		UpstreamTimeouts timeouts = forRoute(route);
+		if (defaults == NONE) {
+			return timeouts;
+		}
+		// Route 的 profile 不变，其默认值也不变
+		return route.getParsedMetadata(UpstreamTimeouts.class.getName() + ".defaults", r -> new UpstreamTimeouts(
+				orDefault(timeouts.connectTimeout, defaults.connectTimeout),
+				orDefault(timeouts.responseTimeout, defaults.responseTimeout),
+				orDefault(timeouts.idleTimeout, defaults.idleTimeout)));
+	}
+
+	private static Duration orDefault(Duration timeout, Duration defaultTimeout) {
+		return timeout.isZero() ? defaultTimeout : timeout;
+	}
+
+	/**
+	 * @return the timeouts of the route, parsed once per route
+	 * @throws IllegalArgumentException if a timeout of the route is not a duration
+	 */
+	public static UpstreamTimeouts forRoute(Route route) {
+		if (route == null) {
+			return NONE;
+		}
+		return route.getParsedMetadata(UpstreamTimeouts.class.getName(), UpstreamTimeouts::parse);
+	}
+
+	/**
+	 * Parses the timeouts of the route, for use as a
+	 * {@link org.springframework.cloud.gateway.route.RouteValidator}.
+	 * @throws IllegalArgumentException if a timeout of the route is not a duration
+	 */
+	public static void validate(Route route) {
+		forRoute(route);
+	}
+
+	private static UpstreamTimeouts parse(Route route) {
+		Map<String, Object> metadata = route.getMetadata();
+		Object connect = metadata.get(CONNECT_TIMEOUT);
+		Object response = metadata.get(RESPONSE_TIMEOUT);
+		Object idle = metadata.get(IDLE_TIMEOUT);
+		if (connect == null && response == null && idle == null) {
+			return NONE;
+		}
+		try {
+			return new UpstreamTimeouts(parseDuration(connect), parseDuration(response), parseDuration(idle));
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid timeout of route " + route.getId() + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @param value a {@link Duration}, a number of milliseconds or text such as
+	 * {@code 500ms}, {@code null} for none
+	 * @throws IllegalArgumentException if the value is not a duration or is negative
+	 */
+	public static Duration parseDuration(Object value) {
+		if (value == null) {
+			return Duration.ZERO;
+		}
+		Duration duration;
+		if (value instanceof Duration) {
+			duration = (Duration) value;
+		}
+		else if (value instanceof Number) {
+			duration = Duration.ofMillis(((Number) value).longValue());
+		}
+		else {
+			duration = DurationStyle.detectAndParse(value.toString().trim());
+		}
+		if (duration.isNegative()) {
+			throw new IllegalArgumentException("Timeout must not be negative, was " + value);
+		}
+		return duration;
+	}
+
+	public Duration getConnectTimeout() {
+		return this.connectTimeout;
+	}
+
+	public Duration getResponseTimeout() {
+		return this.responseTimeout;
+	}
+
+	public Duration getIdleTimeout() {
+		return this.idleTimeout;
+	}
+
+	/**
+	 * Applies the timeouts to a request: fails it with an
+	 * {@link UpstreamTimeoutException} unless it is connected within the connect
+	 * timeout, cancelling it so that its connection is released, then keeps the
+	 * others with an {@link UpstreamTimeoutHandler} on its channel.
+	 * @param request creates the request, given the callback to pass its context to
+	 * once it is connected
+	 */
+	public <T> Mono<T> apply(Function<Consumer<NettyContext>, Mono<T>> request) {
+		if (this == NONE) {
+			return request.apply(context -> { });
+		}
+		return Mono.defer(() -> {
+			Attempt attempt = new Attempt();
+			Mono<T> response = request.apply(attempt::connected).onErrorMap(attempt::timeoutOr);
+			if (this.connectTimeout.isZero()) {
+				return response;
+			}
+			Mono<T> timeout = Mono.create(sink -> {
+				Timeout scheduled = connectTimer.newTimeout(
+						t -> sink.error(new UpstreamTimeoutException(Phase.CONNECT, this.connectTimeout)),
+						this.connectTimeout.toNanos(), TimeUnit.NANOSECONDS);
+				attempt.connectTimeout = scheduled;
+				sink.onDispose(scheduled::cancel);
+			});
+			// 先订阅定时器，连接建立后取消它
+			return Mono.first(timeout, response);
+		});
+	}
+
+	/**
+	 * Timers of one subscription to a request
+	 */
+	private class Attempt {
+
+		private volatile Timeout connectTimeout;
+
+		private volatile UpstreamTimeoutHandler handler;
+
+		private void connected(NettyContext context) {
+			Timeout timeout = this.connectTimeout;
+			if (timeout != null) {
+				timeout.cancel();
+			}
+			if (!responseTimeout.isZero() || !idleTimeout.isZero()) {
+				UpstreamTimeoutHandler handler = new UpstreamTimeoutHandler(responseTimeout, idleTimeout);
+				this.handler = handler;
+				// 请求结束、连接归还时由 reactor-netty 移除
+				context.addHandlerLast(UpstreamTimeoutHandler.NAME, handler);
+			}
+		}
+
+		private Throwable timeoutOr(Throwable error) {
+			UpstreamTimeoutHandler handler = this.handler;
+			UpstreamTimeoutException timeout = handler != null ? handler.getTimeout() : null;
+			return timeout != null ? timeout : error;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "UpstreamTimeouts{connect=" + this.connectTimeout + ", response=" + this.responseTimeout
+				+ ", idle=" + this.idleTimeout + "}";
+	}
+}
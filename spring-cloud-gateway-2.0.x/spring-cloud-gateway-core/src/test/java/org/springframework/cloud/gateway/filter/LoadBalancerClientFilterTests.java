@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.net.URI;
+import java.util.Collections;
+
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.loadbalancer.RouteLoadBalancers;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
+import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR;
+
+public class LoadBalancerClientFilterTests {
+
+	private final ServiceInstance instance = new DefaultServiceInstance("service", "10.0.0.1", 8443, true);
+
+	private final RouteLoadBalancers balancers = new RouteLoadBalancers((serviceId, exchange) ->
+			serviceId.equals("service") ? Mono.just(this.instance) : Mono.empty())
+			.register("other", (serviceId, exchange) -> Mono.just(
+					new DefaultServiceInstance(serviceId, "10.0.0.2", 8080, false)));
+
+	@Test
+	public void lbUrlIsResolvedToTheChosenInstance() {
+		MockServerWebExchange exchange = exchange("lb://service/a%20b/c?q=1%2B1", null);
+
+		URI requestUrl = filter(exchange);
+
+		assertThat(requestUrl).isEqualTo(URI.create("https://10.0.0.1:8443/a%20b/c?q=1%2B1"));
+		assertThat(exchange.<Object>getAttribute(GATEWAY_ORIGINAL_REQUEST_URL_ATTR).toString())
+				.contains("lb://service/a%20b/c");
+	}
+
+	@Test
+	public void balancerIsChosenByRouteMetadata() {
+		URI requestUrl = filter(exchange("lb://service/", "other"));
+
+		assertThat(requestUrl).isEqualTo(URI.create("http://10.0.0.2:8080/"));
+		assertThatThrownBy(() -> filter(exchange("lb://service/", "missing")))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void serviceWithoutInstancesIsNotFound() {
+		assertThatThrownBy(() -> filter(exchange("lb://unknown/", null)))
+				.isInstanceOf(NotFoundException.class)
+				.hasMessageContaining("unknown");
+	}
+
+	@Test
+	public void ipv6HostsAreBracketed() {
+		ServiceInstance ipv6 = new DefaultServiceInstance("service", "::1", 8080, false);
+
+		assertThat(LoadBalancerClientFilter.reconstructURI(ipv6, URI.create("lb://service/foo")))
+				.isEqualTo(URI.create("http://[::1]:8080/foo"));
+	}
+
+	private URI filter(MockServerWebExchange exchange) {
+		URI[] routed = new URI[1];
+		new LoadBalancerClientFilter(this.balancers).filter(exchange, e -> {
+			routed[0] = GatewayExchangeContext.get(e).getRequestUrl();
+			return Mono.empty();
+		}).block();
+		return routed[0];
+	}
+
+	private static MockServerWebExchange exchange(String url, String balancer) {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/").build());
+		Route.Builder route = Route.builder().id("lb").uri(url);
+		if (balancer != null) {
+			route.metadata(Collections.singletonMap(RouteLoadBalancers.LOAD_BALANCER, balancer));
+		}
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		context.setRoute(route.build());
+		context.setRequestUrl(URI.create(url));
+		return exchange;
+	}
+}
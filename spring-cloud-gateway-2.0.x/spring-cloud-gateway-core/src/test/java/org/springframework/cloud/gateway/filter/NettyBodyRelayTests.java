@@ -0,0 +1,212 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.ResourceLeakDetector;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.http.server.HttpServer;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.FlushStrategy;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs with paranoid leak detection and fails when Netty reports a leak. Buffers that
+ * are not released are reported once they are garbage collected, so each test ends by
+ * collecting garbage and letting the detector poll for them.
+ */
+public class NettyBodyRelayTests {
+
+	private static final NettyDataBufferFactory FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+	private final Logger leakLogger = (Logger) LoggerFactory.getLogger(ResourceLeakDetector.class);
+
+	private final ListAppender<ILoggingEvent> leaks = new ListAppender<>();
+
+	private ResourceLeakDetector.Level level;
+
+	private NettyContext backend;
+
+	@Before
+	public void setUp() {
+		this.level = ResourceLeakDetector.getLevel();
+		ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+		// 之前的测试遗留的泄漏先报告掉
+		collectLeaks();
+		this.leaks.start();
+		this.leakLogger.addAppender(this.leaks);
+		// echo 服务
+		this.backend = HttpServer.create("localhost", 0)
+				.newHandler((req, res) -> res.send(req.receive().retain()))
+				.block();
+	}
+
+	@After
+	public void tearDown() {
+		try {
+			this.backend.dispose();
+			collectLeaks();
+			assertThat(this.leaks.list).extracting(ILoggingEvent::getFormattedMessage)
+					.noneMatch(message -> message.contains("LEAK"));
+		}
+		finally {
+			this.leakLogger.detachAppender(this.leaks);
+			ResourceLeakDetector.setLevel(this.level);
+		}
+	}
+
+	@Test
+	public void leaksAreDetected() {
+		PooledByteBufAllocator.DEFAULT.buffer().writeBytes("leak".getBytes(StandardCharsets.US_ASCII));
+
+		collectLeaks();
+
+		assertThat(this.leaks.list).extracting(ILoggingEvent::getFormattedMessage)
+				.anyMatch(message -> message.contains("LEAK"));
+		this.leaks.list.clear();
+	}
+
+	/**
+	 * Collects unreachable buffers, the detector reports them when it next tracks one.
+	 */
+	private void collectLeaks() {
+		for (int i = 0; i < 10 && this.leaks.list.isEmpty(); i++) {
+			System.gc();
+			System.runFinalization();
+			for (int j = 0; j < 100; j++) {
+				PooledByteBufAllocator.DEFAULT.buffer().release();
+			}
+		}
+	}
+
+	@Test
+	public void requestBuffersAreRelayedAndReleased() {
+		List<NettyDataBuffer> chunks = new ArrayList<>();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 8; i++) {
+			StringBuilder chunk = new StringBuilder();
+			for (int j = 0; j < 8192; j++) {
+				chunk.append((char) ('a' + i));
+			}
+			expected.append(chunk);
+			NettyDataBuffer buffer = FACTORY.allocateBuffer(chunk.length());
+			buffer.write(chunk.toString().getBytes(StandardCharsets.US_ASCII));
+			chunks.add(buffer);
+		}
+		URI url = URI.create("http://localhost:" + this.backend.address().getPort() + "/echo");
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post(url.toString())
+				.header(HttpHeaders.CONTENT_LENGTH, String.valueOf(expected.length()))
+				.body(Flux.fromIterable(chunks)));
+		GatewayExchangeContext.get(exchange).setRequestUrl(url);
+
+		NettyRoutingFilter routing = new NettyRoutingFilter(HttpClient.create());
+		new NettyWriteResponseFilter()
+				.filter(exchange, e -> routing.filter(e, routed -> Mono.empty()))
+				.block();
+
+		assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo(expected.toString());
+		for (NettyDataBuffer chunk : chunks) {
+			assertThat(chunk.getNativeBuffer().refCnt()).isEqualTo(0);
+		}
+	}
+
+	@Test
+	public void buffersAreRelayedWithGroupedFlushes() {
+		List<NettyDataBuffer> chunks = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			NettyDataBuffer buffer = FACTORY.allocateBuffer(4);
+			buffer.write("abcd".getBytes(StandardCharsets.US_ASCII));
+			chunks.add(buffer);
+		}
+		URI url = URI.create("http://localhost:" + this.backend.address().getPort() + "/echo");
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post(url.toString())
+				.header(HttpHeaders.CONTENT_LENGTH, "32")
+				.body(Flux.fromIterable(chunks)));
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		context.setRoute(Route.builder().id("echo").uri(url)
+				.metadata(FlushStrategy.REQUEST_FLUSH_STRATEGY, "bytes:10")
+				.metadata(FlushStrategy.RESPONSE_FLUSH_STRATEGY, "each")
+				.build());
+		context.setRequestUrl(url);
+
+		NettyRoutingFilter routing = new NettyRoutingFilter(HttpClient.create());
+		new NettyWriteResponseFilter()
+				.filter(exchange, e -> routing.filter(e, routed -> Mono.empty()))
+				.block();
+
+		assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("abcdabcdabcdabcdabcdabcdabcdabcd");
+		for (NettyDataBuffer chunk : chunks) {
+			assertThat(chunk.getNativeBuffer().refCnt()).isEqualTo(0);
+		}
+	}
+
+	@Test
+	public void responseBuffersArePassedThroughToNettyResponses() {
+		ServerHttpResponse response = new ServerHttpResponseDecorator(new MockServerHttpResponse()) {
+			@Override
+			public NettyDataBufferFactory bufferFactory() {
+				return FACTORY;
+			}
+		};
+		ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT.buffer().writeBytes("foo".getBytes(StandardCharsets.US_ASCII));
+
+		DataBuffer buffer = new NettyWriteResponseFilter().wrap(byteBuf, response);
+
+		assertThat(((NettyDataBuffer) buffer).getNativeBuffer()).isSameAs(byteBuf);
+		assertThat(byteBuf.refCnt()).isEqualTo(1);
+		byteBuf.release();
+	}
+
+	@Test
+	public void responseBuffersAreCopiedAndReleasedForOtherResponses() {
+		ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT.buffer().writeBytes("foo".getBytes(StandardCharsets.US_ASCII));
+
+		DataBuffer buffer = new NettyWriteResponseFilter().wrap(byteBuf, new MockServerHttpResponse());
+
+		assertThat(StandardCharsets.US_ASCII.decode(buffer.asByteBuffer()).toString()).isEqualTo("foo");
+		assertThat(byteBuf.refCnt()).isEqualTo(0);
+	}
+}
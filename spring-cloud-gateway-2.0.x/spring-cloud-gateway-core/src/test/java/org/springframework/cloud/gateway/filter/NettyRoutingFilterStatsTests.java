@@ -0,0 +1,170 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.http.server.HttpServer;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.simple.SimpleDiscoveryClient;
+import org.springframework.cloud.client.discovery.simple.SimpleDiscoveryProperties;
+import org.springframework.cloud.client.discovery.simple.SimpleDiscoveryProperties.SimpleServiceInstance;
+import org.springframework.cloud.gateway.loadbalancer.OutlierDetector;
+import org.springframework.cloud.gateway.loadbalancer.ServiceInstanceSnapshots;
+import org.springframework.cloud.gateway.loadbalancer.ServiceInstanceStats;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NettyRoutingFilterStatsTests {
+
+	private NettyContext backend;
+
+	@Before
+	public void setUp() {
+		// echo 服务
+		this.backend = HttpServer.create("localhost", 0)
+				.newHandler((req, res) -> res.send(req.receive().retain()))
+				.block();
+	}
+
+	@After
+	public void tearDown() {
+		this.backend.dispose();
+	}
+
+	@Test
+	public void requestsAreRecordedAgainstTheirInstance() {
+		URI url = URI.create("http://localhost:" + this.backend.address().getPort() + "/echo");
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post(url.toString())
+				.header(HttpHeaders.CONTENT_LENGTH, "3")
+				.body("foo"));
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		ServiceInstance instance = new DefaultServiceInstance("echo", "localhost", this.backend.address().getPort(), false);
+		context.setServiceInstance(instance);
+		context.setRequestUrl(url);
+		ServiceInstanceStats stats = new ServiceInstanceStats();
+		long[] inFlight = new long[1];
+
+		NettyRoutingFilter routing = new NettyRoutingFilter(new RouteHttpClients(HttpClient.create()), stats);
+		new NettyWriteResponseFilter()
+				.filter(exchange, e -> routing.filter(e, routed -> {
+					inFlight[0] = stats.get(instance).getInFlight();
+					return Mono.empty();
+				}))
+				.block();
+		assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("foo");
+
+		assertThat(inFlight[0]).isEqualTo(1);
+		assertThat(stats.get(instance).getLatency()).isGreaterThan(0);
+		context.complete();
+		assertThat(stats.get(instance).getInFlight()).isEqualTo(0);
+	}
+
+	@Test
+	public void outcomesAreReportedToTheOutlierDetector() {
+		ServiceInstance up = new DefaultServiceInstance("echo", "localhost", this.backend.address().getPort(), false);
+		// 关闭后的端口，连接失败
+		NettyContext closed = HttpServer.create("localhost", 0).newHandler((req, res) -> res.send()).block();
+		closed.dispose();
+		closed.onClose().block(Duration.ofSeconds(5));
+		ServiceInstance down = new DefaultServiceInstance("echo", "localhost", closed.address().getPort(), false);
+		ServiceInstanceStats stats = new ServiceInstanceStats();
+		SimpleServiceInstance discovered = new SimpleServiceInstance(URI.create("http://localhost:" + up.getPort()));
+		discovered.setServiceId("echo");
+		SimpleDiscoveryProperties properties = new SimpleDiscoveryProperties();
+		properties.getInstances().put("echo", Collections.singletonList(discovered));
+		ServiceInstanceSnapshots snapshots = new ServiceInstanceSnapshots(
+				new SimpleDiscoveryClient(properties), Duration.ofHours(1));
+		NettyRoutingFilter routing = new NettyRoutingFilter(new RouteHttpClients(HttpClient.create()), stats,
+				new OutlierDetector(snapshots, stats));
+		try {
+			// 只统计经快照选出的服务
+			snapshots.get("echo").block(Duration.ofSeconds(5));
+			routing.filter(exchange(up), e -> Mono.empty()).block();
+			routing.filter(exchange(down), e -> Mono.empty()).onErrorResume(e -> Mono.empty()).block();
+
+			assertThat(stats.get(up).getSuccessRate()).isEqualTo(1);
+			assertThat(stats.get(up).getConsecutiveFailures()).isEqualTo(0);
+			assertThat(stats.get(down).getSuccessRate()).isEqualTo(0);
+			assertThat(stats.get(down).getConsecutiveFailures()).isEqualTo(1);
+		}
+		finally {
+			snapshots.dispose();
+		}
+	}
+
+	@Test
+	public void instancesOfUntrackedServicesAreNotRecorded() {
+		// 快照中没有的服务，实例由 LoadBalancerClient 选出
+		ServiceInstance chosen = new DefaultServiceInstance("ribbon", "localhost", this.backend.address().getPort(),
+				false);
+		ServiceInstanceStats stats = new ServiceInstanceStats();
+		ServiceInstanceSnapshots snapshots = new ServiceInstanceSnapshots(
+				new SimpleDiscoveryClient(new SimpleDiscoveryProperties()), Duration.ofHours(1));
+		stats.setTrackedServices(snapshots::hasInstances);
+		NettyRoutingFilter routing = new NettyRoutingFilter(new RouteHttpClients(HttpClient.create()), stats,
+				new OutlierDetector(snapshots, stats));
+		try {
+			snapshots.get("ribbon").block(Duration.ofSeconds(5));
+			MockServerWebExchange exchange = exchange(chosen);
+			routing.filter(exchange, e -> Mono.empty()).block();
+			GatewayExchangeContext.get(exchange).complete();
+
+			assertThat(stats.getStats()).isEmpty();
+		}
+		finally {
+			snapshots.dispose();
+		}
+	}
+
+	@Test
+	public void instancesWithoutServiceIdAreRecorded() {
+		ServiceInstance instance = new DefaultServiceInstance(null, "localhost", this.backend.address().getPort(), false);
+		ServiceInstanceStats stats = new ServiceInstanceStats();
+		NettyRoutingFilter routing = new NettyRoutingFilter(new RouteHttpClients(HttpClient.create()), stats);
+
+		routing.filter(exchange(instance), e -> Mono.empty()).block();
+		stats.retain("echo", Collections.emptyList());
+
+		assertThat(stats.get(instance).getLatency()).isGreaterThan(0);
+		assertThat(stats.getStats()).containsOnlyKeys("null/localhost:" + instance.getPort());
+	}
+
+	private static MockServerWebExchange exchange(ServiceInstance instance) {
+		URI url = URI.create("http://localhost:" + instance.getPort() + "/echo");
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(url.toString()).build());
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		context.setServiceInstance(instance);
+		context.setRequestUrl(url);
+		return exchange;
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.NettyPipeline;
+import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.http.server.HttpServer;
+
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
+import org.springframework.cloud.gateway.support.HostPoolResources;
+import org.springframework.cloud.gateway.support.HostPoolResources.PoolMetrics;
+import org.springframework.cloud.gateway.support.UpstreamTimeoutException;
+import org.springframework.cloud.gateway.support.UpstreamTimeouts;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NettyRoutingTimeoutTests {
+
+	private NettyContext backend;
+
+	private HostPoolResources pool;
+
+	private NettyRoutingFilter routing;
+
+	@Before
+	public void setUp() {
+		this.backend = HttpServer.create("localhost", 0)
+				.newHandler((req, res) -> {
+					if (req.uri().startsWith("/slow")) {
+						// 响应头也延后发送
+						return Mono.delay(Duration.ofSeconds(2)).then(res.sendString(Mono.just("slow")).then());
+					}
+					if (req.uri().startsWith("/stall")) {
+						// 先发出响应头和一个 chunk，然后不再发送
+						return res.options(NettyPipeline.SendOptions::flushOnEach)
+								.sendString(Flux.concat(Mono.just("a"), Mono.never()));
+					}
+					return res.sendString(Mono.just("ok"));
+				})
+				.block();
+		this.pool = new HostPoolResources("test", 1, 8, Duration.ofSeconds(5), Duration.ofMinutes(1));
+		this.routing = new NettyRoutingFilter(HttpClient.create(opts -> opts.poolResources(this.pool)));
+	}
+
+	@After
+	public void tearDown() {
+		this.pool.dispose();
+		this.backend.dispose();
+	}
+
+	@Test
+	public void responseTimeoutRespondsWithGatewayTimeoutAndClosesTheConnection() {
+		MockServerWebExchange exchange = exchange("/slow", UpstreamTimeouts.RESPONSE_TIMEOUT, "200ms");
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> route(exchange).block(Duration.ofSeconds(5)))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT))
+				.hasCauseInstanceOf(UpstreamTimeoutException.class);
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+
+		// 连接被关闭，不会回到池中
+		await(() -> metrics().getActive() == 0);
+		assertThat(metrics().getIdle()).isEqualTo(0);
+		assertThat(body(exchange("/", UpstreamTimeouts.RESPONSE_TIMEOUT, "1s"))).isEqualTo("ok");
+	}
+
+	@Test
+	public void idleTimeoutEndsAStalledBody() {
+		MockServerWebExchange exchange = exchange("/stall", UpstreamTimeouts.IDLE_TIMEOUT, "200ms");
+
+		assertThatThrownBy(() -> body(exchange))
+				.isInstanceOfSatisfying(UpstreamTimeoutException.class,
+						e -> assertThat(e.getPhase()).isEqualTo(UpstreamTimeoutException.Phase.IDLE));
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+		await(() -> metrics().getActive() == 0);
+	}
+
+	@Test
+	public void connectTimeoutCoversWaitingForAPooledConnection() {
+		// 唯一的连接被占用
+		MonoProcessor<Void> slow = route(exchange("/slow", null, null)).toProcessor();
+		await(() -> metrics() != null && metrics().getActive() == 1);
+
+		MockServerWebExchange exchange = exchange("/", UpstreamTimeouts.CONNECT_TIMEOUT, "200ms");
+		assertThatThrownBy(() -> route(exchange).block(Duration.ofSeconds(5)))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT))
+				.hasMessageContaining("Connect timeout of 200ms exceeded");
+
+		slow.block(Duration.ofSeconds(5));
+		await(() -> metrics().getPending() == 0);
+	}
+
+	@Test
+	public void durationsAreParsed() {
+		assertThat(UpstreamTimeouts.parseDuration("500ms")).isEqualTo(Duration.ofMillis(500));
+		assertThat(UpstreamTimeouts.parseDuration("PT5S")).isEqualTo(Duration.ofSeconds(5));
+		assertThat(UpstreamTimeouts.parseDuration(250)).isEqualTo(Duration.ofMillis(250));
+		assertThat(UpstreamTimeouts.parseDuration(null)).isEqualTo(Duration.ZERO);
+		assertThatThrownBy(() -> UpstreamTimeouts.parseDuration("soon")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> UpstreamTimeouts.parseDuration("-1s")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void invalidTimeoutRejectsTheRouteAtRefresh() {
+		AtomicReference<Flux<Route>> routes = new AtomicReference<>(Flux.just(timeoutRoute("old", "1s")));
+		CachingRouteLocator locator = new CachingRouteLocator(() -> routes.get(),
+				Collections.singletonList(UpstreamTimeouts::validate));
+		routes.set(Flux.just(timeoutRoute("new", "-1s")));
+
+		assertThatThrownBy(() -> locator.refresh().block())
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("route new");
+		assertThat(locator.getRoutes().map(Route::getId).collectList().block()).containsExactly("old");
+	}
+
+	private static Route timeoutRoute(String id, String responseTimeout) {
+		return Route.builder().id(id).uri("http://localhost")
+				.metadata(UpstreamTimeouts.RESPONSE_TIMEOUT, responseTimeout)
+				.build();
+	}
+
+	private MockServerWebExchange exchange(String path, String timeout, String value) {
+		URI url = URI.create("http://localhost:" + this.backend.address().getPort() + path);
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(url.toString()).build());
+		Route.Builder route = Route.builder().id("timeouts").uri(url);
+		if (timeout != null) {
+			route.metadata(timeout, value);
+		}
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		context.setRoute(route.build());
+		context.setRequestUrl(url);
+		return exchange;
+	}
+
+	private Mono<Void> route(MockServerWebExchange exchange) {
+		return new NettyWriteResponseFilter()
+				.filter(exchange, e -> this.routing.filter(e, routed -> Mono.empty()));
+	}
+
+	private String body(MockServerWebExchange exchange) {
+		route(exchange).block(Duration.ofSeconds(5));
+		return exchange.getResponse().getBodyAsString().block(Duration.ofSeconds(5));
+	}
+
+	private PoolMetrics metrics() {
+		return this.pool.getMetrics().get("localhost:" + this.backend.address().getPort());
+	}
+
+	private static void await(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean()) {
+			assertThat(System.currentTimeMillis()).as("waiting for the pool").isLessThan(deadline);
+			try {
+				Thread.sleep(10);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.time.Duration;
+
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.http.client.HttpClient;
+
+import org.springframework.cloud.gateway.filter.RouteHttpClients.Bulkhead;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
+import org.springframework.cloud.gateway.support.UpstreamTimeouts;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.cloud.gateway.filter.RouteHttpClients.HTTP_CLIENT_PROFILE;
+
+public class RouteHttpClientsTests {
+
+	private final HttpClient defaultClient = HttpClient.create();
+
+	private final HttpClient slowClient = HttpClient.create();
+
+	private final RouteHttpClients clients = new RouteHttpClients(this.defaultClient)
+			.register("slow", this.slowClient, null, 2);
+
+	@Test
+	public void clientIsChosenByRouteProfile() {
+		assertThat(this.clients.forRoute(route(null)).getHttpClient()).isSameAs(this.defaultClient);
+		assertThat(this.clients.forRoute(null).getHttpClient()).isSameAs(this.defaultClient);
+		assertThat(this.clients.forRoute(route("slow")).getHttpClient()).isSameAs(this.slowClient);
+
+		assertThatThrownBy(() -> this.clients.forRoute(route("fast")))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("fast");
+	}
+
+	@Test
+	public void inFlightRequestsAreBounded() {
+		Bulkhead bulkhead = this.clients.forRoute(route("slow"));
+
+		assertThat(bulkhead.tryAcquire()).isTrue();
+		assertThat(bulkhead.tryAcquire()).isTrue();
+		assertThat(bulkhead.tryAcquire()).isFalse();
+		assertThat(bulkhead.getInFlight()).isEqualTo(2);
+		assertThat(bulkhead.getRejected()).isEqualTo(1);
+
+		bulkhead.release();
+		assertThat(bulkhead.tryAcquire()).isTrue();
+		// 默认 client 不限制
+		assertThat(this.clients.getDefault().getMaxInFlight()).isEqualTo(0);
+	}
+
+	@Test
+	public void fullBulkheadRespondsWithServiceUnavailable() {
+		Bulkhead bulkhead = this.clients.forRoute(route("slow"));
+		bulkhead.tryAcquire();
+		bulkhead.tryAcquire();
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/").build());
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		context.setRoute(route("slow"));
+		context.setRequestUrl(exchange.getRequest().getURI());
+		boolean[] chained = new boolean[1];
+
+		new NettyRoutingFilter(this.clients).filter(exchange, e -> {
+			chained[0] = true;
+			return Mono.empty();
+		}).block();
+
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+		assertThat(chained[0]).isFalse();
+		assertThat(bulkhead.getInFlight()).isEqualTo(2);
+	}
+
+	@Test
+	public void profileTimeoutsAreRouteDefaults() {
+		this.clients.register("reports", HttpClient.create(), null, 0,
+				UpstreamTimeouts.of(null, Duration.ofSeconds(10), Duration.ofSeconds(30)));
+		Bulkhead reports = this.clients.forRoute(route("reports"));
+		Route own = Route.builder().id("own").uri("http://localhost")
+				.metadata(HTTP_CLIENT_PROFILE, "reports")
+				.metadata(UpstreamTimeouts.RESPONSE_TIMEOUT, "2s")
+				.build();
+
+		UpstreamTimeouts defaults = UpstreamTimeouts.forRoute(route("reports"), reports.getTimeouts());
+		UpstreamTimeouts merged = UpstreamTimeouts.forRoute(own, reports.getTimeouts());
+
+		assertThat(defaults.getResponseTimeout()).isEqualTo(Duration.ofSeconds(10));
+		assertThat(defaults.getIdleTimeout()).isEqualTo(Duration.ofSeconds(30));
+		assertThat(merged.getResponseTimeout()).isEqualTo(Duration.ofSeconds(2));
+		assertThat(merged.getIdleTimeout()).isEqualTo(Duration.ofSeconds(30));
+		assertThat(this.clients.forRoute(route(null)).getTimeouts()).isSameAs(UpstreamTimeouts.none());
+	}
+
+	private static Route route(String profile) {
+		Route.Builder builder = Route.builder().id("route").uri("http://localhost");
+		if (profile != null) {
+			builder.metadata(HTTP_CLIENT_PROFILE, profile);
+		}
+		return builder.build();
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AddRequestHeaderGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.PrefixPathGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.RemoveRequestHeaderGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.SetPathGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
+import org.springframework.core.Ordered;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory.NAME_KEY;
+import static org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory.VALUE_KEY;
+import static org.springframework.cloud.gateway.filter.factory.PrefixPathGatewayFilterFactory.PREFIX_KEY;
+import static org.springframework.cloud.gateway.filter.factory.SetPathGatewayFilterFactory.TEMPLATE_KEY;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.alwaysTrue;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.tuple.TupleBuilder.tuple;
+
+public class FilteringWebHandlerTests {
+
+	private final List<String> invoked = new ArrayList<>();
+
+	@Test
+	public void prebuiltChainsRunGlobalAndRouteFiltersInOrder() {
+		Route route = route("route", new OrderedGatewayFilter(filter("route2"), 2),
+				new OrderedGatewayFilter(filter("route0"), 0));
+		FilteringWebHandler handler = new FilteringWebHandler(
+				Arrays.asList(globalFilter("global1", 1), globalFilter("global3", 3)), () -> Flux.just(route));
+
+		handler.handle(exchange(route)).block();
+		handler.handle(exchange(route)).block();
+
+		assertThat(invoked).containsExactly("route0", "global1", "route2", "global3",
+				"route0", "global1", "route2", "global3");
+	}
+
+	@Test
+	public void routesUnknownToTheLocatorAreStillFiltered() {
+		Route known = route("known", filter("known"));
+		Route unknown = route("unknown", new OrderedGatewayFilter(filter("unknown"), 2));
+		FilteringWebHandler handler = new FilteringWebHandler(
+				Arrays.asList(globalFilter("global1", 1)), () -> Flux.just(known));
+
+		handler.handle(exchange(unknown)).block();
+
+		assertThat(invoked).containsExactly("global1", "unknown");
+	}
+
+	@Test
+	public void completionCallbacksRunAfterTheChain() {
+		GatewayFilter callbackFilter = (exchange, chain) -> {
+			GatewayExchangeContext.get(exchange).onComplete(() -> invoked.add("completed"));
+			return chain.filter(exchange);
+		};
+		Route route = route("route", new OrderedGatewayFilter(callbackFilter, 0),
+				new OrderedGatewayFilter(filter("route1"), 1));
+		FilteringWebHandler handler = new FilteringWebHandler(new ArrayList<>(), () -> Flux.just(route));
+
+		handler.handle(exchange(route)).block();
+
+		assertThat(invoked).containsExactly("route1", "completed");
+	}
+
+	@Test
+	public void adjacentRequestMutationsAreFusedWithoutChangingTheResult() {
+		List<GatewayFilter> filters = Arrays.asList(
+				new OrderedGatewayFilter(new AddRequestHeaderGatewayFilterFactory()
+						.apply(tuple().of(NAME_KEY, "X-Foo", VALUE_KEY, "Bar")), 1),
+				new OrderedGatewayFilter(new PrefixPathGatewayFilterFactory()
+						.apply(tuple().of(PREFIX_KEY, "/api")), 2),
+				new OrderedGatewayFilter(new RemoveRequestHeaderGatewayFilterFactory()
+						.apply(tuple().of(NAME_KEY, "X-Remove")), 3),
+				new OrderedGatewayFilter(new SetPathGatewayFilterFactory()
+						.apply(tuple().of(TEMPLATE_KEY, "/set")), 4),
+				new OrderedGatewayFilter(new PrefixPathGatewayFilterFactory()
+						.apply(tuple().of(PREFIX_KEY, "/v1")), 5));
+
+		List<GatewayFilter> fused = FilteringWebHandler.fuse(filters);
+		assertThat(fused).hasSize(1);
+
+		ServerWebExchange separately = requestMutationExchange();
+		for (GatewayFilter filter : filters) {
+			separately = filterOnce(filter, separately);
+		}
+		ServerWebExchange together = filterOnce(fused.get(0), requestMutationExchange());
+
+		assertThat(together.getRequest().getURI()).isEqualTo(separately.getRequest().getURI());
+		assertThat(together.getRequest().getURI().getPath()).isEqualTo("/v1/set");
+		assertThat(together.getRequest().getHeaders()).isEqualTo(separately.getRequest().getHeaders());
+		assertThat(together.getRequest().getHeaders()).containsKey("X-Foo").doesNotContainKey("X-Remove");
+		assertThat(together.<URI>getAttribute(GATEWAY_REQUEST_URL_ATTR))
+				.isEqualTo(separately.getAttribute(GATEWAY_REQUEST_URL_ATTR));
+		assertThat((Iterable<?>) together.getAttribute(GATEWAY_ORIGINAL_REQUEST_URL_ATTR))
+				.containsExactlyElementsOf(separately.getAttribute(GATEWAY_ORIGINAL_REQUEST_URL_ATTR));
+	}
+
+	@Test
+	public void otherFiltersInterruptFusion() {
+		GatewayFilter addHeader = new AddRequestHeaderGatewayFilterFactory()
+				.apply(tuple().of(NAME_KEY, "X-Foo", VALUE_KEY, "Bar"));
+		GatewayFilter other = filter("other");
+
+		List<GatewayFilter> fused = FilteringWebHandler.fuse(Arrays.asList(addHeader, other, addHeader));
+
+		assertThat(fused).containsExactly(addHeader, other, addHeader);
+	}
+
+	private ServerWebExchange requestMutationExchange() {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/foo?bar=baz")
+				.header("X-Remove", "value")
+				.build());
+	}
+
+	private ServerWebExchange filterOnce(GatewayFilter filter, ServerWebExchange exchange) {
+		AtomicReference<ServerWebExchange> result = new AtomicReference<>();
+		filter.filter(exchange, filtered -> {
+			result.set(filtered);
+			return Mono.empty();
+		}).block();
+		return result.get();
+	}
+
+	private ServerWebExchange exchange(Route route) {
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/").build());
+		exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route);
+		return exchange;
+	}
+
+	private Route route(String id, GatewayFilter... filters) {
+		return Route.builder()
+				.id(id)
+				.uri("http://localhost")
+				.predicate(alwaysTrue())
+				.gatewayFilters(new ArrayList<>(Arrays.asList(filters)))
+				.build();
+	}
+
+	private GatewayFilter filter(String name) {
+		return (exchange, chain) -> {
+			invoked.add(name);
+			return chain.filter(exchange);
+		};
+	}
+
+	private GlobalFilter globalFilter(String name, int order) {
+		return new OrderedGlobalFilter(name, order);
+	}
+
+	private class OrderedGlobalFilter implements GlobalFilter, Ordered {
+
+		private final String name;
+
+		private final int order;
+
+		private OrderedGlobalFilter(String name, int order) {
+			this.name = name;
+			this.order = order;
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			invoked.add(this.name);
+			return chain.filter(exchange);
+		}
+
+		@Override
+		public int getOrder() {
+			return this.order;
+		}
+	}
+}
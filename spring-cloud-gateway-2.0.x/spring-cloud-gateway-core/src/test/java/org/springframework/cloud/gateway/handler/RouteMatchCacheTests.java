@@ -0,0 +1,188 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDescriptor;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RouteMatchCacheTests {
+
+	private final Map<String, AtomicInteger> tests = new HashMap<>();
+
+	@Test
+	public void cachedLookupSkipsCacheablePredicates() {
+		Route foo = route("foo", PredicateDescriptor.path("/foo"), exchange -> path(exchange).equals("/foo"));
+		Route bar = route("bar", PredicateDescriptor.path("/bar"), exchange -> path(exchange).equals("/bar"));
+		RouteMatchCache cache = new RouteMatchCache(10);
+
+		assertThat(cache.lookup(exchange("/bar"), Flux.just(foo, bar)).block()).isSameAs(bar);
+		assertThat(cache.lookup(exchange("/bar"), Flux.just(foo, bar)).block()).isSameAs(bar);
+
+		assertThat(tests.get("foo")).hasValue(1);
+		// tested again for the attributes set by its predicate
+		assertThat(tests.get("bar")).hasValue(2);
+		assertThat(cache.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void missesAreCached() {
+		Route foo = route("foo", PredicateDescriptor.path("/foo"), exchange -> path(exchange).equals("/foo"));
+		RouteMatchCache cache = new RouteMatchCache(10);
+
+		assertThat(cache.lookup(exchange("/bar"), Flux.just(foo)).block()).isNull();
+		assertThat(cache.lookup(exchange("/bar"), Flux.just(foo)).block()).isNull();
+
+		assertThat(tests.get("foo")).hasValue(1);
+	}
+
+	@Test
+	public void opaqueRoutesAreAlwaysTested() {
+		AtomicBoolean open = new AtomicBoolean(false);
+		Route opaque = route("opaque", PredicateDescriptor.opaque(), exchange -> open.get());
+		Route foo = route("foo", PredicateDescriptor.path("/foo"), exchange -> path(exchange).equals("/foo"));
+		RouteMatchCache cache = new RouteMatchCache(10);
+
+		assertThat(cache.lookup(exchange("/foo"), Flux.just(opaque, foo)).block()).isSameAs(foo);
+		open.set(true);
+		assertThat(cache.lookup(exchange("/foo"), Flux.just(opaque, foo)).block()).isSameAs(opaque);
+		open.set(false);
+		assertThat(cache.lookup(exchange("/foo"), Flux.just(opaque, foo)).block()).isSameAs(foo);
+
+		assertThat(tests.get("opaque")).hasValue(3);
+		assertThat(tests.get("foo")).hasValue(2);
+	}
+
+	@Test
+	public void opaqueMatchesAreNotCached() {
+		Route opaque = route("opaque", PredicateDescriptor.opaque(), exchange -> true);
+		RouteMatchCache cache = new RouteMatchCache(10);
+
+		assertThat(cache.lookup(exchange("/foo"), Flux.just(opaque)).block()).isSameAs(opaque);
+
+		assertThat(cache.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void leastRecentlyUsedEntriesAreEvicted() {
+		Route foo = route("foo", PredicateDescriptor.path("/foo"), exchange -> path(exchange).equals("/foo"));
+		RouteMatchCache cache = new RouteMatchCache(2);
+
+		cache.lookup(exchange("/a"), Flux.just(foo)).block();
+		cache.lookup(exchange("/b"), Flux.just(foo)).block();
+		cache.lookup(exchange("/a"), Flux.just(foo)).block();
+		cache.lookup(exchange("/c"), Flux.just(foo)).block();
+		assertThat(tests.get("foo")).hasValue(3);
+
+		cache.lookup(exchange("/a"), Flux.just(foo)).block();
+		assertThat(tests.get("foo")).hasValue(3);
+		cache.lookup(exchange("/b"), Flux.just(foo)).block();
+		assertThat(tests.get("foo")).hasValue(4);
+		assertThat(cache.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void clearForgetsLookups() {
+		Route foo = route("foo", PredicateDescriptor.path("/foo"), exchange -> path(exchange).equals("/foo"));
+		RouteMatchCache cache = new RouteMatchCache(10);
+
+		cache.lookup(exchange("/bar"), Flux.just(foo)).block();
+		cache.clear();
+
+		assertThat(cache.size()).isEqualTo(0);
+		Route bar = route("bar", PredicateDescriptor.path("/bar"), exchange -> path(exchange).equals("/bar"));
+		assertThat(cache.lookup(exchange("/bar"), Flux.just(foo, bar)).block()).isSameAs(bar);
+	}
+
+	@Test
+	public void cachedRouteMissingFromCandidatesIsMatchedAgain() {
+		Route foo = route("foo", PredicateDescriptor.path("/foo"), exchange -> path(exchange).equals("/foo"));
+		RouteMatchCache cache = new RouteMatchCache(10);
+		cache.lookup(exchange("/foo"), Flux.just(foo)).block();
+
+		// 同名但重建过的 Route
+		Route rebuilt = route("foo", PredicateDescriptor.path("/foo"), exchange -> path(exchange).equals("/foo"));
+		assertThat(cache.lookup(exchange("/foo"), Flux.just(rebuilt)).block()).isSameAs(rebuilt);
+		assertThat(cache.lookup(exchange("/foo"), Flux.just(rebuilt)).block()).isSameAs(rebuilt);
+		assertThat(tests.get("foo")).hasValue(2);
+	}
+
+	@Test
+	public void entriesBelongToAGeneration() {
+		Route foo = route("foo", PredicateDescriptor.path("/foo"), exchange -> path(exchange).equals("/foo"));
+		RouteMatchCache cache = new RouteMatchCache(10);
+		cache.lookup(exchange("/bar"), 1, Flux.just(foo)).block();
+
+		// 新一代的路由开始新的缓存
+		Route bar = route("bar", PredicateDescriptor.path("/bar"), exchange -> path(exchange).equals("/bar"));
+		assertThat(cache.lookup(exchange("/bar"), 2, Flux.just(foo, bar)).block()).isSameAs(bar);
+		assertThat(cache.size()).isEqualTo(1);
+
+		// 旧一代的查找不写入缓存
+		assertThat(cache.lookup(exchange("/baz"), 1, Flux.just(foo)).block()).isNull();
+		assertThat(cache.size()).isEqualTo(1);
+		assertThat(cache.lookup(exchange("/bar"), 2, Flux.just(foo, bar)).block()).isSameAs(bar);
+	}
+
+	@Test
+	public void keyIncludesMethodAndHost() {
+		Route foo = route("foo", PredicateDescriptor.path("/foo"), exchange -> path(exchange).equals("/foo"));
+		RouteMatchCache cache = new RouteMatchCache(10);
+
+		cache.lookup(exchange("/foo"), Flux.just(foo)).block();
+		cache.lookup(MockServerWebExchange.from(MockServerHttpRequest.post("/foo").build()), Flux.just(foo)).block();
+		cache.lookup(MockServerWebExchange.from(MockServerHttpRequest.get("/foo")
+				.header("Host", "www.example.org").build()), Flux.just(foo)).block();
+
+		assertThat(cache.size()).isEqualTo(3);
+	}
+
+	private Route route(String id, PredicateDescriptor descriptor, Predicate<ServerWebExchange> predicate) {
+		AtomicInteger count = new AtomicInteger();
+		tests.put(id, count);
+		return Route.builder()
+				.id(id)
+				.uri("http://localhost")
+				.predicate(exchange -> {
+					count.incrementAndGet();
+					return predicate.test(exchange);
+				})
+				.predicateDescriptor(descriptor)
+				.build();
+	}
+
+	private static String path(ServerWebExchange exchange) {
+		return exchange.getRequest().getURI().getPath();
+	}
+
+	private static ServerWebExchange exchange(String path) {
+		return MockServerWebExchange.from(MockServerHttpRequest.get(path).build());
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.handler.predicate;
+
+import java.time.ZonedDateTime;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory.PATTERN_KEY;
+import static org.springframework.tuple.TupleBuilder.tuple;
+
+public class PredicateDescriptorTests {
+
+	@Test
+	public void factoriesDescribeTheirArgs() {
+		assertThat(new PathRoutePredicateFactory().describe(tuple().of(PATTERN_KEY, "/foo/**")).getPathPatterns())
+				.containsExactly("/foo/**");
+		assertThat(new HostRoutePredicateFactory().describe(tuple().of(PATTERN_KEY, "**.example.org")).getHostPatterns())
+				.containsExactly("**.example.org");
+		assertThat(new MethodRoutePredicateFactory().describe(tuple()
+				.of(MethodRoutePredicateFactory.METHOD_KEY, "GET")).getMethods())
+				.containsExactly("GET");
+		assertThat(new HeaderRoutePredicateFactory().describe(tuple()
+				.of(HeaderRoutePredicateFactory.HEADER_KEY, "X-Request-Id", HeaderRoutePredicateFactory.REGEXP_KEY, "\\d+"))
+				.getHeaders())
+				.containsExactly(new PredicateDescriptor.Header("X-Request-Id", "\\d+"));
+		assertThat(new AfterRoutePredicateFactory().describe(tuple()
+				.of(AfterRoutePredicateFactory.DATETIME_KEY, ZonedDateTime.now())))
+				.isSameAs(PredicateDescriptor.opaque());
+	}
+
+	@Test
+	public void andCombinesDescriptors() {
+		PredicateDescriptor descriptor = PredicateDescriptor.empty()
+				.and(PredicateDescriptor.path("/foo"))
+				.and(PredicateDescriptor.host("**.example.org"))
+				.and(PredicateDescriptor.method("GET"))
+				.and(PredicateDescriptor.path("/**"));
+
+		assertThat(descriptor.getPathPatterns()).containsExactly("/foo", "/**");
+		assertThat(descriptor.getHostPatterns()).containsExactly("**.example.org");
+		assertThat(descriptor.getMethods()).containsExactly("GET");
+		assertThat(descriptor.getHeaders()).isEmpty();
+		assertThat(descriptor.isCacheable()).isTrue();
+	}
+
+	@Test
+	public void anyUncacheablePredicateMakesTheRouteUncacheable() {
+		assertThat(PredicateDescriptor.path("/foo").and(PredicateDescriptor.opaque()).isCacheable()).isFalse();
+		assertThat(PredicateDescriptor.opaque().and(PredicateDescriptor.path("/foo")).isCacheable()).isFalse();
+		assertThat(PredicateDescriptor.path("/foo").and(PredicateDescriptor.header("X-Foo", ".*")).isCacheable())
+				.isFalse();
+		assertThat(PredicateDescriptor.empty().isCacheable()).isTrue();
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.handler.support;
+
+import org.junit.Test;
+import org.springframework.http.HttpCookie;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestViewTests {
+
+	@Test
+	public void viewIsMemoizedOnTheExchange() {
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/foo").build());
+
+		RequestView view = RequestView.get(exchange);
+
+		assertThat(RequestView.get(exchange)).isSameAs(view);
+		assertThat(view.getPath()).isSameAs(RequestView.get(exchange).getPath());
+		assertThat(view.getPath().value()).isEqualTo("/foo");
+	}
+
+	@Test
+	public void mutatedRequestGetsANewView() {
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/foo").build());
+		RequestView view = RequestView.get(exchange);
+
+		ServerWebExchange mutated = exchange.mutate()
+				.request(exchange.getRequest().mutate().path("/bar").build())
+				.build();
+
+		assertThat(RequestView.get(mutated)).isNotSameAs(view);
+		assertThat(RequestView.get(mutated).getPath().value()).isEqualTo("/bar");
+	}
+
+	@Test
+	public void headersAreLookedUpByLowerCaseName() {
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/foo")
+				.header("X-Request-Id", "1", "2")
+				.header("Host", "www.example.org")
+				.build());
+
+		RequestView view = RequestView.get(exchange);
+
+		assertThat(view.getHeaders(RequestView.toLowerCase("X-REQUEST-ID"))).containsExactly("1", "2");
+		assertThat(view.getHeaders("x-missing")).isEmpty();
+		assertThat(view.getHost()).isEqualTo("www.example.org");
+	}
+
+	@Test
+	public void missingValuesAreEmpty() {
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/foo?bar=baz")
+				.cookie(new HttpCookie("chocolate", "chip"))
+				.build());
+
+		RequestView view = RequestView.get(exchange);
+
+		assertThat(view.getQueryParams("bar")).containsExactly("baz");
+		assertThat(view.hasQueryParam("qux")).isFalse();
+		assertThat(view.getQueryParams("qux")).isEmpty();
+		assertThat(view.getCookies("chocolate")).extracting(HttpCookie::getValue).containsExactly("chip");
+		assertThat(view.getCookies("oatmeal")).isEmpty();
+		assertThat(view.getHost()).isNull();
+	}
+}
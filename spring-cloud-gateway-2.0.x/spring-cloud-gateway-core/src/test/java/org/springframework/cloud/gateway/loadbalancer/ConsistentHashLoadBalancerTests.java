@@ -0,0 +1,185 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.loadbalancer.ServiceInstanceSnapshotsTests.TestDiscoveryClient;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.GatewayExchangeContext;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.cloud.gateway.loadbalancer.ServiceInstanceSnapshotsTests.instance;
+
+public class ConsistentHashLoadBalancerTests {
+
+	private static final KeyResolver USER = exchange -> Mono
+			.justOrEmpty(exchange.getRequest().getHeaders().getFirst("X-User"));
+
+	private final TestDiscoveryClient discoveryClient = new TestDiscoveryClient();
+
+	private final ServiceInstanceSnapshots snapshots = new ServiceInstanceSnapshots(this.discoveryClient,
+			Duration.ofHours(1));
+
+	private final ServiceInstanceStats stats = new ServiceInstanceStats();
+
+	private final ConsistentHashLoadBalancer balancer = new ConsistentHashLoadBalancer(this.snapshots, this.stats,
+			USER);
+
+	@After
+	public void tearDown() {
+		this.snapshots.dispose();
+	}
+
+	@Test
+	public void sameKeyGoesToSameInstance() {
+		this.discoveryClient.set("service", instance("service", 8081), instance("service", 8082),
+				instance("service", 8083));
+
+		Map<Integer, Integer> chosen = new HashMap<>();
+		for (int user = 0; user < 300; user++) {
+			int port = choose("user" + user).getPort();
+			for (int i = 0; i < 3; i++) {
+				assertThat(choose("user" + user).getPort()).isEqualTo(port);
+			}
+			chosen.merge(port, 1, Integer::sum);
+		}
+
+		// 每个实例大约分到三分之一
+		assertThat(chosen).containsOnlyKeys(8081, 8082, 8083);
+		assertThat(chosen.values()).allSatisfy(count -> assertThat(count).isBetween(50, 150));
+	}
+
+	@Test
+	public void addingAnInstanceMovesAboutOneNthOfTheKeys() {
+		this.discoveryClient.set("service", instance("service", 8081), instance("service", 8082),
+				instance("service", 8083), instance("service", 8084));
+		Map<String, Integer> before = new HashMap<>();
+		for (int user = 0; user < 1000; user++) {
+			before.put("user" + user, choose("user" + user).getPort());
+		}
+
+		this.discoveryClient.set("service", instance("service", 8081), instance("service", 8082),
+				instance("service", 8083), instance("service", 8084), instance("service", 8085));
+		this.snapshots.refresh();
+
+		int moved = 0;
+		for (Map.Entry<String, Integer> entry : before.entrySet()) {
+			int port = choose(entry.getKey()).getPort();
+			if (port != entry.getValue()) {
+				// 只会移到新实例
+				assertThat(port).isEqualTo(8085);
+				moved++;
+			}
+		}
+		assertThat(moved).isBetween(120, 280);
+	}
+
+	@Test
+	public void overloadedInstanceIsPassedOver() {
+		this.discoveryClient.set("service", instance("service", 8081), instance("service", 8082));
+		ServiceInstance first = choose("hot");
+		ServiceInstance other = first.getPort() == 8081 ? instance("service", 8082) : instance("service", 8081);
+
+		for (int i = 0; i < 3; i++) {
+			this.stats.get(first).requestStarted();
+		}
+		// 上限为 ceil(1.25 * 4 / 2) = 3
+		assertThat(choose("hot").getPort()).isEqualTo(other.getPort());
+
+		this.stats.get(other).requestStarted();
+		this.stats.get(other).requestStarted();
+		// 上限为 ceil(1.25 * 6 / 2) = 4
+		assertThat(choose("hot").getPort()).isEqualTo(first.getPort());
+	}
+
+	@Test
+	public void requestsWithoutKeyAreSpread() {
+		this.discoveryClient.set("service", instance("service", 8081), instance("service", 8082));
+
+		Map<Integer, Integer> chosen = new HashMap<>();
+		for (int i = 0; i < 100; i++) {
+			chosen.merge(choose(null).getPort(), 1, Integer::sum);
+		}
+
+		assertThat(chosen).containsOnlyKeys(8081, 8082);
+	}
+
+	@Test
+	public void routesNameTheirKeyResolver() {
+		this.discoveryClient.set("service", instance("service", 8081), instance("service", 8082));
+		KeyResolver constant = exchange -> Mono.just("constant");
+		ConsistentHashLoadBalancer balancer = new ConsistentHashLoadBalancer(this.snapshots, this.stats, USER,
+				Collections.singletonMap("constant", constant), ConsistentHashLoadBalancer.DEFAULT_POINTS_PER_INSTANCE,
+				ConsistentHashLoadBalancer.DEFAULT_LOAD_FACTOR);
+
+		int port = balancer.choose("service", exchange("user1", "constant")).block().getPort();
+		for (int user = 0; user < 20; user++) {
+			assertThat(balancer.choose("service", exchange("user" + user, "constant")).block().getPort())
+					.isEqualTo(port);
+		}
+		assertThatThrownBy(() -> balancer.choose("service", exchange("user1", "missing")))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void routesWithUnknownKeyResolverAreRejected() {
+		RouteLoadBalancers balancers = new RouteLoadBalancers(new RoundRobinLoadBalancer(this.snapshots))
+				.register("consistent-hash", this.balancer);
+		Route hashed = Route.builder().id("hashed").uri("lb://service")
+				.metadata(RouteLoadBalancers.LOAD_BALANCER, "consistent-hash")
+				.metadata(ConsistentHashLoadBalancer.HASH_KEY_RESOLVER, "missing")
+				.build();
+
+		assertThatThrownBy(() -> balancers.validate(hashed))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("missing").hasMessageContaining("hashed");
+		balancers.validate(Route.builder().id("plain").uri("lb://service")
+				.metadata(RouteLoadBalancers.LOAD_BALANCER, "consistent-hash").build());
+	}
+
+	private ServiceInstance choose(String user) {
+		return this.balancer.choose("service", exchange(user, null)).block(Duration.ofSeconds(5));
+	}
+
+	private static MockServerWebExchange exchange(String user, String keyResolver) {
+		MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("http://localhost/");
+		if (user != null) {
+			request.header("X-User", user);
+		}
+		MockServerWebExchange exchange = MockServerWebExchange.from(request.build());
+		if (keyResolver != null) {
+			GatewayExchangeContext.get(exchange).setRoute(Route.builder().id("hashed").uri("lb://service")
+					.metadata(Collections.singletonMap(ConsistentHashLoadBalancer.HASH_KEY_RESOLVER, keyResolver))
+					.build());
+		}
+		return exchange;
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.time.Duration;
+
+import org.junit.After;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.loadbalancer.ServiceInstanceSnapshotsTests.TestDiscoveryClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.loadbalancer.ServiceInstanceSnapshotsTests.instance;
+
+public class FallbackLoadBalancerTests {
+
+	private final TestDiscoveryClient discoveryClient = new TestDiscoveryClient();
+
+	private final ServiceInstanceSnapshots snapshots = new ServiceInstanceSnapshots(this.discoveryClient,
+			Duration.ofHours(1));
+
+	private final FallbackLoadBalancer balancer = new FallbackLoadBalancer(new RoundRobinLoadBalancer(this.snapshots),
+			(serviceId, exchange) -> Mono.just(instance(serviceId, 9090)));
+
+	@After
+	public void tearDown() {
+		this.snapshots.dispose();
+	}
+
+	@Test
+	public void servicesWithoutSnapshotInstancesFallBack() {
+		this.discoveryClient.set("discovered", instance("discovered", 8081));
+
+		assertThat(this.balancer.choose("discovered", null).block(Duration.ofSeconds(5)).getPort()).isEqualTo(8081);
+		assertThat(this.balancer.choose("static", null).block(Duration.ofSeconds(5)).getPort()).isEqualTo(9090);
+		assertThat(this.snapshots.hasInstances("discovered")).isTrue();
+		assertThat(this.snapshots.hasInstances("static")).isFalse();
+	}
+}
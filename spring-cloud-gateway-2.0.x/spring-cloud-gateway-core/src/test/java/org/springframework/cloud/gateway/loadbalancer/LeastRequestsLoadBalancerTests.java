@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.loadbalancer.ServiceInstanceSnapshotsTests.TestDiscoveryClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.loadbalancer.ServiceInstanceSnapshotsTests.instance;
+
+public class LeastRequestsLoadBalancerTests {
+
+	private final TestDiscoveryClient discoveryClient = new TestDiscoveryClient();
+
+	private final ServiceInstanceSnapshots snapshots = new ServiceInstanceSnapshots(this.discoveryClient,
+			Duration.ofHours(1));
+
+	private final ServiceInstanceStats stats = new ServiceInstanceStats();
+
+	private final LeastRequestsLoadBalancer balancer = new LeastRequestsLoadBalancer(this.snapshots, this.stats);
+
+	@After
+	public void tearDown() {
+		this.snapshots.dispose();
+	}
+
+	@Test
+	public void lessLoadedOfTwoInstancesIsChosen() {
+		this.discoveryClient.set("service", instance("service", 8081), instance("service", 8082));
+		busy(instance("service", 8081), 3);
+
+		for (int i = 0; i < 20; i++) {
+			assertThat(choose().getPort()).isEqualTo(8082);
+		}
+	}
+
+	@Test
+	public void mostLoadedInstanceIsNeverChosen() {
+		this.discoveryClient.set("service", instance("service", 8081), instance("service", 8082),
+				instance("service", 8083));
+		busy(instance("service", 8081), 1);
+		busy(instance("service", 8082), 5);
+
+		Map<Integer, Integer> chosen = new HashMap<>();
+		for (int i = 0; i < 300; i++) {
+			chosen.merge(choose().getPort(), 1, Integer::sum);
+		}
+
+		assertThat(chosen).doesNotContainKey(8082);
+		// 8083 与任何实例比较都会胜出，8081 只在与 8082 比较时胜出
+		assertThat(chosen.get(8083)).isGreaterThan(chosen.get(8081));
+	}
+
+	@Test
+	public void statsOfRemovedInstancesAreDropped() {
+		ServiceInstance kept = instance("service", 8081);
+		busy(kept, 1);
+		busy(instance("service", 8082), 1);
+		busy(instance("other", 8082), 1);
+
+		this.stats.retain("service", Arrays.asList(kept));
+
+		assertThat(this.stats.getStats()).containsOnlyKeys("other/localhost:8082", "service/localhost:8081");
+		assertThat(this.stats.get(instance("service", 8081)).getInFlight()).isEqualTo(1);
+	}
+
+	private ServiceInstance choose() {
+		return this.balancer.choose("service", null).block(Duration.ofSeconds(5));
+	}
+
+	private void busy(ServiceInstance instance, int requests) {
+		for (int i = 0; i < requests; i++) {
+			this.stats.get(instance).requestStarted();
+		}
+	}
+}
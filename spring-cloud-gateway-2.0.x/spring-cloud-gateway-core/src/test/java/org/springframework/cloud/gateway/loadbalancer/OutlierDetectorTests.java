@@ -0,0 +1,169 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.loadbalancer.ServiceInstanceSnapshotsTests.TestDiscoveryClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.loadbalancer.ServiceInstanceSnapshotsTests.instance;
+
+public class OutlierDetectorTests {
+
+	private final TestDiscoveryClient discoveryClient = new TestDiscoveryClient();
+
+	private final ServiceInstanceSnapshots snapshots = new ServiceInstanceSnapshots(this.discoveryClient,
+			Duration.ofHours(1));
+
+	private final ServiceInstanceStats stats = new ServiceInstanceStats();
+
+	private final OutlierDetector detector = new OutlierDetector(this.snapshots, this.stats);
+
+	@Before
+	public void setUp() {
+		this.snapshots.setInstanceFilter(this.detector::available);
+		this.discoveryClient.set("service", instance("service", 8081), instance("service", 8082),
+				instance("service", 8083), instance("service", 8084));
+		this.detector.setConsecutiveFailures(3);
+	}
+
+	@After
+	public void tearDown() {
+		this.snapshots.dispose();
+	}
+
+	@Test
+	public void consecutiveFailuresEjectAnInstance() {
+		List<ServiceInstance> all = instances();
+		fail(8081, 2);
+		this.detector.recordSuccess(instance("service", 8081));
+		fail(8081, 2);
+		assertThat(instances()).isSameAs(all);
+
+		fail(8081, 1);
+
+		assertThat(instances()).extracting(ServiceInstance::getPort).containsExactly(8082, 8083, 8084);
+		// 剔除集合不变时返回同一个 List
+		assertThat(instances()).isSameAs(instances());
+		assertThat(this.detector.getEjections()).isEqualTo(1);
+		assertThat(this.detector.getEjected()).containsOnlyKeys("service/localhost:8081");
+		assertThat(this.stats.get(instance("service", 8081)).isEjected()).isTrue();
+	}
+
+	@Test
+	public void lowSuccessRateEjectsAnInstance() {
+		this.detector.setConsecutiveFailures(0);
+		this.detector.setSuccessRate(10, 0.7);
+		for (int i = 0; i < 9; i++) {
+			record(8082, i % 2 == 0);
+		}
+		assertThat(instances()).hasSize(4);
+
+		record(8082, true);
+
+		assertThat(instances()).extracting(ServiceInstance::getPort).containsExactly(8081, 8083, 8084);
+	}
+
+	@Test
+	public void ejectionsAreCapped() {
+		fail(8081, 3);
+		fail(8082, 3);
+		fail(8083, 3);
+
+		// 4 个实例最多剔除一半
+		assertThat(instances()).extracting(ServiceInstance::getPort).containsExactly(8083, 8084);
+		assertThat(this.detector.getEjected()).containsOnlyKeys("service/localhost:8081", "service/localhost:8082");
+		assertThat(this.detector.getEjections()).isEqualTo(2);
+		assertThat(this.detector.getCappedEjections()).isEqualTo(1);
+	}
+
+	@Test
+	public void ejectedInstancesComeBackWithBackOff() {
+		long[] now = { System.nanoTime() };
+		this.detector.setNanoClock(() -> now[0]);
+		this.detector.setEjectionTime(Duration.ofMillis(200), Duration.ofSeconds(10));
+
+		fail(8081, 3);
+		assertThat(this.detector.getEjected().get("service/localhost:8081")).isEqualTo(200L);
+		now[0] += Duration.ofMillis(300).toNanos();
+		assertThat(instances()).hasSize(4);
+
+		fail(8081, 3);
+		// 第二次剔除时间加倍
+		assertThat(this.detector.getEjected().get("service/localhost:8081")).isEqualTo(400L);
+		assertThat(this.stats.get(instance("service", 8081)).getEjections()).isEqualTo(2);
+
+		// 稳定超过最长剔除时间后，退避从头开始
+		now[0] += Duration.ofSeconds(11).toNanos();
+		fail(8081, 3);
+		assertThat(this.detector.getEjected().get("service/localhost:8081")).isEqualTo(200L);
+	}
+
+	@Test
+	public void servicesNotChosenFromSnapshotsAreNotTracked() {
+		fail(8081, 3);
+		ServiceInstance other = instance("other", 8081);
+
+		for (int i = 0; i < 3; i++) {
+			this.detector.recordFailure(other);
+		}
+
+		assertThat(this.stats.get(other).getConsecutiveFailures()).isZero();
+		assertThat(this.detector.getEjected()).containsOnlyKeys("service/localhost:8081");
+	}
+
+	@Test
+	public void onlyInstanceIsNeverEjected() {
+		this.discoveryClient.set("service", instance("service", 8081));
+		this.snapshots.refresh();
+
+		fail(8081, 10);
+
+		assertThat(instances()).hasSize(1);
+		assertThat(this.detector.getEjections()).isZero();
+	}
+
+	private List<ServiceInstance> instances() {
+		return this.snapshots.get("service").block(Duration.ofSeconds(5));
+	}
+
+	private void fail(int port, int requests) {
+		// 先加载，剔除只针对当前快照中的实例
+		instances();
+		for (int i = 0; i < requests; i++) {
+			this.detector.recordFailure(instance("service", port));
+		}
+	}
+
+	private void record(int port, boolean success) {
+		instances();
+		if (success) {
+			this.detector.recordSuccess(instance("service", port));
+		}
+		else {
+			this.detector.recordFailure(instance("service", port));
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.loadbalancer.ServiceInstanceSnapshotsTests.TestDiscoveryClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.springframework.cloud.gateway.loadbalancer.ServiceInstanceSnapshotsTests.instance;
+
+public class PeakEwmaLoadBalancerTests {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final TestDiscoveryClient discoveryClient = new TestDiscoveryClient();
+
+	private final ServiceInstanceSnapshots snapshots = new ServiceInstanceSnapshots(this.discoveryClient,
+			Duration.ofHours(1));
+
+	private final ServiceInstanceStats stats = new ServiceInstanceStats(Duration.ofSeconds(10));
+
+	private final PeakEwmaLoadBalancer balancer = new PeakEwmaLoadBalancer(this.snapshots, this.stats);
+
+	private final ServiceInstance fast = instance("service", 8081);
+
+	private final ServiceInstance slow = instance("service", 8082);
+
+	@After
+	public void tearDown() {
+		this.snapshots.dispose();
+	}
+
+	@Test
+	public void fasterInstanceIsChosen() {
+		this.discoveryClient.set("service", this.fast, this.slow);
+		this.stats.get(this.fast).recordLatency(5 * MS);
+		this.stats.get(this.slow).recordLatency(100 * MS);
+
+		for (int i = 0; i < 20; i++) {
+			assertThat(choose()).isEqualTo(8081);
+		}
+	}
+
+	@Test
+	public void latencyIsWeightedByRequestsInFlight() {
+		this.discoveryClient.set("service", this.fast, this.slow);
+		this.stats.get(this.fast).recordLatency(5 * MS);
+		this.stats.get(this.slow).recordLatency(20 * MS);
+		for (int i = 0; i < 10; i++) {
+			this.stats.get(this.fast).requestStarted();
+		}
+
+		// 5ms * 11 > 20ms * 1
+		assertThat(choose()).isEqualTo(8082);
+	}
+
+	@Test
+	public void peaksAreTakenAtOnceAndFasterResponsesGradually() {
+		ServiceInstanceStats.Stats stats = this.stats.get(this.fast);
+		long now = 0;
+		stats.recordLatency(10 * MS, now);
+
+		stats.recordLatency(100 * MS, now += 100 * MS);
+		assertThat(stats.getLatency(now)).isEqualTo(100 * MS);
+
+		// 100ms 之后的快速响应只占约 1% 的权重
+		stats.recordLatency(10 * MS, now += 100 * MS);
+		assertThat(stats.getLatency(now)).isCloseTo(99.1 * MS, within(0.1 * MS));
+	}
+
+	@Test
+	public void latencyDecaysWhileIdle() {
+		ServiceInstanceStats.Stats stats = this.stats.get(this.slow);
+		stats.recordLatency(100 * MS, 0);
+
+		assertThat(stats.getLatency(TimeUnit.SECONDS.toNanos(10))).isCloseTo(100 * MS / Math.E, within(1.0));
+		assertThat(stats.getLatency(TimeUnit.MINUTES.toNanos(5))).isLessThan(1 * MS);
+		assertThat(this.stats.get(this.fast).getLatency()).isEqualTo(0);
+	}
+
+	@Test
+	public void instancesOfUnknownLatencyGetOneRequestAtATime() {
+		this.discoveryClient.set("service", this.fast, this.slow);
+		this.stats.get(this.slow).recordLatency(100 * MS);
+		this.stats.get(this.fast).requestStarted();
+
+		assertThat(choose()).isEqualTo(8082);
+	}
+
+	private int choose() {
+		return this.balancer.choose("service", null).block(Duration.ofSeconds(5)).getPort();
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.loadbalancer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServiceInstanceSnapshotsTests {
+
+	private final TestDiscoveryClient discoveryClient = new TestDiscoveryClient();
+
+	private final ServiceInstanceSnapshots snapshots = new ServiceInstanceSnapshots(this.discoveryClient,
+			Duration.ofHours(1));
+
+	@After
+	public void tearDown() {
+		this.snapshots.dispose();
+	}
+
+	@Test
+	public void instancesAreLoadedOnceOffTheCallingThread() throws Exception {
+		this.discoveryClient.set("service", instance("service", 8081));
+		this.discoveryClient.block = new CountDownLatch(1);
+
+		// 第一次加载期间并发的请求共享同一次加载
+		MonoProcessor<List<ServiceInstance>> first = this.snapshots.get("service").toProcessor();
+		MonoProcessor<List<ServiceInstance>> second = this.snapshots.get("service").toProcessor();
+		assertThat(first.isTerminated()).isFalse();
+		this.discoveryClient.block.countDown();
+
+		assertThat(first.block(Duration.ofSeconds(5))).extracting(ServiceInstance::getPort).containsExactly(8081);
+		assertThat(second.block(Duration.ofSeconds(5))).isSameAs(first.peek());
+		assertThat(this.discoveryClient.calls.get()).isEqualTo(1);
+		assertThat(this.discoveryClient.threads).doesNotContain(Thread.currentThread().getName());
+
+		assertThat(this.snapshots.get("service").block()).isSameAs(first.peek());
+		assertThat(this.discoveryClient.calls.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void refreshReplacesChangedSnapshots() {
+		this.discoveryClient.set("service", instance("service", 8081));
+		List<ServiceInstance> loaded = this.snapshots.get("service").block(Duration.ofSeconds(5));
+
+		this.snapshots.refresh();
+		assertThat(this.snapshots.getIfLoaded("service")).isSameAs(loaded);
+
+		this.discoveryClient.set("service", instance("service", 8081), instance("service", 8082));
+		this.snapshots.refresh();
+		assertThat(this.snapshots.getIfLoaded("service")).extracting(ServiceInstance::getPort)
+				.containsExactly(8081, 8082);
+		assertThat(this.snapshots.getIfLoaded("other")).isNull();
+	}
+
+	@Test
+	public void failedRefreshesKeepThePreviousSnapshot() {
+		this.discoveryClient.set("service", instance("service", 8081));
+		List<ServiceInstance> loaded = this.snapshots.get("service").block(Duration.ofSeconds(5));
+
+		this.discoveryClient.fail = true;
+		this.snapshots.refresh();
+
+		assertThat(this.snapshots.getIfLoaded("service")).isSameAs(loaded);
+	}
+
+	@Test
+	public void roundRobinTakesInstancesInTurn() {
+		this.discoveryClient.set("service", instance("service", 8081), instance("service", 8082));
+		RoundRobinLoadBalancer balancer = new RoundRobinLoadBalancer(this.snapshots);
+
+		List<Integer> ports = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			ports.add(balancer.choose("service", null).block(Duration.ofSeconds(5)).getPort());
+		}
+
+		assertThat(ports).containsExactly(8081, 8082, 8081, 8082);
+		assertThat(balancer.choose("missing", null).block(Duration.ofSeconds(5))).isNull();
+	}
+
+	static ServiceInstance instance(String serviceId, int port) {
+		return new DefaultServiceInstance(serviceId, "localhost", port, false);
+	}
+
+	static class TestDiscoveryClient implements DiscoveryClient {
+
+		private final Map<String, List<ServiceInstance>> instances = new ConcurrentHashMap<>();
+
+		private final AtomicInteger calls = new AtomicInteger();
+
+		private final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+		private volatile CountDownLatch block;
+
+		private volatile boolean fail;
+
+		void set(String serviceId, ServiceInstance... instances) {
+			this.instances.put(serviceId, Arrays.asList(instances));
+		}
+
+		@Override
+		public String description() {
+			return "test";
+		}
+
+		@Override
+		public List<ServiceInstance> getInstances(String serviceId) {
+			this.calls.incrementAndGet();
+			this.threads.add(Thread.currentThread().getName());
+			if (this.block != null) {
+				try {
+					this.block.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (this.fail) {
+				throw new IllegalStateException("discovery is down");
+			}
+			return this.instances.getOrDefault(serviceId, Collections.emptyList());
+		}
+
+		@Override
+		public List<String> getServices() {
+			return new ArrayList<>(this.instances.keySet());
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.alwaysTrue;
+
+public class CachingRouteLocatorTests {
+
+	@Test
+	public void refreshRebuildsOffTheCallerThreadAndSwapsOnCompletion() {
+		AtomicReference<Flux<Route>> routes = new AtomicReference<>(Flux.just(route("old")));
+		AtomicReference<String> thread = new AtomicReference<>();
+		CachingRouteLocator locator = new CachingRouteLocator(
+				() -> routes.get().doOnSubscribe(s -> thread.set(Thread.currentThread().getName())));
+		List<Object> events = new ArrayList<>();
+		locator.setApplicationEventPublisher(events::add);
+
+		routes.set(Flux.just(route("new2", 2), route("new1", 1)));
+		assertThat(ids(locator)).containsExactly("old");
+
+		locator.refresh().block();
+
+		assertThat(ids(locator)).containsExactly("new1", "new2");
+		assertThat(thread.get()).startsWith("route-refresh");
+		assertThat(events).hasSize(1).first().isInstanceOf(RoutesRefreshedEvent.class);
+	}
+
+	@Test
+	public void refreshesDuringARebuildAreCoalesced() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger rebuilds = new AtomicInteger();
+		CachingRouteLocator locator = new CachingRouteLocator(() -> Flux.defer(() -> {
+			if (rebuilds.getAndIncrement() == 1) {
+				// 阻塞第一次刷新
+				started.countDown();
+				await(release);
+			}
+			return Flux.just(route("route" + rebuilds.get()));
+		}));
+
+		Mono<Void> first = locator.refresh().cache();
+		first.subscribe();
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		List<Mono<Void>> queued = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			Mono<Void> refresh = locator.refresh().cache();
+			refresh.subscribe();
+			queued.add(refresh);
+		}
+		release.countDown();
+
+		first.block(Duration.ofSeconds(5));
+		Mono.when(queued).block(Duration.ofSeconds(5));
+
+		assertThat(locator.getRefreshesReceived()).isEqualTo(11);
+		assertThat(locator.getRefreshesExecuted()).isEqualTo(2);
+		assertThat(ids(locator)).containsExactly("route3");
+	}
+
+	@Test
+	public void debounceGathersABurstIntoOneRebuild() {
+		AtomicInteger rebuilds = new AtomicInteger();
+		CachingRouteLocator locator = new CachingRouteLocator(
+				() -> Flux.defer(() -> Flux.just(route("route" + rebuilds.incrementAndGet()))));
+		locator.setRefreshDebounce(Duration.ofMillis(200));
+
+		Mono.when(locator.refresh(), locator.refresh(), locator.refresh()).block(Duration.ofSeconds(5));
+
+		assertThat(locator.getRefreshesReceived()).isEqualTo(3);
+		assertThat(locator.getRefreshesExecuted()).isEqualTo(1);
+		assertThat(ids(locator)).containsExactly("route2");
+	}
+
+	@Test
+	public void failedRefreshKeepsTheCurrentRoutes() {
+		AtomicReference<Flux<Route>> routes = new AtomicReference<>(Flux.just(route("old")));
+		CachingRouteLocator locator = new CachingRouteLocator(() -> routes.get());
+
+		routes.set(Flux.error(new IllegalStateException("boom")));
+
+		assertThatThrownBy(() -> locator.refresh().block()).hasMessageContaining("boom");
+		assertThat(ids(locator)).containsExactly("old");
+	}
+
+	@Test
+	public void routesFailingValidationAreNotServed() {
+		RouteValidator validator = route -> {
+			if (route.getId().startsWith("bad")) {
+				throw new IllegalArgumentException("Invalid route " + route.getId());
+			}
+		};
+		assertThatThrownBy(() -> new CachingRouteLocator(() -> Flux.just(route("bad1")),
+				Collections.singletonList(validator))).hasMessageContaining("bad1");
+
+		AtomicReference<Flux<Route>> routes = new AtomicReference<>(Flux.just(route("old")));
+		CachingRouteLocator locator = new CachingRouteLocator(() -> routes.get(),
+				Collections.singletonList(validator));
+		routes.set(Flux.just(route("new"), route("bad2")));
+
+		assertThatThrownBy(() -> locator.refresh().block()).hasMessageContaining("bad2");
+		assertThat(ids(locator)).containsExactly("old");
+	}
+
+	@Test
+	public void definitionsAreRefreshedInTheBackground() {
+		RouteDefinition old = new RouteDefinition("old=http://localhost,Path=/old");
+		RouteDefinition updated = new RouteDefinition("new=http://localhost,Path=/new");
+		AtomicReference<RouteDefinition> definition = new AtomicReference<>(old);
+		CachingRouteDefinitionLocator locator = new CachingRouteDefinitionLocator(
+				() -> Flux.defer(() -> Flux.just(definition.get())));
+
+		definition.set(updated);
+		assertThat(locator.getRouteDefinitions().collectList().block()).containsExactly(old);
+
+		locator.refresh().block();
+
+		assertThat(locator.getRouteDefinitions().collectList().block()).containsExactly(updated);
+	}
+
+	@Test
+	public void routesAreRebuiltFromRefreshedDefinitions() {
+		RouteDefinition old = new RouteDefinition("old=http://localhost,Path=/old");
+		RouteDefinition updated = new RouteDefinition("new=http://localhost,Path=/new");
+		AtomicReference<RouteDefinition> definition = new AtomicReference<>(old);
+		CachingRouteDefinitionLocator definitions = new CachingRouteDefinitionLocator(
+				() -> Flux.defer(() -> Flux.just(definition.get())));
+		CachingRouteLocator locator = new CachingRouteLocator(() -> definitions.getRouteDefinitions()
+				.map(routeDefinition -> route(routeDefinition.getId())));
+		locator.setRouteDefinitionLocator(definitions);
+
+		definition.set(updated);
+		// 串联后路由定义不再单独响应事件
+		definitions.handleRefresh(new RefreshRoutesEvent(this));
+		locator.refresh().block(Duration.ofSeconds(5));
+
+		assertThat(definitions.getRefreshesReceived()).isEqualTo(1);
+		assertThat(ids(locator)).containsExactly("new");
+	}
+
+	@Test
+	public void refreshEventHandsBackTheRebuild() {
+		AtomicReference<Flux<Route>> routes = new AtomicReference<>(Flux.just(route("old")));
+		CachingRouteLocator locator = new CachingRouteLocator(() -> routes.get());
+		routes.set(Flux.just(route("new")));
+		RefreshRoutesEvent event = new RefreshRoutesEvent(this);
+
+		locator.handleRefresh(event);
+		event.getRefreshes().block(Duration.ofSeconds(5));
+
+		assertThat(ids(locator)).containsExactly("new");
+		assertThat(locator.getRefreshesReceived()).isEqualTo(1);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private List<String> ids(RouteLocator locator) {
+		return locator.getRoutes().map(Route::getId).collectList().block();
+	}
+
+	private Route route(String id) {
+		return route(id, 0);
+	}
+
+	private Route route(String id, int order) {
+		return Route.builder()
+				.id(id)
+				.uri("http://localhost")
+				.order(order)
+				.predicate(alwaysTrue())
+				.build();
+	}
+}
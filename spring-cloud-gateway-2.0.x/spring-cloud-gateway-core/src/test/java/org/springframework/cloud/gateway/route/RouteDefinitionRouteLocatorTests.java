@@ -1,9 +1,12 @@
 package org.springframework.cloud.gateway.route;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -11,11 +14,16 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringBootConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.gateway.config.GatewayProperties;
+import org.springframework.cloud.gateway.filter.FilterDefinition;
+import org.springframework.cloud.gateway.filter.factory.AddRequestHeaderGatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
 import org.springframework.cloud.gateway.support.ArgumentHints;
 import org.springframework.context.annotation.Bean;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.tuple.Tuple;
+import reactor.core.publisher.Flux;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -46,6 +54,131 @@ public class RouteDefinitionRouteLocatorTests {
 		assertThat(tuple.getString("arg1")).isEqualTo("val1");
 	}
 
+	@Test
+	public void spelExpressionsAreParsedOnce() {
+		SpelExpressions expressions = new SpelExpressions(new SpelExpressionParser(), this.beanFactory);
+		ArgumentHints argumentHints = new ArgumentHints() {
+			@Override
+			public List<String> argNames() {
+				return Arrays.asList("bean", "other");
+			}
+		};
+		Map<String, String> args = new HashMap<>();
+		args.put("bean", "#{@foo}");
+		args.put("other", "#{@foo}");
+
+		Tuple first = RouteDefinitionRouteLocator.getTuple(argumentHints, args, expressions);
+		Tuple second = RouteDefinitionRouteLocator.getTuple(argumentHints, args, expressions);
+
+		assertThat(first.getValue("bean", Integer.class)).isEqualTo(42);
+		assertThat(second.getValue("other", Integer.class)).isEqualTo(42);
+		assertThat(expressions.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void parallelCompilationKeepsDefinitionOrder() {
+		List<RouteDefinition> definitions = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			definitions.add(new RouteDefinition("route" + i + "=http://foo.org,Path=/foo/" + i));
+		}
+		GatewayProperties properties = new GatewayProperties();
+		properties.setRouteCompilationParallelism(4);
+		RouteDefinitionRouteLocator locator = new RouteDefinitionRouteLocator(
+				() -> Flux.fromIterable(definitions),
+				Collections.singletonList(new PathRoutePredicateFactory()),
+				Collections.emptyList(),
+				properties);
+		properties.setDefaultFilters(new ArrayList<>());
+
+		List<String> ids = locator.getRoutes().map(Route::getId).collectList().block();
+
+		assertThat(ids).containsExactlyElementsOf(definitions.stream()
+				.map(RouteDefinition::getId).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void compilationSurvivesParallelismChangesAndDestroy() {
+		GatewayProperties properties = new GatewayProperties();
+		properties.setDefaultFilters(new ArrayList<>());
+		properties.setRouteCompilationParallelism(4);
+		RouteDefinitionRouteLocator locator = new RouteDefinitionRouteLocator(
+				() -> Flux.just(new RouteDefinition("foo=http://foo.org,Path=/foo")),
+				Collections.singletonList(new PathRoutePredicateFactory()),
+				Collections.emptyList(),
+				properties);
+
+		assertThat(locator.getRoutes().collectList().block()).hasSize(1);
+		properties.setRouteCompilationParallelism(2);
+		assertThat(locator.getRoutes().collectList().block()).hasSize(1);
+
+		locator.destroy();
+		assertThat(locator.getRoutes().collectList().block()).hasSize(1);
+		locator.destroy();
+	}
+
+	@Test
+	public void unchangedRoutesAreReused() {
+		List<RouteDefinition> definitions = new ArrayList<>(Arrays.asList(
+				new RouteDefinition("foo=http://foo.org,Path=/foo"),
+				new RouteDefinition("bar=http://bar.org,Path=/bar")));
+		GatewayProperties properties = new GatewayProperties();
+		properties.setDefaultFilters(new ArrayList<>());
+		RouteDefinitionRouteLocator locator = new RouteDefinitionRouteLocator(
+				() -> Flux.fromIterable(definitions),
+				Collections.singletonList(new PathRoutePredicateFactory()),
+				Collections.singletonList(new AddRequestHeaderGatewayFilterFactory()),
+				properties);
+
+		List<Route> first = locator.getRoutes().collectList().block();
+
+		definitions.get(1).getPredicates().get(0).addArg("_genkey_0", "/baz");
+		definitions.add(new RouteDefinition("qux=http://qux.org,Path=/qux"));
+		List<Route> second = locator.getRoutes().collectList().block();
+
+		assertThat(second).hasSize(3);
+		assertThat(second.get(0)).isSameAs(first.get(0));
+		assertThat(second.get(1)).isNotSameAs(first.get(1));
+		assertThat(second.get(1).getPredicateDescriptor().getPathPatterns()).containsExactly("/baz");
+
+		definitions.get(0).getFilters().add(new FilterDefinition("AddRequestHeader=X-Foo, Bar"));
+		List<Route> third = locator.getRoutes().collectList().block();
+
+		assertThat(third.get(0)).isNotSameAs(second.get(0));
+		assertThat(third.get(0).getFilters()).hasSize(1);
+		assertThat(third.get(1)).isSameAs(second.get(1));
+		assertThat(third.get(2)).isSameAs(second.get(2));
+
+		properties.getDefaultFilters().add(new FilterDefinition("AddRequestHeader=X-Default, Bar"));
+		List<Route> fourth = locator.getRoutes().collectList().block();
+
+		for (int i = 0; i < fourth.size(); i++) {
+			assertThat(fourth.get(i)).isNotSameAs(third.get(i));
+		}
+	}
+
+	@Test
+	public void metadataIsCopiedToRoutes() {
+		RouteDefinition definition = new RouteDefinition("foo=http://foo.org,Path=/foo");
+		definition.getMetadata().put("request-flush-strategy", "bytes:65536");
+		GatewayProperties properties = new GatewayProperties();
+		properties.setDefaultFilters(new ArrayList<>());
+		RouteDefinitionRouteLocator locator = new RouteDefinitionRouteLocator(
+				() -> Flux.just(definition),
+				Collections.singletonList(new PathRoutePredicateFactory()),
+				Collections.emptyList(),
+				properties);
+
+		Route first = locator.getRoutes().blockFirst();
+
+		assertThat(first.getMetadata()).containsEntry("request-flush-strategy", "bytes:65536");
+
+		definition.getMetadata().put("request-flush-strategy", "each");
+		Route second = locator.getRoutes().blockFirst();
+
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.getMetadata()).containsEntry("request-flush-strategy", "each");
+	}
+
 	@SpringBootConfiguration
 	protected static class TestConfig {
 		@Bean
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDescriptor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.alwaysTrue;
+
+public class RouteIndexTests {
+
+	@Test
+	public void literalPrefixStopsAtFirstWildcard() {
+		assertThat(PathPrefixTrie.literalPrefix("/foo/bar/{id}/**")).containsExactly("foo", "bar");
+		assertThat(PathPrefixTrie.literalPrefix("/foo/ba?")).containsExactly("foo");
+		assertThat(PathPrefixTrie.literalPrefix("/foo/*.png")).containsExactly("foo");
+		assertThat(PathPrefixTrie.literalPrefix("/**")).isEmpty();
+		assertThat(PathPrefixTrie.literalPrefix("/")).isEmpty();
+	}
+
+	@Test
+	public void candidatesKeepRouteOrder() {
+		RouteIndex index = new RouteIndex(Arrays.asList(
+				route("foo_bar", "/foo/bar/**"),
+				route("catch_all", "/**"),
+				route("foo", "/foo/{segment}"),
+				route("baz", "/baz"),
+				route("no_path", null),
+				route("foo_bar_baz", "/foo/bar/baz")));
+
+		assertThat(candidateIds(index, "/foo/bar/baz"))
+				.containsExactly("foo_bar", "catch_all", "foo", "no_path", "foo_bar_baz");
+		assertThat(candidateIds(index, "/foo/qux"))
+				.containsExactly("catch_all", "foo", "no_path");
+		assertThat(candidateIds(index, "/baz/"))
+				.containsExactly("catch_all", "baz", "no_path");
+		assertThat(candidateIds(index, "/other"))
+				.containsExactly("catch_all", "no_path");
+	}
+
+	@Test
+	public void candidatesMatchPathParametersLikePredicates() {
+		RouteIndex index = new RouteIndex(Arrays.asList(route("foo", "/foo/bar")));
+
+		assertThat(candidateIds(index, "/foo;a=b/bar")).containsExactly("foo");
+		assertThat(candidateIds(index, "/FOO/bar")).isEmpty();
+	}
+
+	@Test
+	public void routesWithoutPathsAreNotFiltered() {
+		List<Route> routes = Arrays.asList(route("first", null), route("second", null));
+		RouteIndex index = new RouteIndex(routes);
+
+		assertThat(index.getCandidates(exchange("/anything"))).isEqualTo(routes);
+	}
+
+	@Test
+	public void literalSuffixStopsAtLastWildcard() {
+		assertThat(HostIndex.literalSuffix(HostIndex.labels("**.example.org"))).containsExactly("example", "org");
+		assertThat(HostIndex.literalSuffix(HostIndex.labels("www.*.org"))).containsExactly("org");
+		assertThat(HostIndex.literalSuffix(HostIndex.labels("www.example.*"))).isEmpty();
+		assertThat(HostIndex.labels(".example.org")).isNull();
+	}
+
+	@Test
+	public void candidatesMatchHosts() {
+		RouteIndex index = new RouteIndex(Arrays.asList(
+				hostRoute("any_example", "**.example.org"),
+				hostRoute("www_example", "www.example.org"),
+				hostRoute("no_host", null),
+				hostRoute("sub_example", "*.example.org"),
+				hostRoute("any_org", "**.org"),
+				hostRoute("variable", "{sub}.example.com"),
+				hostRoute("other", "www.other.com")));
+
+		assertThat(candidateIds(index, "/", "www.example.org"))
+				.containsExactly("any_example", "www_example", "no_host", "sub_example", "any_org", "variable");
+		assertThat(candidateIds(index, "/", "example.org"))
+				.containsExactly("any_example", "no_host", "sub_example", "any_org", "variable");
+		assertThat(candidateIds(index, "/", "www.other.com"))
+				.containsExactly("no_host", "variable", "other");
+		assertThat(candidateIds(index, "/", "www.example.org:8080"))
+				.containsExactly("no_host", "variable");
+		assertThat(candidateIds(index, "/", null))
+				.containsExactly("no_host", "variable");
+	}
+
+	@Test
+	public void candidatesMatchPathAndHost() {
+		RouteIndex index = new RouteIndex(Arrays.asList(
+				route("foo_example", "/foo", "www.example.org"),
+				route("foo", "/foo", null),
+				route("example", null, "**.example.org"),
+				route("bar_example", "/bar", "**.example.org"),
+				route("any", null, null)));
+
+		assertThat(candidateIds(index, "/foo", "www.example.org"))
+				.containsExactly("foo_example", "foo", "example", "any");
+		assertThat(candidateIds(index, "/bar", "www.example.org"))
+				.containsExactly("example", "bar_example", "any");
+		assertThat(candidateIds(index, "/bar", "www.other.org"))
+				.containsExactly("any");
+	}
+
+	private List<String> candidateIds(RouteIndex index, String path) {
+		return candidateIds(index, path, null);
+	}
+
+	private List<String> candidateIds(RouteIndex index, String path, String host) {
+		return index.getCandidates(exchange(path, host)).stream()
+				.map(Route::getId)
+				.collect(Collectors.toList());
+	}
+
+	private ServerWebExchange exchange(String path) {
+		return exchange(path, null);
+	}
+
+	private ServerWebExchange exchange(String path, String host) {
+		MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get(path);
+		if (host != null) {
+			request.header(HttpHeaders.HOST, host);
+		}
+		return MockServerWebExchange.from(request.build());
+	}
+
+	private Route route(String id, String pathPattern) {
+		return route(id, pathPattern, null);
+	}
+
+	private Route hostRoute(String id, String hostPattern) {
+		return route(id, null, hostPattern);
+	}
+
+	private Route route(String id, String pathPattern, String hostPattern) {
+		PredicateDescriptor descriptor = PredicateDescriptor.empty();
+		if (pathPattern != null) {
+			descriptor = descriptor.and(PredicateDescriptor.path(pathPattern));
+		}
+		if (hostPattern != null) {
+			descriptor = descriptor.and(PredicateDescriptor.host(hostPattern));
+		}
+		return Route.builder()
+				.id(id)
+				.uri("http://localhost")
+				.predicate(alwaysTrue())
+				.predicateDescriptor(descriptor)
+				.build();
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CidrTrieTests {
+
+	@Test
+	public void ipv4Blocks() throws Exception {
+		CidrTrie trie = new CidrTrie().add("192.168.1.1/24").add("10.0.0.0/8").add("172.16.0.5");
+
+		assertThat(trie.contains(address("192.168.1.0"))).isTrue();
+		assertThat(trie.contains(address("192.168.1.10"))).isTrue();
+		assertThat(trie.contains(address("192.168.1.255"))).isTrue();
+		assertThat(trie.contains(address("192.168.2.1"))).isFalse();
+		assertThat(trie.contains(address("10.255.0.1"))).isTrue();
+		assertThat(trie.contains(address("11.0.0.1"))).isFalse();
+		assertThat(trie.contains(address("172.16.0.5"))).isTrue();
+		assertThat(trie.contains(address("172.16.0.6"))).isFalse();
+	}
+
+	@Test
+	public void ipv6Blocks() throws Exception {
+		CidrTrie trie = new CidrTrie().add("2001:db8::/32").add("::1");
+
+		assertThat(trie.contains(address("2001:db8:1234::1"))).isTrue();
+		assertThat(trie.contains(address("2001:db9::1"))).isFalse();
+		assertThat(trie.contains(address("::1"))).isTrue();
+		assertThat(trie.contains(address("::2"))).isFalse();
+		// families are kept apart
+		assertThat(trie.contains(address("127.0.0.1"))).isFalse();
+	}
+
+	@Test
+	public void shorterBlocksCoverLongerOnes() throws Exception {
+		CidrTrie trie = new CidrTrie().add("10.1.2.0/24").add("10.0.0.0/8").add("10.1.2.3");
+
+		assertThat(trie.contains(address("10.200.0.1"))).isTrue();
+		assertThat(new CidrTrie().add("0.0.0.0/0").contains(address("8.8.8.8"))).isTrue();
+	}
+
+	@Test
+	public void manyBlocks() throws Exception {
+		CidrTrie trie = new CidrTrie();
+		for (int i = 0; i < 4096; i++) {
+			trie.add("10." + (i >> 8) + "." + (i & 0xff) + ".0/24");
+		}
+
+		assertThat(trie.contains(address("10.15.255.1"))).isTrue();
+		assertThat(trie.contains(address("10.16.0.1"))).isFalse();
+	}
+
+	@Test
+	public void invalidBlocksAreRejected() {
+		assertThatThrownBy(() -> new CidrTrie().add("example.org")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new CidrTrie().add("10.0.0.0/33")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new CidrTrie().add("::/129")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new CidrTrie().add("10.0.0.0/x")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static InetAddress address(String literal) throws UnknownHostException {
+		return InetAddress.getByName(literal);
+	}
+}
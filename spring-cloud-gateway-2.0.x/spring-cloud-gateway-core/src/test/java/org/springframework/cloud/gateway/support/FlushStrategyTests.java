@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.net.URI;
+import java.util.List;
+
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import org.springframework.cloud.gateway.route.Route;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.cloud.gateway.support.FlushStrategy.REQUEST_FLUSH_STRATEGY;
+import static org.springframework.cloud.gateway.support.FlushStrategy.RESPONSE_FLUSH_STRATEGY;
+
+public class FlushStrategyTests {
+
+	@Test
+	public void strategiesAreParsed() {
+		assertThat(FlushStrategy.parse("each")).isSameAs(FlushStrategy.onEach());
+		assertThat(FlushStrategy.parse(" Batch ")).isSameAs(FlushStrategy.onBatch());
+		assertThat(FlushStrategy.parse("bytes:65536")).isEqualTo(FlushStrategy.onBytes(65536));
+		assertThat(FlushStrategy.parse("chunks: 16")).isEqualTo(FlushStrategy.onChunks(16));
+		assertThat(FlushStrategy.parse("chunks:1")).isSameAs(FlushStrategy.onEach());
+		assertThat(FlushStrategy.parse(FlushStrategy.onBytes(1)).toString()).isEqualTo("bytes:1");
+
+		assertThatThrownBy(() -> FlushStrategy.parse("never")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> FlushStrategy.parse("bytes:")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> FlushStrategy.parse("chunks:0")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void strategyIsReadFromRouteMetadata() {
+		Route route = Route.builder().id("foo").uri(URI.create("http://foo.org"))
+				.metadata(RESPONSE_FLUSH_STRATEGY, "chunks:2")
+				.build();
+
+		assertThat(FlushStrategy.forRoute(route, RESPONSE_FLUSH_STRATEGY, FlushStrategy.onBatch()))
+				.isEqualTo(FlushStrategy.onChunks(2));
+		assertThat(FlushStrategy.forRoute(route, REQUEST_FLUSH_STRATEGY, FlushStrategy.onEach()))
+				.isSameAs(FlushStrategy.onEach());
+		assertThat(FlushStrategy.forRoute(null, REQUEST_FLUSH_STRATEGY, FlushStrategy.onBatch()))
+				.isSameAs(FlushStrategy.onBatch());
+	}
+
+	@Test
+	public void strategyIsParsedOncePerRoute() {
+		Route route = Route.builder().id("foo").uri(URI.create("http://foo.org"))
+				.metadata(REQUEST_FLUSH_STRATEGY, "bytes:1024")
+				.build();
+
+		assertThat(FlushStrategy.forRoute(route, REQUEST_FLUSH_STRATEGY, FlushStrategy.onEach()))
+				.isSameAs(FlushStrategy.forRoute(route, REQUEST_FLUSH_STRATEGY, FlushStrategy.onEach()));
+	}
+
+	@Test
+	public void invalidStrategyRejectsTheRoute() {
+		Route route = Route.builder().id("foo").uri(URI.create("http://foo.org"))
+				.metadata(RESPONSE_FLUSH_STRATEGY, "bytes:-1")
+				.build();
+
+		assertThatThrownBy(() -> FlushStrategy.validate(route))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining(RESPONSE_FLUSH_STRATEGY).hasMessageContaining("route foo");
+	}
+
+	@Test
+	public void bodyIsGroupedByChunks() {
+		List<List<String>> groups = groups(FlushStrategy.onChunks(2), Flux.just("a", "b", "c", "d", "e"));
+
+		assertThat(groups).hasSize(3);
+		assertThat(groups.get(2)).containsExactly("e");
+	}
+
+	@Test
+	public void bodyIsGroupedByBytes() {
+		Flux<String> body = Flux.just("aaa", "bb", "cccc", "d", "ee");
+		FlushStrategy strategy = FlushStrategy.onBytes(5);
+
+		List<List<String>> groups = groups(strategy, body);
+
+		assertThat(groups.get(0)).containsExactly("aaa", "bb");
+		assertThat(groups.get(1)).containsExactly("cccc", "d");
+		assertThat(groups.get(2)).containsExactly("ee");
+		// 计数不在订阅之间共享
+		assertThat(groups(strategy, body)).isEqualTo(groups);
+	}
+
+	private static List<List<String>> groups(FlushStrategy strategy, Flux<String> body) {
+		return strategy.group(body, String::length)
+				.concatMap(group -> Flux.from(group).collectList())
+				.filter(group -> !group.isEmpty())
+				.collectList()
+				.block();
+	}
+}
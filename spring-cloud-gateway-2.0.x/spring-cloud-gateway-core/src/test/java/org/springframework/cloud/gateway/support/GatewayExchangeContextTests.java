@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.handler.predicate.RoutePredicates.alwaysTrue;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ALREADY_ROUTED_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.isAlreadyRouted;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setAlreadyRouted;
+
+public class GatewayExchangeContextTests {
+
+	@Test
+	public void attributesAreAViewOfTheContext() {
+		ServerWebExchange original = MockServerWebExchange.from(MockServerHttpRequest.get("/").build());
+		ServerWebExchange exchange = GatewayExchangeContext.decorate(original);
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+		Route route = route();
+
+		context.setRoute(route);
+		setAlreadyRouted(exchange);
+
+		assertThat((Route) exchange.getAttribute(GATEWAY_ROUTE_ATTR)).isSameAs(route);
+		assertThat((Boolean) exchange.getAttribute(GATEWAY_ALREADY_ROUTED_ATTR)).isTrue();
+		// written through for code holding the undecorated exchange
+		assertThat((Route) original.getAttribute(GATEWAY_ROUTE_ATTR)).isSameAs(route);
+
+		URI url = URI.create("http://example.org/foo");
+		exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, url);
+		assertThat(context.getRequestUrl()).isSameAs(url);
+
+		exchange.getAttributes().remove(GATEWAY_ROUTE_ATTR);
+		assertThat(context.getRoute()).isNull();
+		assertThat(original.getAttributes()).doesNotContainKey(GATEWAY_ROUTE_ATTR);
+	}
+
+	@Test
+	public void contextIsFoundThroughMutatedExchanges() {
+		ServerWebExchange exchange = GatewayExchangeContext.decorate(
+				MockServerWebExchange.from(MockServerHttpRequest.get("/").build()));
+		GatewayExchangeContext context = GatewayExchangeContext.get(exchange);
+
+		ServerWebExchange mutated = exchange.mutate()
+				.request(exchange.getRequest().mutate().path("/bar").build())
+				.build();
+
+		assertThat(GatewayExchangeContext.get(mutated)).isSameAs(context);
+		setAlreadyRouted(mutated);
+		assertThat(context.isAlreadyRouted()).isTrue();
+	}
+
+	@Test
+	public void existingAttributesAreKeptWhenDecorating() {
+		ServerWebExchange original = MockServerWebExchange.from(MockServerHttpRequest.get("/").build());
+		Route route = route();
+		original.getAttributes().put(GATEWAY_ROUTE_ATTR, route);
+
+		ServerWebExchange exchange = GatewayExchangeContext.decorate(original);
+
+		assertThat(GatewayExchangeContext.get(exchange).getRoute()).isSameAs(route);
+	}
+
+	@Test
+	public void undecoratedExchangesUseTheAttributes() {
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/").build());
+		Route route = route();
+
+		exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route);
+		GatewayExchangeContext.get(exchange).setRequestUrl(URI.create("http://example.org"));
+
+		assertThat(GatewayExchangeContext.get(exchange).getRequiredRoute()).isSameAs(route);
+		assertThat((URI) exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR)).hasHost("example.org");
+		assertThat(isAlreadyRouted(exchange)).isFalse();
+	}
+
+	@Test
+	public void completionCallbacksRunOnce() {
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/").build());
+		List<String> completed = new ArrayList<>();
+
+		GatewayExchangeContext.get(exchange).onComplete(() -> completed.add("first"));
+		GatewayExchangeContext.get(exchange).onComplete(() -> {
+			throw new IllegalStateException("failed");
+		});
+		GatewayExchangeContext.get(GatewayExchangeContext.decorate(exchange)).onComplete(() -> completed.add("last"));
+		GatewayExchangeContext.get(exchange).complete();
+		GatewayExchangeContext.get(exchange).complete();
+
+		assertThat(completed).containsExactly("first", "last");
+	}
+
+	private Route route() {
+		return Route.builder()
+				.id("route")
+				.uri("http://localhost")
+				.predicate(alwaysTrue())
+				.build();
+	}
+}
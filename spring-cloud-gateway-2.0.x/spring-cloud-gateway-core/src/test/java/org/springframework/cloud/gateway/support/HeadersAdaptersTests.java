@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import org.junit.Test;
+
+import org.springframework.http.HttpHeaders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class HeadersAdaptersTests {
+
+	@Test
+	public void springHeadersAreViewedAsNettyHeaders() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.add("X-Foo", "1");
+		headers.add("X-Foo", "2");
+		headers.add("Content-Length", "42");
+		headers.add("If-Modified-Since", "Wed, 21 Oct 2015 07:28:00 GMT");
+
+		SpringHeadersAdapter adapter = new SpringHeadersAdapter(headers);
+
+		assertThat(adapter.get("x-foo")).isEqualTo("1");
+		assertThat(adapter.getAll("X-Foo")).containsExactly("1", "2");
+		assertThat(adapter.getAll("X-Missing")).isEmpty();
+		assertThat(adapter.getInt("Content-Length")).isEqualTo(42);
+		assertThat(adapter.getInt("X-Foo", -1)).isEqualTo(1);
+		assertThat(adapter.getInt("X-Missing", -1)).isEqualTo(-1);
+		assertThat(adapter.getTimeMillis("If-Modified-Since")).isEqualTo(1445412480000L);
+		assertThat(adapter.size()).isEqualTo(4);
+		assertThat(adapter.entries()).containsExactly(entry("X-Foo", "1"), entry("X-Foo", "2"),
+				entry("Content-Length", "42"), entry("If-Modified-Since", "Wed, 21 Oct 2015 07:28:00 GMT"));
+	}
+
+	@Test
+	public void nettyChangesWriteThroughToSpringHeaders() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.add("X-Foo", "1");
+		SpringHeadersAdapter adapter = new SpringHeadersAdapter(headers);
+
+		adapter.add("X-Foo", "2").setInt("Content-Length", 7).set("Date", new Date(0)).remove("X-Missing");
+
+		assertThat(headers.get("X-Foo")).containsExactly("1", "2");
+		assertThat(headers.getContentLength()).isEqualTo(7);
+		assertThat(headers.getFirst("Date")).isEqualTo(DateFormatter.format(new Date(0)));
+
+		// 与 reactor-netty 设置请求头的方式相同
+		DefaultHttpHeaders request = new DefaultHttpHeaders();
+		request.set(adapter);
+		assertThat(request.getAll("X-Foo")).containsExactly("1", "2");
+		assertThat(request.get("Content-Length")).isEqualTo("7");
+	}
+
+	@Test
+	public void nettyHeadersAreViewedAsMultiValueMap() {
+		DefaultHttpHeaders headers = new DefaultHttpHeaders();
+		headers.add("X-Foo", "1");
+		headers.add("X-Foo", "2");
+		headers.add("Content-Type", "text/plain");
+
+		NettyHeadersAdapter adapter = new NettyHeadersAdapter(headers);
+
+		assertThat(adapter.getFirst("x-foo")).isEqualTo("1");
+		assertThat(adapter.get("X-Foo")).containsExactly("1", "2");
+		assertThat(adapter.get("X-Missing")).isNull();
+		assertThat(adapter.size()).isEqualTo(2);
+		assertThat(adapter.toSingleValueMap()).containsOnly(entry("X-Foo", "1"), entry("Content-Type", "text/plain"));
+
+		HttpHeaders response = new HttpHeaders();
+		response.putAll(adapter);
+		assertThat(response.get("X-Foo")).containsExactly("1", "2");
+		assertThat(response.getContentType().toString()).isEqualTo("text/plain");
+	}
+
+	@Test
+	public void springChangesWriteThroughToNettyHeaders() {
+		DefaultHttpHeaders headers = new DefaultHttpHeaders();
+		NettyHeadersAdapter adapter = new NettyHeadersAdapter(headers);
+
+		adapter.add("X-Foo", "1");
+		adapter.put("X-Bar", Arrays.asList("a", "b"));
+		List<String> removed = adapter.remove("X-Foo");
+
+		assertThat(removed).containsExactly("1");
+		assertThat(headers.contains("X-Foo")).isFalse();
+		assertThat(headers.getAll("X-Bar")).containsExactly("a", "b");
+		for (Map.Entry<String, List<String>> entry : adapter.entrySet()) {
+			entry.setValue(Arrays.asList("c"));
+		}
+		assertThat(headers.getAll("X-Bar")).containsExactly("c");
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.http.server.HttpServer;
+
+import org.springframework.cloud.gateway.support.HostPoolResources.PoolMetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HostPoolResourcesTests {
+
+	private NettyContext backend;
+
+	private HostPoolResources pool;
+
+	private HttpClient client;
+
+	private String host;
+
+	@Before
+	public void setUp() {
+		this.backend = HttpServer.create("localhost", 0)
+				.newHandler((req, res) -> res.sendString(Mono.delay(Duration.ofMillis(300)).map(tick -> "ok")))
+				.block();
+		this.pool = new HostPoolResources("test", 1, 1, Duration.ofSeconds(5), Duration.ofMillis(500));
+		this.client = HttpClient.create(opts -> opts.poolResources(this.pool));
+		this.host = "localhost:" + this.backend.address().getPort();
+	}
+
+	@After
+	public void tearDown() {
+		this.pool.dispose();
+		this.backend.dispose();
+	}
+
+	@Test
+	public void connectionsAreCountedPerHost() {
+		assertThat(get()).isEqualTo("ok");
+
+		await(() -> metrics().getActive() == 0);
+		assertThat(metrics().getIdle()).isEqualTo(1);
+		assertThat(metrics().getPending()).isEqualTo(0);
+	}
+
+	@Test
+	public void acquiresBeyondThePendingLimitFail() {
+		MonoProcessor<String> first = request().toProcessor();
+		await(() -> metrics().getActive() == 1);
+		MonoProcessor<String> second = request().toProcessor();
+		await(() -> metrics().getPending() == 1);
+
+		// 连接数和等待数都已用完
+		assertThatThrownBy(this::get).hasMessageContaining("Too many outstanding acquire operations");
+
+		assertThat(first.block()).isEqualTo("ok");
+		assertThat(second.block()).isEqualTo("ok");
+		await(() -> metrics().getActive() == 0 && metrics().getPending() == 0);
+	}
+
+	@Test
+	public void idleConnectionsAreClosed() {
+		assertThat(get()).isEqualTo("ok");
+		await(() -> metrics().getIdle() == 1);
+
+		await(() -> metrics().getIdle() == 0);
+
+		assertThat(get()).isEqualTo("ok");
+	}
+
+	private PoolMetrics metrics() {
+		return this.pool.getMetrics().get(this.host);
+	}
+
+	private String get() {
+		return request().block(Duration.ofSeconds(5));
+	}
+
+	private Mono<String> request() {
+		return this.client.get("http://" + this.host + "/")
+				.flatMap(res -> res.receive().aggregate().asString());
+	}
+
+	private static void await(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean()) {
+			assertThat(System.currentTimeMillis()).as("waiting for the pool").isLessThan(deadline);
+			try {
+				Thread.sleep(10);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LinearRegexTests {
+
+	private static final List<String> INPUTS = Arrays.asList("", "a", "b", "ab", "abc", "aab", "bar", "baz",
+			"ba", "chip", "chop", "123", "12a", "a1_", " ", "a b", "-", "]", "x\ny", "foo.bar", "fooXbar",
+			"aaaa", "abab", "www.example.org", "A-Z");
+
+	private static final List<String> REGEXPS = Arrays.asList("", "a", "ab", "a*", "a+b", "a?b", "ba.",
+			"ch.p", "\\d+", "\\d{2,3}", "\\d{2}a", "\\w+", "\\W", "\\s", "\\S+", "a\\sb", "[a-c]+",
+			"[^a-c]+", "[-a]", "[\\]]", "[\\d_a]+", "(ab)+", "(?:ab)*", "a|b|ab", "(a|b)*c?",
+			"x.y", "foo\\.bar", ".*", "a{2,}", "a{0}b", "^ab$", "[A\\-Z]+", "(a*)*", "((a|)b)+",
+			"a*?b", "[\\w.]+\\.org");
+
+	@Test
+	public void matchesLikeJavaRegex() {
+		for (String regex : REGEXPS) {
+			LinearRegex linear = LinearRegex.compile(regex);
+			for (String input : INPUTS) {
+				assertThat(linear.matches(input))
+						.as("'%s' matches '%s'", regex, input)
+						.isEqualTo(input.matches(regex));
+			}
+		}
+	}
+
+	@Test
+	public void pathologicalPatternsRunInLinearTime() {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 100_000; i++) {
+			input.append('a');
+		}
+		input.append('!');
+
+		assertThat(LinearRegex.compile("(a+)+b").matches(input)).isFalse();
+		assertThat(LinearRegex.compile("(a|a)*b").matches(input)).isFalse();
+		assertThat(LinearRegex.compile("(a*)*!").matches(input)).isTrue();
+	}
+
+	@Test
+	public void backtrackingConstructsAreRejected() {
+		assertThatThrownBy(() -> LinearRegex.compile("(a)\\1")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LinearRegex.compile("(?=a)a")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LinearRegex.compile("a*+")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LinearRegex.compile("\\bword")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void invalidPatternsAreRejected() {
+		assertThatThrownBy(() -> LinearRegex.compile("(ab")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LinearRegex.compile("ab)")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LinearRegex.compile("[ab")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LinearRegex.compile("*a")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LinearRegex.compile("a{3,2}")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LinearRegex.compile("(a{1000}){1000}")).isInstanceOf(IllegalArgumentException.class);
+	}
+}